@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Random;
 
 import mapreduce.appspecs.MapReduceSpecification;
+import communication.readers.FileRecordReader;
 import mapreduce.programs.counting.CountingMapper;
 import mapreduce.programs.counting.CountingMerger;
 import mapreduce.programs.counting.CountingReducer;
@@ -33,6 +34,7 @@ import appspecs.Node;
 import enums.CommunicationMode;
 import exceptions.InexistentInputException;
 import exceptions.OverlapingFilesException;
+import exceptions.UnsplittableInputException;
 
 public class Client {
 	private String registryLocation;
@@ -241,7 +243,16 @@ public class Client {
 
 		try {
 			if (initialSplit) {
-				mapReduceSpecification.insertMappers(FileHelper.getFileInformation(baseDirectory.getPath(), "input-splitter.dat", baseDirectory.getProtocol()), new ReaderArbitraryWriterArbitrary(), nodesStage1);
+				Filename input = FileHelper.getFileInformation(baseDirectory.getPath(), "input-splitter.dat", baseDirectory.getProtocol());
+
+				// Splittable inputs are read in byte ranges by the mappers themselves, without a splitter
+
+				if (FileRecordReader.isSplittable(input)) {
+					mapReduceSpecification.insertMappers(input, nodesStage1);
+				}
+				else {
+					mapReduceSpecification.insertMappers(input, new ReaderArbitraryWriterArbitrary(), nodesStage1);
+				}
 			}
 			else {
 				// Create the input filenames
@@ -257,6 +268,10 @@ public class Client {
 		} catch (InexistentInputException exception) {
 			System.err.println(exception);
 
+			System.exit(1);
+		} catch (UnsplittableInputException exception) {
+			System.err.println(exception);
+
 			System.exit(1);
 		}
 
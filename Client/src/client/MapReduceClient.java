@@ -18,6 +18,7 @@ import java.rmi.RemoteException;
 
 import exceptions.InexistentInputException;
 import exceptions.OverlapingFilesException;
+import exceptions.UnsplittableInputException;
 
 import interfaces.Manager;
 
@@ -27,6 +28,8 @@ import nodes.ReaderArbitraryWriterArbitrary;
 
 import mapreduce.appspecs.MapReduceSpecification;
 
+import communication.readers.FileRecordReader;
+
 import mapreduce.programs.counting.CountingMapper;
 import mapreduce.programs.counting.CountingMerger;
 import mapreduce.programs.counting.CountingReducer;
@@ -71,7 +74,16 @@ public class MapReduceClient {
 
 		try {
 			if (initialSplit) {
-				mapReduceSpecification.insertMappers(FileHelper.getFileInformation(baseDirectory.getPath(), inputs[0], baseDirectory.getProtocol()), new ReaderArbitraryWriterArbitrary(), nodesStage1);
+				Filename input = FileHelper.getFileInformation(baseDirectory.getPath(), inputs[0], baseDirectory.getProtocol());
+
+				// Splittable inputs are read in byte ranges by the mappers themselves, without a splitter
+
+				if (FileRecordReader.isSplittable(input)) {
+					mapReduceSpecification.insertMappers(input, nodesStage1);
+				}
+				else {
+					mapReduceSpecification.insertMappers(input, new ReaderArbitraryWriterArbitrary(), nodesStage1);
+				}
 			}
 			else {
 				// Create the input filenames
@@ -87,6 +99,10 @@ public class MapReduceClient {
 		} catch (InexistentInputException exception) {
 			System.err.println(exception);
 
+			System.exit(1);
+		} catch (UnsplittableInputException exception) {
+			System.err.println(exception);
+
 			System.exit(1);
 		}
 
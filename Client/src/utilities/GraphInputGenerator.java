@@ -28,6 +28,7 @@ import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
 import communication.writers.FileRecordWriter;
+import communication.writers.FileWriterOptions;
 
 public abstract class GraphInputGenerator<V extends GraphVertex,E extends GraphEdge> {
 	protected DefaultDirectedGraph<V,E> graph;
@@ -35,6 +36,9 @@ public abstract class GraphInputGenerator<V extends GraphVertex,E extends GraphE
 	protected Filename[] outputs;
 
 	protected final int startIndex;
+
+	// Whether the outputs are written in the splittable format
+	protected boolean splittable;
 	
 	public GraphInputGenerator(Directory directory, String[] outputs) {
 		List<Filename> outputList = new ArrayList<Filename>();
@@ -60,6 +64,16 @@ public abstract class GraphInputGenerator<V extends GraphVertex,E extends GraphE
 	
 	protected abstract void obtainGraph();
 
+	/**
+	 * Sets whether the outputs are written with sync markers, so that they can be read in
+	 * byte ranges (see MapReduceSpecification.insertMappers()).
+	 * 
+	 * @param splittable True to write splittable outputs.
+	 */
+	public void setSplittable(boolean splittable) {
+		this.splittable = splittable;
+	}
+
 	public void run() throws IOException {
 		obtainGraph();
 
@@ -87,10 +101,14 @@ public abstract class GraphInputGenerator<V extends GraphVertex,E extends GraphE
 
 		// Now, write the vertices and edges to the input files
 
+		FileWriterOptions options = new FileWriterOptions();
+
+		options.setSplittable(splittable);
+
 		FileRecordWriter[] writers = new FileRecordWriter[outputs.length];
 
 		for (int i = 0; i < outputs.length; i++) {
-			writers[i] =  new FileRecordWriter(outputs[i]);
+			writers[i] =  new FileRecordWriter(outputs[i], null, options);
 		}
 
 		int vertexPerWriter = (graph.vertexSet().size() / writers.length);
@@ -25,11 +25,15 @@ import utilities.filesystem.Filename;
 
 import communication.channel.Record;
 import communication.writers.FileRecordWriter;
+import communication.writers.FileWriterOptions;
 
 public class InputGenerator {
 	private Filename[] inputs;
 	private Filename[] outputs;
 
+	// Whether the outputs are written in the splittable format
+	protected boolean splittable;
+
 	public InputGenerator(Directory directory, String[] inputsOutputs) {
 		List<Filename> inputList = new ArrayList<Filename>();
 		List<Filename> outputList = new ArrayList<Filename>();
@@ -66,6 +70,16 @@ public class InputGenerator {
 		this.outputs = outputs;
 	}
 
+	/**
+	 * Sets whether the outputs are written with sync markers, so that they can be read in
+	 * byte ranges (see MapReduceSpecification.insertMappers()).
+	 * 
+	 * @param splittable True to write splittable outputs.
+	 */
+	public void setSplittable(boolean splittable) {
+		this.splittable = splittable;
+	}
+
 	public void run() throws IOException {
 		BufferedReader[] readers = new BufferedReader[inputs.length];
 
@@ -73,10 +87,14 @@ public class InputGenerator {
 			readers[i] = new BufferedReader(new FileReader(inputs[i].getLocation()));
 		}
 		
+		FileWriterOptions options = new FileWriterOptions();
+
+		options.setSplittable(splittable);
+
 		FileRecordWriter[] writers = new FileRecordWriter[outputs.length];
 		
 		for (int i = 0; i < outputs.length; i++) {
-			writers[i] =  new FileRecordWriter(outputs[i]);
+			writers[i] =  new FileRecordWriter(outputs[i], null, options);
 		}
 
 		int writerCount = 0;
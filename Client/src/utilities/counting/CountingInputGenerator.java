@@ -46,22 +46,30 @@ public class CountingInputGenerator extends InputGenerator {
 	}
 
 	public static void main(String[] arguments) {
-		if (arguments.length <= 3) {
-			System.err.println("Usage: CountingInputGenerator <directory> <input> ... <input> : <output> ... <output>");
+		// Splittable outputs can be read in byte ranges by several mappers
+
+		boolean splittable = (arguments.length > 0 && arguments[0].equals("-splittable"));
+
+		int first = (splittable ? 1 : 0);
+
+		if (arguments.length - first <= 3) {
+			System.err.println("Usage: CountingInputGenerator [-splittable] <directory> <input> ... <input> : <output> ... <output>");
 
 			System.exit(1);
 		}
 
-		String directory = arguments[0];
+		String directory = arguments[first];
 
-		String[] filenames = new String[arguments.length - 1];
+		String[] filenames = new String[arguments.length - first - 1];
 
-		for(int i = 1; i < arguments.length; i++) {
-			filenames[i - 1] = arguments[i];
+		for(int i = first + 1; i < arguments.length; i++) {
+			filenames[i - first - 1] = arguments[i];
 		}
 
 		CountingInputGenerator generator = new CountingInputGenerator(new Directory(directory), filenames);
 
+		generator.setSplittable(splittable);
+
 		try {
 			generator.run();
 		} catch (IOException exception) {
@@ -32,13 +32,19 @@ import utilities.filesystem.Protocol;
 import communication.channel.FileInputChannel;
 import communication.channel.FileOutputChannel;
 import communication.channel.InputChannel;
+import communication.channel.NodeboxInputChannel;
+import communication.channel.NodeboxOutputChannel;
 import communication.channel.OutputChannel;
 import communication.channel.SHMInputChannel;
 import communication.channel.SHMOutputChannel;
 import communication.channel.TCPInputChannel;
 import communication.channel.TCPOutputChannel;
+import communication.channel.TimeboxInputChannel;
+import communication.channel.TimeboxOutputChannel;
+import communication.serialization.SerializerRegistry;
 
 import enums.CommunicationMode;
+import enums.CompressionType;
 
 import exceptions.OverlapingFilesException;
 
@@ -68,6 +74,16 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 
 	protected Map<String, ApplicationController> controllers;
 
+	protected SerializerRegistry serializerRegistry;
+
+	protected CompressionType fileCompressionType = CompressionType.NONE;
+
+	protected boolean fileWriteBehind = false;
+
+	protected CompressionType tcpCompressionType = CompressionType.NONE;
+
+	protected boolean tcpCompressionAdaptive = true;
+
 	protected String nameGenerationString = "node-";
 
 	protected long nameGenerationCounter = 0L;
@@ -124,6 +140,72 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 		this.decider = decider;
 	}
 
+	public SerializerRegistry getSerializerRegistry() {
+		return serializerRegistry;
+	}
+
+	/**
+	 * Selects the record format used by the channels of this application.
+	 * 
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 */
+	public void setSerializerRegistry(SerializerRegistry serializerRegistry) {
+		this.serializerRegistry = serializerRegistry;
+	}
+
+	public CompressionType getFileCompressionType() {
+		return fileCompressionType;
+	}
+
+	/**
+	 * Sets the default compression of FILE edges. Edges can override it individually.
+	 * 
+	 * @param fileCompressionType Compression used for the intermediate files.
+	 */
+	public void setFileCompressionType(CompressionType fileCompressionType) {
+		this.fileCompressionType = fileCompressionType;
+	}
+
+	public boolean isFileWriteBehind() {
+		return fileWriteBehind;
+	}
+
+	/**
+	 * Sets whether FILE edges are written by background I/O threads, so that the producers
+	 * keep computing while their previous output is written.
+	 * 
+	 * @param fileWriteBehind True for write-behind, false (the default) to write on the producer thread.
+	 */
+	public void setFileWriteBehind(boolean fileWriteBehind) {
+		this.fileWriteBehind = fileWriteBehind;
+	}
+
+	public CompressionType getTCPCompressionType() {
+		return tcpCompressionType;
+	}
+
+	/**
+	 * Sets the default compression of the frames of TCP and HYBRID edges. Edges can override it individually.
+	 * 
+	 * @param tcpCompressionType Compression used for the frames.
+	 */
+	public void setTCPCompressionType(CompressionType tcpCompressionType) {
+		this.tcpCompressionType = tcpCompressionType;
+	}
+
+	public boolean isTCPCompressionAdaptive() {
+		return tcpCompressionAdaptive;
+	}
+
+	/**
+	 * Sets whether the compression of TCP and HYBRID edges stops on channels where it does not pay off.
+	 * 
+	 * @param tcpCompressionAdaptive True (the default) for adaptive compression, false to compress every frame.
+	 */
+	public void setTCPCompressionAdaptive(boolean tcpCompressionAdaptive) {
+		this.tcpCompressionAdaptive = tcpCompressionAdaptive;
+	}
+
 	public void insertNodes(Node[] nodes) {
 		for (Node node: nodes) {
 			node.setName(generateUniqueName());
@@ -202,6 +284,21 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 	}
 
 	public void addInput(Node node, String key, Filename filename)
+	{
+		addInput(node, key, filename, 0, 1);
+	}
+
+	/**
+	 * Adds an input that reads one of several disjoint byte ranges of a file. The ranges
+	 * are only honored for splittable files; otherwise, range 0 reads the whole file.
+	 * 
+	 * @param node Node that reads the input.
+	 * @param key Name of the input channel.
+	 * @param filename File to be read.
+	 * @param splitIndex Index of the range read by the node.
+	 * @param splitCount Number of ranges the file is divided into.
+	 */
+	public void addInput(Node node, String key, Filename filename, int splitIndex, int splitCount)
 	{
 		if(inputToChannels.get(filename) == null) {
 			inputToChannels.put(filename, new HashSet<InputChannel>());
@@ -215,7 +312,7 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 			nodeToInputs.put(node, new HashSet<Filename>());
 		}
 
-		FileInputChannel inputChannel = new FileInputChannel(filename.getLocation(), filename);
+		FileInputChannel inputChannel = new FileInputChannel(filename.getLocation(), filename, splitIndex, splitCount);
 
 		node.addInputChannel(key, inputChannel, true);
 
@@ -411,12 +508,38 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 			target = edge.getTarget();
 
 			switch (edge.getCommunicationMode()) {
+			case NODEBOX:
+				// NODEBOX runs the target in the thread of the source; otherwise, it works as SHM
+				if (isFusable(target)) {
+					source.addOutputChannel(target.getName(), new NodeboxOutputChannel(target.getName()), false);
+					target.addInputChannel(source.getName(), new NodeboxInputChannel(source.getName()), false);
+				}
+				else {
+					addSHMChannels(source, target);
+				}
+				break;
 			case SHM:
-				source.addOutputChannel(target.getName(), new SHMOutputChannel(target.getName()), false);
-				target.addInputChannel(source.getName(), new SHMInputChannel(source.getName()), false);
+				addSHMChannels(source, target);
+				break;
+			case TIMEBOX:
+				// TIMEBOX works as SHM, but its endpoints are run in time slices by a shared pool of threads
+				source.addOutputChannel(target.getName(), new TimeboxOutputChannel(target.getName()), false);
+				target.addInputChannel(source.getName(), new TimeboxInputChannel(source.getName()), false);
 				break;
 			case TCP:
-				source.addOutputChannel(target.getName(), new TCPOutputChannel(target.getName()), false);
+			case HYBRID:
+				// HYBRID streams like TCP, but spills to a local file when the target lags
+				TCPOutputChannel tcpOutputChannel = new TCPOutputChannel(target.getName(), edge.getCommunicationMode() == CommunicationMode.HYBRID);
+
+				CompressionType tcpEdgeCompressionType = edge.getCompressionType();
+
+				if (tcpEdgeCompressionType == null) {
+					tcpEdgeCompressionType = tcpCompressionType;
+				}
+
+				tcpOutputChannel.setCompression(tcpEdgeCompressionType, tcpCompressionAdaptive);
+
+				source.addOutputChannel(target.getName(), tcpOutputChannel, false);
 				target.addInputChannel(source.getName(), new TCPInputChannel(source.getName()), false);
 				break;
 			case FILE:
@@ -427,14 +550,63 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 					filename = FileHelper.getFileInformation(baseDirectory.getPath(), "anonymous-filechannel-" + (anonymousFileChannelCounter++) + ".dat", baseDirectory.getProtocol());
 				}
 
-				source.addOutputChannel(target.getName(), new FileOutputChannel(target.getName(), filename), false);
-				target.addInputChannel(source.getName(), new FileInputChannel(source.getName(), filename), false);
+				CompressionType compressionType = edge.getCompressionType();
+
+				if (compressionType == null) {
+					compressionType = fileCompressionType;
+				}
+
+				// Splittable files cannot be block-compressed
+
+				if (edge.isSplittable()) {
+					compressionType = CompressionType.NONE;
+				}
+
+				FileOutputChannel fileOutputChannel = new FileOutputChannel(target.getName(), filename, compressionType);
+				FileInputChannel fileInputChannel = new FileInputChannel(source.getName(), filename);
+
+				fileOutputChannel.setSplittable(edge.isSplittable());
+				fileOutputChannel.setStreaming(edge.isStreaming());
+				fileOutputChannel.setWriteBehind(fileWriteBehind);
+				fileInputChannel.setStreaming(edge.isStreaming());
+
+				source.addOutputChannel(target.getName(), fileOutputChannel, false);
+				target.addInputChannel(source.getName(), fileInputChannel, false);
 
 				break;
 			}
 		}
 	}
 
+	/**
+	 * Connects the source of an edge to its target through shared memory.
+	 * 
+	 * @param source Source of the edge.
+	 * @param target Target of the edge.
+	 */
+	private void addSHMChannels(Node source, Node target) {
+		source.addOutputChannel(target.getName(), new SHMOutputChannel(target.getName()), false);
+		target.addInputChannel(source.getName(), new SHMInputChannel(source.getName()), false);
+	}
+
+	/**
+	 * Tells whether a node can be fused to its producer: the node must support being
+	 * driven record by record, and its producer must be its only input.
+	 * 
+	 * @param target Target of a NODEBOX edge.
+	 * 
+	 * @return True if the target can be fused to the source of the edge.
+	 */
+	private boolean isFusable(Node target) {
+		if (!target.isFusable() || inDegreeOf(target) != 1) {
+			return false;
+		}
+
+		Set<Filename> targetInputs = nodeToInputs.get(target);
+
+		return targetInputs == null || targetInputs.isEmpty();
+	}
+
 	public void relinkOutputsInputs() {
 		List<Filename> inputFilenames = new ArrayList<Filename>(getInputFilenames());
 		List<Filename> outputFilenames = new ArrayList<Filename>(getOutputFilenames());
@@ -16,6 +16,7 @@ import org.jgrapht.graph.DefaultEdge;
 import utilities.filesystem.Filename;
 
 import enums.CommunicationMode;
+import enums.CompressionType;
 
 public class Edge extends DefaultEdge {
 	private static final long serialVersionUID = 1L;
@@ -24,6 +25,12 @@ public class Edge extends DefaultEdge {
 
 	private Filename filename;
 
+	private CompressionType compressionType;
+
+	private boolean streaming;
+
+	private boolean splittable;
+
 	public Edge(CommunicationMode type) {
 		setCommunicationMode(type);
 	}
@@ -57,4 +64,47 @@ public class Edge extends DefaultEdge {
 	public void setFilename(Filename filename) {
 		this.filename = filename;
 	}
+
+	public CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	/**
+	 * Sets the compression used by FILE edges, or by the frames of TCP and HYBRID edges.
+	 * 
+	 * @param compressionType Compression for this edge, or null to use the application default.
+	 */
+	public void setCompressionType(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets whether a FILE edge is streamed: its consumer is scheduled together with its producer,
+	 * and reads the file while it is written, instead of waiting for the producer to terminate.
+	 * The file is still kept, as with any FILE edge.
+	 * 
+	 * @param streaming True for a streaming FILE edge.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public boolean isSplittable() {
+		return splittable;
+	}
+
+	/**
+	 * Sets whether the file of a FILE edge is written with sync markers, so that it can be read
+	 * in byte ranges by later applications (see MapReduceSpecification.insertMappers()). Splittable
+	 * files are not compressed, so the compression of the edge is then ignored.
+	 * 
+	 * @param splittable True for a splittable FILE edge.
+	 */
+	public void setSplittable(boolean splittable) {
+		this.splittable = splittable;
+	}
 }
@@ -16,6 +16,7 @@ import java.util.concurrent.TimeUnit;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,9 +31,15 @@ import communication.channel.FileInputChannel;
 import communication.channel.InputChannel;
 import communication.channel.OutputChannel;
 import communication.channel.Record;
+import communication.channel.RecordBatch;
+import communication.partitioners.HashPartitioner;
+import communication.partitioners.Partitioner;
+import communication.serialization.EncodedRecord;
 import communication.shufflers.RecordReaderShuffler;
 import communication.shufflers.RecordWriterShuffler;
 
+import enums.ShufflingPolicy;
+
 import execinfo.Energy;
 import execinfo.NodeGroup;
 import execinfo.ProgressReport;
@@ -59,6 +66,13 @@ public abstract class Node implements Serializable, Runnable {
 	protected RecordReaderShuffler readersShuffler;
 	protected RecordWriterShuffler writersShuffler;
 
+	protected ShufflingPolicy shufflingPolicy;
+
+	protected Partitioner<Object> partitioner;
+
+	protected String[] partitionChannelNames;
+	protected OutputChannel[] partitionChannels;
+
 	/////////////////////////
 	// RUNNING INFORMATION //
 	/////////////////////////
@@ -69,6 +83,9 @@ public abstract class Node implements Serializable, Runnable {
 	
 	protected Energy energy;
 
+	// Set when the node could not complete its work; its NodeGroup is then reported as failed
+	private transient volatile boolean failed;
+
 	/////////////////////////
 	// PARSING INFORMATION //
 	/////////////////////////
@@ -91,6 +108,10 @@ public abstract class Node implements Serializable, Runnable {
 
 		structuralInputs = new HashMap<String, InputChannel>();
 		structuralOutputs = new HashMap<String, OutputChannel>();
+
+		shufflingPolicy = ShufflingPolicy.RANDOM;
+
+		partitioner = new HashPartitioner<Object>();
 	}
 
 	public void setName(String name) {
@@ -101,6 +122,49 @@ public abstract class Node implements Serializable, Runnable {
 		return name;
 	}
 
+	public ShufflingPolicy getShufflingPolicy() {
+		return shufflingPolicy;
+	}
+
+	/**
+	 * Sets the policy used to choose the output channel of arbitrary writes.
+	 * 
+	 * @param shufflingPolicy Policy for arbitrary writes.
+	 */
+	public void setShufflingPolicy(ShufflingPolicy shufflingPolicy) {
+		this.shufflingPolicy = shufflingPolicy;
+	}
+
+	public Partitioner<?> getPartitioner() {
+		return partitioner;
+	}
+
+	/**
+	 * Sets the partitioner used by keyed writes.
+	 * 
+	 * @param partitioner Partitioner for keyed writes.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setPartitioner(Partitioner<?> partitioner) {
+		this.partitioner = (Partitioner<Object>) partitioner;
+	}
+
+	public String[] getPartitionChannelNames() {
+		return partitionChannelNames;
+	}
+
+	/**
+	 * Sets the output channels addressed by partition index. If never set,
+	 * the output channels are taken in the order of their names.
+	 * 
+	 * @param partitionChannelNames Output channel names, indexed by partition.
+	 */
+	public void setPartitionChannelNames(String[] partitionChannelNames) {
+		this.partitionChannelNames = partitionChannelNames;
+
+		this.partitionChannels = null;
+	}
+
 	/* INPUT getters/adders */
 
 	public Set<String> getInputChannelNames() {
@@ -229,9 +293,13 @@ public abstract class Node implements Serializable, Runnable {
 		else {
 			structuralOutputs.put(target, output);
 		}
+
+		partitionChannels = null;
 	}
 
 	public OutputChannel delOutputChannel(String target) {
+		partitionChannels = null;
+
 		return outputs.remove(target);
 	}
 
@@ -253,6 +321,12 @@ public abstract class Node implements Serializable, Runnable {
 				System.err.println("Error reading channel from node " + channelName + " to node " + this);
 
 				exception.printStackTrace();
+
+				// The input was cut short, so whatever the node produces from it is incomplete
+
+				setFailed();
+
+				return null;
 			}
 		}
 
@@ -274,11 +348,40 @@ public abstract class Node implements Serializable, Runnable {
 			System.err.println("Error reading record from node " + this);
 
 			exception.printStackTrace();
+
+			setFailed();
 		}
 
 		return null;
 	}
 
+	/**
+	 * Fills the batch with records from arbitrary input channels.
+	 * 
+	 * @param batch Batch that receives the records.
+	 * 
+	 * @return Number of records appended to the batch, or 0 if all inputs are exhausted.
+	 */
+	protected int readArbitraryChannel(RecordBatch batch) {
+		if (readersShuffler == null) {
+			createReaderShuffler();
+		}
+
+		try {
+			return readersShuffler.readArbitrary(batch);
+		} catch (EOFException exception) {
+			return 0;
+		} catch (IOException exception) {
+			System.err.println("Error reading records from node " + this);
+
+			exception.printStackTrace();
+
+			setFailed();
+		}
+
+		return 0;
+	}
+
 	protected Record tryReadArbitraryChannel() {
 		// You need to create the read shuffler manually if you want to use this method
 
@@ -292,6 +395,8 @@ public abstract class Node implements Serializable, Runnable {
 			System.err.println("Error reading arbitrary record from node " + this);
 
 			exception.printStackTrace();
+
+			setFailed();
 		}
 
 		return null;
@@ -310,6 +415,8 @@ public abstract class Node implements Serializable, Runnable {
 			System.err.println("Error reading arbitrary record from node " + this);
 
 			exception.printStackTrace();
+
+			setFailed();
 		}
 
 		return null;
@@ -336,6 +443,47 @@ public abstract class Node implements Serializable, Runnable {
 		return false;
 	}
 
+	/**
+	 * Writes a record to an output channel if that can be done without blocking. Unlike the
+	 * other write functions, errors are not reported by the return value, so that they are
+	 * not taken for a destination that is not keeping up.
+	 * 
+	 * @param record Record to write.
+	 * @param channelName Name of the output channel.
+	 * 
+	 * @return True if the record was written, false if the destination is not keeping up.
+	 * 
+	 * @throws IOException If the channel does not exist, or the record cannot be written.
+	 */
+	protected boolean tryWriteChannel(Record record, String channelName) throws IOException {
+		OutputChannel outputChannel = getOutputChannel(channelName);
+
+		if (outputChannel == null) {
+			throw new IOException("Couldn't find output channel " + channelName +  " for node " + this);
+		}
+
+		return outputChannel.tryWrite(record);
+	}
+
+	protected boolean writeChannel(RecordBatch batch, String channelName) {
+		OutputChannel outputChannel = getOutputChannel(channelName);
+
+		if (outputChannel != null) {
+			try {
+				return outputChannel.writeBatch(batch);
+			} catch (IOException exception) {
+				System.err.println("Error writing record batch to node " + channelName +  " from node " + this);
+
+				exception.printStackTrace();
+				return false;
+			}
+		}
+
+		System.err.println("Couldn't find output channel " + channelName +  " for node " + this);
+
+		return false;
+	}
+
 	protected boolean writeArbitraryChannel(Record record) {
 		if (writersShuffler == null) {
 			createWriterShuffler();
@@ -352,16 +500,62 @@ public abstract class Node implements Serializable, Runnable {
 		return false;
 	}
 
+	protected boolean writeArbitraryChannel(RecordBatch batch) {
+		if (writersShuffler == null) {
+			createWriterShuffler();
+		}
+
+		try {
+			return writersShuffler.writeArbitrary(batch);
+		} catch (IOException exception) {
+			System.err.println("Error writing batch to arbitary channel from node " + this);
+
+			exception.printStackTrace();
+		}
+
+		return false;
+	}
+
 	protected boolean writeAllChannels(Record record) {
 		Set<String> outputChannelNames = getOutputChannelNames();
 
+		return writeChannels(record, outputChannelNames);
+	}
+
+	/**
+	 * Writes the same record to several output channels. The record is serialized
+	 * once, and the encoding is shared by all channels that serialize records.
+	 * 
+	 * @param record Record to write.
+	 * @param channelNames Names of the output channels.
+	 * 
+	 * @return True if the writes succeeded.
+	 */
+	protected boolean writeChannels(Record record, Collection<String> channelNames) {
+		EncodedRecord encodedRecord = new EncodedRecord(record);
+
 		boolean finalResult = true;
 
-		for (String outputChannelName: outputChannelNames) {
-			boolean immediateResult = writeChannel(record, outputChannelName);
+		for (String channelName: channelNames) {
+			OutputChannel outputChannel = getOutputChannel(channelName);
+
+			boolean immediateResult = false;
+
+			if (outputChannel != null) {
+				try {
+					immediateResult = outputChannel.writeEncoded(encodedRecord);
+				} catch (IOException exception) {
+					System.err.println("Error writing record to node " + channelName +  " from node " + this);
+
+					exception.printStackTrace();
+				}
+			}
+			else {
+				System.err.println("Couldn't find output channel " + channelName +  " for node " + this);
+			}
 
 			if (immediateResult == false) {
-				System.err.println("Error writing all records (error on channel " + outputChannelName + ") from node " + this);
+				System.err.println("Error writing all records (error on channel " + channelName + ") from node " + this);
 			}
 
 			finalResult |= immediateResult;
@@ -370,8 +564,81 @@ public abstract class Node implements Serializable, Runnable {
 		return finalResult;
 	}
 
+	protected boolean writePartition(Record record, int partition) {
+		if (partitionChannels == null) {
+			createPartitionChannels();
+		}
+
+		OutputChannel outputChannel = partitionChannels[partition];
+
+		if (outputChannel != null) {
+			try {
+				return outputChannel.write(record);
+			} catch (IOException exception) {
+				System.err.println("Error writing record to partition " + partition +  " from node " + this);
+
+				exception.printStackTrace();
+				return false;
+			}
+		}
+
+		System.err.println("Couldn't find output channel for partition " + partition +  " for node " + this);
+
+		return false;
+	}
+
+	protected boolean writePartition(RecordBatch batch, int partition) {
+		if (partitionChannels == null) {
+			createPartitionChannels();
+		}
+
+		OutputChannel outputChannel = partitionChannels[partition];
+
+		if (outputChannel != null) {
+			try {
+				return outputChannel.writeBatch(batch);
+			} catch (IOException exception) {
+				System.err.println("Error writing record batch to partition " + partition +  " from node " + this);
+
+				exception.printStackTrace();
+				return false;
+			}
+		}
+
+		System.err.println("Couldn't find output channel for partition " + partition +  " for node " + this);
+
+		return false;
+	}
+
+	/**
+	 * Writes a record to the output channel that the partitioner assigns to its key.
+	 * 
+	 * @param key Key used for routing.
+	 * @param record Record to write.
+	 * 
+	 * @return True if the write succeeded.
+	 */
+	protected boolean writePartitionedChannel(Object key, Record record) {
+		if (partitionChannels == null) {
+			createPartitionChannels();
+		}
+
+		return writePartition(record, partitioner.partition(key, partitionChannels.length));
+	}
+
 	/* Close functions */
 
+	/**
+	 * Marks the node as failed, so that its NodeGroup is reported as failed to the manager.
+	 */
+	protected void setFailed() {
+		failed = true;
+	}
+
+	public boolean hasFailed() {
+		return failed;
+	}
+
 	protected void shutdown() {
 		closeInputs(getInputChannels(FileInputChannel.class));
 
@@ -438,6 +705,17 @@ public abstract class Node implements Serializable, Runnable {
 	}
 
 	protected void createReaderShuffler(boolean structural, boolean application) {
+		createReaderShuffler(structural, application, RecordReaderShuffler.DEFAULT_QUANTUM);
+	}
+
+	/**
+	 * Creates the read shuffler over a subset of the inputs.
+	 * 
+	 * @param structural Whether structural inputs are included.
+	 * @param application Whether application inputs are included.
+	 * @param quantum Maximum number of records taken from one input before moving to the next.
+	 */
+	protected void createReaderShuffler(boolean structural, boolean application, int quantum) {
 		Map<String, InputChannel> selected = null;
 
 		if (structural && application) {
@@ -453,7 +731,7 @@ public abstract class Node implements Serializable, Runnable {
 		}
 
 		try {
-			readersShuffler = new RecordReaderShuffler(selected);
+			readersShuffler = new RecordReaderShuffler(selected, quantum);
 		} catch (IOException exception) {
 			System.err.println("Error creating read shuffler for node " + this);
 
@@ -464,7 +742,27 @@ public abstract class Node implements Serializable, Runnable {
 	protected void createWriterShuffler() {
 		Collection<OutputChannel> outputChannels = getOutputChannels();
 
-		writersShuffler = new RecordWriterShuffler(outputChannels);
+		writersShuffler = new RecordWriterShuffler(outputChannels, shufflingPolicy);
+	}
+
+	/**
+	 * Resolves the partition channel names into output channels, so that keyed
+	 * writes do not look channels up by name.
+	 */
+	protected void createPartitionChannels() {
+		String[] channelNames = partitionChannelNames;
+
+		if (channelNames == null) {
+			channelNames = getOutputChannelNames().toArray(new String[0]);
+
+			Arrays.sort(channelNames);
+		}
+
+		partitionChannels = new OutputChannel[channelNames.length];
+
+		for (int i = 0; i < channelNames.length; i++) {
+			partitionChannels[i] = getOutputChannel(channelNames[i]);
+		}
 	}
 
 	/* Running functions */
@@ -518,6 +816,17 @@ public abstract class Node implements Serializable, Runnable {
 
 	public abstract void run();
 
+	/**
+	 * Tells whether the node can be driven from outside instead of running on its own:
+	 * by its producer, in the producer's thread (NODEBOX), or in time slices by a pool
+	 * of threads (TIMEBOX). Fusable nodes must be StatefulNodes.
+	 * 
+	 * @return True if the node can be fused to its producer or run in time slices.
+	 */
+	public boolean isFusable() {
+		return false;
+	}
+
 	public String toString() {
 		return name;
 	}
@@ -21,16 +21,79 @@ public class FileInputChannel extends InputChannel {
 
 	protected Filename filename;
 
+	protected int splitIndex;
+	protected int splitCount;
+
+	protected boolean streaming;
+
 	public FileInputChannel(String name, Filename filename) {
+		this(name, filename, 0, 1);
+	}
+
+	/**
+	 * Constructor for a channel that reads one of several disjoint byte ranges of a splittable file.
+	 * 
+	 * @param name Name of the channel.
+	 * @param filename File to be read.
+	 * @param splitIndex Index of the range read by this channel.
+	 * @param splitCount Number of ranges the file is divided into.
+	 */
+	public FileInputChannel(String name, Filename filename, int splitIndex, int splitCount) {
 		super(name);
 
 		this.filename = filename;
+
+		this.splitIndex = splitIndex;
+		this.splitCount = splitCount;
 	}
 
 	public final Filename getFilename() {
 		return filename;
 	}
 
+	public final boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets whether the file is read while its writer is still producing it.
+	 * 
+	 * @param streaming True to follow the file until its completion marker is committed.
+	 */
+	public final void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public final boolean isSplit() {
+		return splitCount > 1;
+	}
+
+	public final int getSplitIndex() {
+		return splitIndex;
+	}
+
+	public final int getSplitCount() {
+		return splitCount;
+	}
+
+	/**
+	 * Obtains the start of the byte range read by this channel, based on the current file length.
+	 */
+	public final long getSplitStart() {
+		return (getLength() * splitIndex) / splitCount;
+	}
+
+	/**
+	 * Obtains the end of the byte range read by this channel, based on the current file length.
+	 */
+	public final long getSplitEnd() {
+		if (splitIndex == splitCount - 1) {
+			return Long.MAX_VALUE;
+		}
+
+		return (getLength() * (splitIndex + 1)) / splitCount;
+	}
+
 	public final long getLength() {
 		return FileHelper.length(filename);
 	}
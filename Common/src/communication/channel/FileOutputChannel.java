@@ -16,21 +16,72 @@ import java.io.IOException;
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
+import communication.writers.FileWriterOptions;
+
+import enums.CompressionType;
+
 public class FileOutputChannel extends OutputChannel {
 	private static final long serialVersionUID = 1L;
 
 	protected Filename filename;
 
+	protected FileWriterOptions options;
+
 	public FileOutputChannel(String name, Filename filename) {
+		this(name, filename, CompressionType.NONE);
+	}
+
+	public FileOutputChannel(String name, Filename filename, CompressionType compressionType) {
 		super(name);
 
 		this.filename = filename;
+
+		this.options = new FileWriterOptions(compressionType);
 	}
 
 	public final Filename getFilename() {
 		return filename;
 	}
 
+	/**
+	 * Obtains the options used to create the writer of the file.
+	 */
+	public final FileWriterOptions getOptions() {
+		return options;
+	}
+
+	public final CompressionType getCompressionType() {
+		return options.getCompressionType();
+	}
+
+	public final void setCompressionType(CompressionType compressionType) {
+		options.setCompressionType(compressionType);
+	}
+
+	public final boolean isSplittable() {
+		return options.isSplittable();
+	}
+
+	public final void setSplittable(boolean splittable) {
+		options.setSplittable(splittable);
+	}
+
+	public final boolean isStreaming() {
+		return options.isStreaming();
+	}
+
+	public final void setStreaming(boolean streaming) {
+		options.setStreaming(streaming);
+	}
+
+	public final boolean isWriteBehind() {
+		return options.isWriteBehind();
+	}
+
+	public final void setWriteBehind(boolean writeBehind) {
+		options.setWriteBehind(writeBehind);
+	}
+
 	public final long getLength(){
 		return FileHelper.length(filename);
 	}
@@ -29,10 +29,18 @@ public abstract class InputChannel extends Channel implements RecordReader {
 		this.reader = recordReader;
 	}
 
+	public final RecordReader getRecordReader() {
+		return reader;
+	}
+
 	public final Record read() throws EOFException, IOException {
 		return reader.read();
 	}
 
+	public final int readBatch(RecordBatch batch) throws EOFException, IOException {
+		return reader.readBatch(batch);
+	}
+
 	public final void close() throws IOException {
 		reader.close();
 	}
@@ -13,7 +13,10 @@ package communication.channel;
 
 import java.io.IOException;
 
+import communication.interfaces.EncodedRecordWriter;
+import communication.interfaces.NonBlockingRecordWriter;
 import communication.interfaces.RecordWriter;
+import communication.serialization.EncodedRecord;
 
 public class OutputChannel extends Channel implements RecordWriter {
 	private static final long serialVersionUID = 1L;
@@ -28,10 +31,48 @@ public class OutputChannel extends Channel implements RecordWriter {
 		this.writer = writer;
 	}
 
+	public final RecordWriter getRecordWriter() {
+		return writer;
+	}
+
 	public final boolean write(Record record) throws IOException {
 		return writer.write(record);
 	}
 
+	/**
+	 * Writes a record that is being written to other channels as well. Serializing writers
+	 * reuse its shared encoding; the others receive the record itself.
+	 * 
+	 * @param encodedRecord Record and its shared encoding.
+	 */
+	public final boolean writeEncoded(EncodedRecord encodedRecord) throws IOException {
+		if (writer instanceof EncodedRecordWriter) {
+			return ((EncodedRecordWriter) writer).writeEncoded(encodedRecord);
+		}
+
+		return writer.write(encodedRecord.getRecord());
+	}
+
+	/**
+	 * Writes a record if that can be done without waiting for the destination. Writers
+	 * that never wait for their destination (such as files) always write the record.
+	 * 
+	 * @param record Record to write.
+	 * 
+	 * @return True if the record was written, false if the destination is not keeping up.
+	 */
+	public final boolean tryWrite(Record record) throws IOException {
+		if (writer instanceof NonBlockingRecordWriter) {
+			return ((NonBlockingRecordWriter) writer).tryWrite(record);
+		}
+
+		return writer.write(record);
+	}
+
+	public final boolean writeBatch(RecordBatch batch) throws IOException {
+		return writer.writeBatch(batch);
+	}
+
 	public boolean flush() throws IOException {
 		return writer.flush();
 	}
@@ -0,0 +1,146 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.channel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Fixed-capacity group of records that is moved through the channels as a single unit,
+ * amortizing the per-record cost of locking, dispatch and queue handoff.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RecordBatch implements Iterable<Record> {
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private Record[] records;
+
+	private int size;
+
+	public RecordBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public RecordBatch(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Batch capacity must be positive");
+		}
+
+		this.records = new Record[capacity];
+
+		this.size = 0;
+	}
+
+	/**
+	 * Creates a batch holding a single record.
+	 * 
+	 * @param record Record contained in the batch.
+	 */
+	public RecordBatch(Record record) {
+		this.records = new Record[] { record };
+
+		this.size = 1;
+	}
+
+	/**
+	 * Appends a record to the batch.
+	 * 
+	 * @param record Record to append.
+	 * 
+	 * @return False if the batch is full, true otherwise.
+	 */
+	public boolean add(Record record) {
+		if (size == records.length) {
+			return false;
+		}
+
+		records[size++] = record;
+
+		return true;
+	}
+
+	public Record get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of batch bounds (size " + size + ")");
+		}
+
+		return records[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return records.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isFull() {
+		return size == records.length;
+	}
+
+	/**
+	 * Empties the batch, releasing the references to the records it held.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			records[i] = null;
+		}
+
+		size = 0;
+	}
+
+	/**
+	 * Obtains a batch with the same records, trimmed to the current size. Used by
+	 * writers that hand the batch to another thread, since the caller is free to reuse
+	 * the original batch after the write returns.
+	 * 
+	 * @return A copy of this batch.
+	 */
+	public RecordBatch copy() {
+		RecordBatch result = new RecordBatch(Math.max(size, 1));
+
+		System.arraycopy(records, 0, result.records, 0, size);
+
+		result.size = size;
+
+		return result;
+	}
+
+	public Iterator<Record> iterator() {
+		return new Iterator<Record>() {
+			private int position = 0;
+
+			public boolean hasNext() {
+				return position < size;
+			}
+
+			public Record next() {
+				if (position >= size) {
+					throw new NoSuchElementException();
+				}
+
+				return records[position++];
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -13,13 +13,59 @@ package communication.channel;
 
 import java.net.InetSocketAddress;
 
+import enums.CompressionType;
+
 public class TCPOutputChannel extends OutputChannel {
 	private static final long serialVersionUID = 1L;
 
 	private InetSocketAddress socketAddress;
 
+	private boolean spillEnabled;
+
+	private CompressionType compressionType;
+
+	private boolean compressionAdaptive;
+
 	public TCPOutputChannel(String name) {
+		this(name, false);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param name Name of the destination node.
+	 * @param spillEnabled True if frames should spill to a local file when the destination lags.
+	 */
+	public TCPOutputChannel(String name, boolean spillEnabled) {
 		super(name);
+
+		this.spillEnabled = spillEnabled;
+
+		this.compressionType = CompressionType.NONE;
+	}
+
+	public final boolean isSpillEnabled() {
+		return spillEnabled;
+	}
+
+	public final CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	public final boolean isCompressionAdaptive() {
+		return compressionAdaptive;
+	}
+
+	/**
+	 * Sets the compression of the frames sent through this channel.
+	 * 
+	 * @param compressionType Codec for the frames, or CompressionType.NONE to send them as written.
+	 * @param compressionAdaptive True if the compression should stop while it does not pay off.
+	 */
+	public final void setCompression(CompressionType compressionType, boolean compressionAdaptive) {
+		this.compressionType = compressionType;
+
+		this.compressionAdaptive = compressionAdaptive;
 	}
 
 	public final InetSocketAddress getSocketAddress() {
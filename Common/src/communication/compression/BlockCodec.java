@@ -0,0 +1,74 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.compression;
+
+import java.io.IOException;
+
+import enums.CompressionType;
+
+/**
+ * Compresses and decompresses independent blocks of bytes. Codec instances
+ * keep internal state and must not be shared between threads.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class BlockCodec {
+	/**
+	 * Obtains a new codec of the specified type.
+	 * 
+	 * @param type Type of the codec.
+	 * 
+	 * @return A new codec, or null for CompressionType.NONE.
+	 */
+	public static BlockCodec getInstance(CompressionType type) {
+		switch (type) {
+		case DEFLATE:
+			return new DeflateBlockCodec();
+		case LZ:
+			return new LZBlockCodec();
+		default:
+			return null;
+		}
+	}
+
+	public abstract CompressionType getType();
+
+	/**
+	 * Compresses a block.
+	 * 
+	 * @param source Uncompressed data.
+	 * @param length Length of the uncompressed data.
+	 * @param destination Buffer that receives the compressed data.
+	 * 
+	 * @return Length of the compressed data, or -1 if it would not fit in the destination.
+	 */
+	public abstract int compress(byte[] source, int length, byte[] destination);
+
+	/**
+	 * Decompresses a block.
+	 * 
+	 * @param source Compressed data.
+	 * @param sourceLength Length of the compressed data.
+	 * @param destination Buffer that receives the uncompressed data.
+	 * @param destinationLength Expected length of the uncompressed data.
+	 * 
+	 * @throws IOException If the compressed data is corrupted.
+	 */
+	public abstract void decompress(byte[] source, int sourceLength, byte[] destination, int destinationLength) throws IOException;
+
+	/**
+	 * Releases resources held by the codec.
+	 */
+	public void end() {
+	}
+}
@@ -0,0 +1,93 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import enums.CompressionType;
+
+/**
+ * Block codec based on the JDK zlib implementation.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class DeflateBlockCodec extends BlockCodec {
+	private Deflater deflater;
+	private Inflater inflater;
+
+	public DeflateBlockCodec() {
+		this(Deflater.BEST_SPEED);
+	}
+
+	public DeflateBlockCodec(int level) {
+		this.deflater = new Deflater(level, true);
+		this.inflater = new Inflater(true);
+	}
+
+	public CompressionType getType() {
+		return CompressionType.DEFLATE;
+	}
+
+	public int compress(byte[] source, int length, byte[] destination) {
+		deflater.reset();
+
+		deflater.setInput(source, 0, length);
+		deflater.finish();
+
+		int written = 0;
+
+		while (!deflater.finished()) {
+			if (written == destination.length) {
+				return -1;
+			}
+
+			written += deflater.deflate(destination, written, destination.length - written);
+		}
+
+		return written;
+	}
+
+	public void decompress(byte[] source, int sourceLength, byte[] destination, int destinationLength) throws IOException {
+		inflater.reset();
+
+		inflater.setInput(source, 0, sourceLength);
+
+		int read = 0;
+
+		try {
+			while (read < destinationLength) {
+				int immediate = inflater.inflate(destination, read, destinationLength - read);
+
+				if (immediate == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				read += immediate;
+			}
+		} catch (DataFormatException exception) {
+			throw new IOException("Corrupted deflate block: " + exception.getMessage());
+		}
+
+		if (read != destinationLength) {
+			throw new IOException("Truncated deflate block (expected " + destinationLength + " bytes, obtained " + read + ")");
+		}
+	}
+
+	public void end() {
+		deflater.end();
+		inflater.end();
+	}
+}
@@ -0,0 +1,276 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.compression;
+
+import java.io.IOException;
+
+import enums.CompressionType;
+
+/**
+ * Compresses the frames of a TCP channel. A compressed frame starts with COMPRESSED_FRAME_MAGIC,
+ * followed by the codec identifier (1 byte) and the uncompressed length (4 bytes), and can be
+ * told apart from a record stream by its first two bytes. Frames that do not get smaller are
+ * sent uncompressed.
+ * 
+ * In adaptive mode, the compressor keeps moving averages of the compression ratio and of the
+ * compression time per byte, and stops compressing when the time spent compressing a frame
+ * exceeds the time saved on the link (whose bandwidth is given by the hammr.tcp.bandwidth
+ * property, in bytes per second), or when the frames shrink by less than MINIMUM_SAVING.
+ * While stopped, one frame in PROBE_INTERVAL is still compressed, so that the compressor
+ * notices when the data or the load changes.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FrameCompressor {
+	public static final int COMPRESSED_FRAME_MAGIC = 0x4843;
+
+	public static final int HEADER_SIZE = 7;
+
+	private static final long LINK_BANDWIDTH = Long.getLong("hammr.tcp.bandwidth", 125000000L);
+
+	private static final double MINIMUM_SAVING = 0.1;
+
+	private static final int PROBE_INTERVAL = 32;
+
+	// Weight of the last frame in the moving averages
+
+	private static final double SMOOTHING = 0.25;
+
+	private BlockCodec codec;
+
+	private boolean adaptive;
+
+	// Compressed data, and the compressed frame handed to the caller
+
+	private byte[] compressed;
+
+	private byte[] frame;
+
+	/* Adaptive state */
+	private boolean enabled;
+
+	private int framesUntilProbe;
+
+	private boolean measured;
+
+	private double averageRatio;
+	private double averageNanosPerByte;
+
+	/* Statistics */
+	private long framesCompressed;
+
+	private long bytesIn;
+	private long bytesOut;
+
+	private long compressionTime;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param compressionType Codec used for the frames.
+	 * @param adaptive True to stop compressing when it does not pay off.
+	 */
+	public FrameCompressor(CompressionType compressionType, boolean adaptive) {
+		this.codec = BlockCodec.getInstance(compressionType);
+
+		if (codec == null) {
+			throw new IllegalArgumentException("Frame compression requires a codec");
+		}
+
+		this.adaptive = adaptive;
+
+		this.compressed = new byte[0];
+
+		this.enabled = true;
+	}
+
+	/**
+	 * Compresses a frame, unless the adaptive policy decided against it.
+	 * 
+	 * @param source Array holding the frame.
+	 * @param length Length of the frame.
+	 * 
+	 * @return The length of the compressed frame, obtained with getFrame(), or -1 if the frame should be sent as is.
+	 */
+	public int compress(byte[] source, int length) {
+		if (!enabled) {
+			if (--framesUntilProbe > 0) {
+				return -1;
+			}
+		}
+
+		if (compressed.length < length) {
+			compressed = new byte[length];
+			frame = new byte[HEADER_SIZE + length];
+		}
+
+		long start = System.nanoTime();
+
+		int compressedLength = codec.compress(source, length, compressed);
+
+		long elapsed = System.nanoTime() - start;
+
+		compressionTime += elapsed;
+
+		if (compressedLength >= length) {
+			compressedLength = -1;
+		}
+
+		if (adaptive) {
+			update(length, compressedLength < 0 ? length : compressedLength, elapsed);
+		}
+
+		if (compressedLength < 0) {
+			return -1;
+		}
+
+		framesCompressed++;
+
+		bytesIn += length;
+		bytesOut += HEADER_SIZE + compressedLength;
+
+		frame[0] = (byte) (COMPRESSED_FRAME_MAGIC >>> 8);
+		frame[1] = (byte) COMPRESSED_FRAME_MAGIC;
+		frame[2] = (byte) codec.getType().getIdentifier();
+		frame[3] = (byte) (length >>> 24);
+		frame[4] = (byte) (length >>> 16);
+		frame[5] = (byte) (length >>> 8);
+		frame[6] = (byte) length;
+
+		System.arraycopy(compressed, 0, frame, HEADER_SIZE, compressedLength);
+
+		return HEADER_SIZE + compressedLength;
+	}
+
+	/**
+	 * Obtains the array holding the last compressed frame. The array is reused by the following calls.
+	 */
+	public byte[] getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Tests whether the compressor currently compresses every frame.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long getFramesCompressed() {
+		return framesCompressed;
+	}
+
+	/**
+	 * Obtains the number of frame bytes that were compressed.
+	 */
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	/**
+	 * Obtains the number of bytes the compressed frames took, including their headers.
+	 */
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	/**
+	 * Obtains the ratio between the compressed and the original sizes of the compressed frames.
+	 */
+	public double getCompressionRatio() {
+		return bytesIn == 0L ? 1.0 : (double) bytesOut / bytesIn;
+	}
+
+	/**
+	 * Obtains the time spent compressing, including the frames that did not shrink, in milliseconds.
+	 */
+	public long getCompressionTime() {
+		return compressionTime / 1000000L;
+	}
+
+	public void end() {
+		codec.end();
+	}
+
+	private void update(int length, int compressedLength, long elapsed) {
+		double ratio = (double) compressedLength / length;
+		double nanosPerByte = (double) elapsed / length;
+
+		if (!measured) {
+			averageRatio = ratio;
+			averageNanosPerByte = nanosPerByte;
+
+			measured = true;
+		}
+		else {
+			averageRatio += SMOOTHING * (ratio - averageRatio);
+			averageNanosPerByte += SMOOTHING * (nanosPerByte - averageNanosPerByte);
+		}
+
+		// Compare the time to compress a byte with the link time saved per byte
+
+		double savedNanosPerByte = (1.0 - averageRatio) * 1e9 / LINK_BANDWIDTH;
+
+		enabled = averageRatio <= 1.0 - MINIMUM_SAVING && averageNanosPerByte < savedNanosPerByte;
+
+		if (!enabled) {
+			framesUntilProbe = PROBE_INTERVAL;
+		}
+	}
+
+	/**
+	 * Tests whether a frame was produced by a FrameCompressor.
+	 */
+	public static boolean isCompressed(byte[] frame) {
+		return frame.length >= HEADER_SIZE && ((frame[0] & 0xFF) << 8 | (frame[1] & 0xFF)) == COMPRESSED_FRAME_MAGIC;
+	}
+
+	/**
+	 * Obtains the codec type of a compressed frame.
+	 */
+	public static CompressionType getCompressionType(byte[] frame) throws IOException {
+		CompressionType compressionType = CompressionType.fromIdentifier(frame[2]);
+
+		if (compressionType == null || compressionType == CompressionType.NONE) {
+			throw new IOException("Unknown codec identifier " + frame[2] + " in compressed frame");
+		}
+
+		return compressionType;
+	}
+
+	/**
+	 * Restores the original contents of a compressed frame.
+	 * 
+	 * @param frame Compressed frame.
+	 * @param codec Codec of the type returned by getCompressionType().
+	 * 
+	 * @return The original frame.
+	 */
+	public static byte[] decompress(byte[] frame, BlockCodec codec) throws IOException {
+		int length = (frame[3] & 0xFF) << 24 | (frame[4] & 0xFF) << 16 | (frame[5] & 0xFF) << 8 | (frame[6] & 0xFF);
+
+		if (length < 0) {
+			throw new IOException("Invalid length " + length + " in compressed frame");
+		}
+
+		byte[] source = new byte[frame.length - HEADER_SIZE];
+
+		System.arraycopy(frame, HEADER_SIZE, source, 0, source.length);
+
+		byte[] result = new byte[length];
+
+		codec.decompress(source, source.length, result, length);
+
+		return result;
+	}
+}
@@ -0,0 +1,246 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import enums.CompressionType;
+
+/**
+ * Fast LZ77-class block codec, trading compression ratio for speed.
+ * 
+ * The compressed block is a sequence of (token, literals, match) groups. The token
+ * holds the literal count in its high nibble and the match length minus MINIMUM_MATCH in its
+ * low nibble; a nibble value of 15 is followed by extra length bytes, each adding up to 255.
+ * The match is described by a 2-byte little-endian offset. The last group carries only
+ * literals.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LZBlockCodec extends BlockCodec {
+	private static final int MINIMUM_MATCH = 4;
+
+	private static final int MAXIMUM_OFFSET = 65535;
+
+	private static final int HASH_BITS = 14;
+
+	private int[] table;
+
+	// Position of the token of the group being written
+
+	private int lastToken;
+
+	public LZBlockCodec() {
+		this.table = new int[1 << HASH_BITS];
+	}
+
+	public CompressionType getType() {
+		return CompressionType.LZ;
+	}
+
+	public int compress(byte[] source, int length, byte[] destination) {
+		Arrays.fill(table, -1);
+
+		int output = 0;
+
+		int anchor = 0;
+		int position = 0;
+
+		while (position <= length - MINIMUM_MATCH) {
+			int sequence = readInt(source, position);
+
+			int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+
+			int reference = table[hash];
+
+			table[hash] = position;
+
+			if (reference < 0 || position - reference > MAXIMUM_OFFSET || readInt(source, reference) != sequence) {
+				position++;
+
+				continue;
+			}
+
+			int matchLength = MINIMUM_MATCH;
+
+			while (position + matchLength < length && source[reference + matchLength] == source[position + matchLength]) {
+				matchLength++;
+			}
+
+			output = writeSequence(source, anchor, position - anchor, destination, output);
+
+			if (output < 0 || output + 2 > destination.length) {
+				return -1;
+			}
+
+			int offset = position - reference;
+
+			destination[output++] = (byte) offset;
+			destination[output++] = (byte) (offset >>> 8);
+
+			output = writeLength(destination, output, matchLength - MINIMUM_MATCH);
+
+			if (output < 0) {
+				return -1;
+			}
+
+			position += matchLength;
+			anchor = position;
+		}
+
+		return writeSequence(source, anchor, length - anchor, destination, output);
+	}
+
+	public void decompress(byte[] source, int sourceLength, byte[] destination, int destinationLength) throws IOException {
+		int input = 0;
+		int output = 0;
+
+		try {
+			while (input < sourceLength) {
+				int token = source[input++] & 0xFF;
+
+				// Literals
+
+				int literalLength = token >>> 4;
+
+				if (literalLength == 15) {
+					int extra;
+
+					do {
+						extra = source[input++] & 0xFF;
+
+						literalLength += extra;
+					} while (extra == 255);
+				}
+
+				if (input + literalLength > sourceLength || output + literalLength > destinationLength) {
+					throw new IOException("Corrupted LZ block (literals out of bounds)");
+				}
+
+				System.arraycopy(source, input, destination, output, literalLength);
+
+				input += literalLength;
+				output += literalLength;
+
+				if (input == sourceLength) {
+					break;
+				}
+
+				// Match
+
+				int offset = (source[input] & 0xFF) | ((source[input + 1] & 0xFF) << 8);
+
+				input += 2;
+
+				int matchLength = token & 0x0F;
+
+				if (matchLength == 15) {
+					int extra;
+
+					do {
+						extra = source[input++] & 0xFF;
+
+						matchLength += extra;
+					} while (extra == 255);
+				}
+
+				matchLength += MINIMUM_MATCH;
+
+				int reference = output - offset;
+
+				if (offset == 0 || reference < 0 || output + matchLength > destinationLength) {
+					throw new IOException("Corrupted LZ block (match out of bounds)");
+				}
+
+				// Byte by byte, since the match may overlap the output
+
+				for (int i = 0; i < matchLength; i++) {
+					destination[output++] = destination[reference++];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException exception) {
+			throw new IOException("Corrupted LZ block (truncated)");
+		}
+
+		if (output != destinationLength) {
+			throw new IOException("Truncated LZ block (expected " + destinationLength + " bytes, obtained " + output + ")");
+		}
+	}
+
+	/**
+	 * Writes the token and the literals of a group. The match length nibble is left
+	 * as zero, and is filled by writeLength() if a match follows.
+	 */
+	private int writeSequence(byte[] source, int start, int literalLength, byte[] destination, int output) {
+		int token = output;
+
+		if (output >= destination.length) {
+			return -1;
+		}
+
+		destination[output++] = (byte) (Math.min(literalLength, 15) << 4);
+
+		if (literalLength >= 15) {
+			output = writeExtraLength(destination, output, literalLength - 15);
+
+			if (output < 0) {
+				return -1;
+			}
+		}
+
+		if (output + literalLength > destination.length) {
+			return -1;
+		}
+
+		System.arraycopy(source, start, destination, output, literalLength);
+
+		lastToken = token;
+
+		return output + literalLength;
+	}
+
+	private int writeLength(byte[] destination, int output, int length) {
+		destination[lastToken] |= (byte) Math.min(length, 15);
+
+		if (length >= 15) {
+			return writeExtraLength(destination, output, length - 15);
+		}
+
+		return output;
+	}
+
+	private int writeExtraLength(byte[] destination, int output, int remaining) {
+		while (remaining >= 255) {
+			if (output >= destination.length) {
+				return -1;
+			}
+
+			destination[output++] = (byte) 255;
+
+			remaining -= 255;
+		}
+
+		if (output >= destination.length) {
+			return -1;
+		}
+
+		destination[output++] = (byte) remaining;
+
+		return output;
+	}
+
+	private static int readInt(byte[] buffer, int position) {
+		return (buffer[position] & 0xFF) | ((buffer[position + 1] & 0xFF) << 8) | ((buffer[position + 2] & 0xFF) << 16) | ((buffer[position + 3] & 0xFF) << 24);
+	}
+}
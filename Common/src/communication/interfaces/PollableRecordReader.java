@@ -0,0 +1,44 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.interfaces;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import communication.channel.RecordBatch;
+
+/**
+ * Reader whose records are produced by other threads, and that can therefore be
+ * inspected without blocking.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public interface PollableRecordReader extends RecordReader {
+	/**
+	 * Appends the records that are immediately available, without blocking.
+	 * 
+	 * @param batch Batch that receives the records.
+	 * 
+	 * @return Number of records appended to the batch, possibly 0.
+	 * 
+	 * @throws EOFException If the reader is exhausted and no record was appended.
+	 */
+	public abstract int pollBatch(RecordBatch batch) throws EOFException, IOException;
+
+	/**
+	 * Sets the listener notified whenever records become available or the reader ends.
+	 * 
+	 * @param listener Listener to be notified, or null to remove the current one.
+	 */
+	public abstract void setReadinessListener(ReadinessListener listener);
+}
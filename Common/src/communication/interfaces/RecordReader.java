@@ -15,8 +15,22 @@ import java.io.EOFException;
 import java.io.IOException;
 
 import communication.channel.Record;
+import communication.channel.RecordBatch;
 
 public interface RecordReader {
 	public abstract Record read() throws EOFException, IOException;
+
+	/**
+	 * Appends records to the batch until it is full or no more records are immediately
+	 * available. Blocks only until the first record is obtained.
+	 * 
+	 * @param batch Batch that receives the records.
+	 * 
+	 * @return Number of records appended to the batch.
+	 * 
+	 * @throws EOFException If the reader is exhausted and no record was appended.
+	 */
+	public abstract int readBatch(RecordBatch batch) throws EOFException, IOException;
+
 	public abstract void close() throws IOException;
 }
@@ -14,9 +14,19 @@ package communication.interfaces;
 import java.io.IOException;
 
 import communication.channel.Record;
+import communication.channel.RecordBatch;
 
 public interface RecordWriter {
 	public abstract boolean write(Record channelElement) throws IOException;
+
+	/**
+	 * Writes all records in the batch. The writer does not retain the batch,
+	 * so the caller may clear and reuse it once the call returns.
+	 * 
+	 * @param batch Batch of records to write.
+	 */
+	public abstract boolean writeBatch(RecordBatch batch) throws IOException;
+
 	public abstract boolean flush() throws IOException;
 	public abstract boolean close() throws IOException;
 }
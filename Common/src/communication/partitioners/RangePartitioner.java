@@ -0,0 +1,59 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.partitioners;
+
+/**
+ * Partitions ordered keys by a sorted list of split points: keys smaller than
+ * the first split point go to partition 0, keys between the first and the
+ * second split points go to partition 1, and so on.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RangePartitioner<K extends Comparable<? super K>> extends Partitioner<K> {
+	private static final long serialVersionUID = 1L;
+
+	private K[] splitPoints;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param splitPoints Sorted split points, one less than the number of partitions.
+	 */
+	public RangePartitioner(K[] splitPoints) {
+		this.splitPoints = splitPoints;
+	}
+
+	public K[] getSplitPoints() {
+		return splitPoints;
+	}
+
+	public int partition(K key, int numberPartitions) {
+		int low = 0;
+		int high = splitPoints.length;
+
+		// Find the number of split points smaller than or equal to the key
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (splitPoints[middle].compareTo(key) <= 0) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+
+		return Math.min(low, numberPartitions - 1);
+	}
+}
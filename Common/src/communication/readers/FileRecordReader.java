@@ -11,29 +11,237 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package communication.readers;
 
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
 import communication.channel.Record;
-import communication.interfaces.RecordReader;
+import communication.channel.RecordBatch;
+import communication.interfaces.PollableRecordReader;
+import communication.interfaces.ReadinessListener;
+import communication.serialization.SerializerRegistry;
+import communication.streams.BlockCompressedInputStream;
 import communication.streams.RecordInputStream;
+import communication.streams.TailInputStream;
 
-public class FileRecordReader implements RecordReader {
+/**
+ * Reads records from a file. Streaming readers follow a file while its writer produces it:
+ * their batches end as soon as the next record would have to wait for the writer, and they
+ * can be polled, so that a slow file does not hold back the other inputs of a shuffler. Their
+ * readiness listeners are notified whenever the file grows (see StreamingFileWatcher).
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FileRecordReader implements PollableRecordReader {
 	private RecordInputStream recordInputStream;
 
+	// File and registry of a streaming reader, opened by its first read
+
+	private Filename streamingFilename;
+
+	private SerializerRegistry serializerRegistry;
+
+	private TailInputStream tailInputStream;
+
 	public FileRecordReader(Filename filename) throws FileNotFoundException, IOException {
-		recordInputStream = new RecordInputStream(FileHelper.openR(filename));
+		this(filename, null);
+	}
+
+	public FileRecordReader(Filename filename, SerializerRegistry serializerRegistry) throws FileNotFoundException, IOException {
+		this(filename, serializerRegistry, true);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param filename File to be read.
+	 * @param serializerRegistry Registry used to decode binary files, or null to use the built-in types.
+	 * @param mapped If true, POSIX files are read through memory mapping.
+	 */
+	public FileRecordReader(Filename filename, SerializerRegistry serializerRegistry, boolean mapped) throws FileNotFoundException, IOException {
+		this(filename, serializerRegistry, mapped, false, 0L, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param filename File to be read.
+	 * @param serializerRegistry Registry used to decode binary files, or null to use the built-in types.
+	 * @param mapped If true, POSIX files are read through memory mapping; ignored for streaming readers.
+	 * @param streaming If true, the file is followed while its writer produces it, and it is only opened by the first read.
+	 */
+	public FileRecordReader(Filename filename, SerializerRegistry serializerRegistry, boolean mapped, boolean streaming) throws FileNotFoundException, IOException {
+		this(filename, serializerRegistry, mapped, streaming, 0L, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor for reading the records of a byte range of a splittable file. Files that
+	 * are not splittable are read entirely by the range that starts at offset 0.
+	 * 
+	 * @param filename File to be read.
+	 * @param serializerRegistry Registry used to decode binary files, or null to use the built-in types.
+	 * @param start Start of the range (inclusive).
+	 * @param end End of the range (exclusive).
+	 */
+	public FileRecordReader(Filename filename, SerializerRegistry serializerRegistry, long start, long end) throws FileNotFoundException, IOException {
+		this(filename, serializerRegistry, true, false, start, end);
+	}
+
+	private FileRecordReader(Filename filename, SerializerRegistry serializerRegistry, boolean mapped, boolean streaming, long start, long end) throws FileNotFoundException, IOException {
+		if (streaming) {
+			// The file may not even exist before its writer starts
+
+			this.streamingFilename = filename;
+
+			this.serializerRegistry = serializerRegistry;
+
+			return;
+		}
+
+		InputStream inputStream;
+
+		if (mapped) {
+			inputStream = FileHelper.openMappedR(filename);
+		}
+		else {
+			inputStream = new BufferedInputStream(FileHelper.openR(filename));
+		}
+
+		open(inputStream, serializerRegistry, start, end);
+	}
+
+	/**
+	 * Tells whether a file was written in the splittable format, and thus can be read in byte ranges.
+	 * 
+	 * @param filename File to check.
+	 * 
+	 * @return True if the file is splittable, false if it is not, or if it cannot be read.
+	 */
+	public static boolean isSplittable(Filename filename) {
+		try {
+			InputStream inputStream = new BufferedInputStream(FileHelper.openR(filename));
+
+			try {
+				return RecordInputStream.isSplittable(inputStream);
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException exception) {
+			return false;
+		}
+	}
+
+	private void openStreaming() throws IOException {
+		if (tailInputStream == null) {
+			tailInputStream = new TailInputStream(streamingFilename);
+		}
+
+		open(new BufferedInputStream(tailInputStream), serializerRegistry, 0L, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Tells whether the next record of a streaming reader can be started without waiting for
+	 * the writer. A record that the writer has only partially flushed is still waited for.
+	 * 
+	 * @return True if the next read would not wait for the writer, false otherwise.
+	 */
+	private boolean isStreamReady() throws IOException {
+		if (tailInputStream == null) {
+			tailInputStream = new TailInputStream(streamingFilename);
+		}
+
+		if (recordInputStream != null && recordInputStream.available() > 0) {
+			return true;
+		}
+
+		return tailInputStream.isReady();
+	}
+
+	private void open(InputStream inputStream, SerializerRegistry serializerRegistry, long start, long end) throws IOException {
+		// Block-compressed files are recognized by their header
+
+		if (BlockCompressedInputStream.isBlockCompressed(inputStream)) {
+			recordInputStream = new RecordInputStream(new BlockCompressedInputStream(inputStream), serializerRegistry, start, end);
+		}
+		else {
+			recordInputStream = new RecordInputStream(inputStream, serializerRegistry, start, end);
+		}
 	}
 
 	public synchronized Record read() throws EOFException, IOException {
+		if (recordInputStream == null) {
+			openStreaming();
+		}
+
 		return recordInputStream.readRecord();
 	}
 
+	public synchronized int readBatch(RecordBatch batch) throws EOFException, IOException {
+		if (recordInputStream == null) {
+			openStreaming();
+		}
+
+		int added = 0;
+
+		while (!batch.isFull()) {
+			Record record;
+
+			try {
+				record = recordInputStream.readRecord();
+			} catch (EOFException exception) {
+				if (added == 0) {
+					throw exception;
+				}
+
+				break;
+			}
+
+			// Records of unknown classes are reported and skipped by the stream
+			if (record != null) {
+				batch.add(record);
+
+				added++;
+			}
+
+			// Streaming files deliver what the writer has produced so far instead of waiting for a whole batch
+
+			if (added > 0 && streamingFilename != null && !isStreamReady()) {
+				break;
+			}
+		}
+
+		return added;
+	}
+
+	public synchronized int pollBatch(RecordBatch batch) throws EOFException, IOException {
+		if (streamingFilename != null && !isStreamReady()) {
+			return 0;
+		}
+
+		return readBatch(batch);
+	}
+
+	/**
+	 * Only streaming readers notify the listener; the records of other files are always available.
+	 */
+	public void setReadinessListener(ReadinessListener listener) {
+		if (streamingFilename != null) {
+			StreamingFileWatcher.getInstance().watch(this, streamingFilename, listener);
+		}
+	}
+
 	public void close() throws IOException {
-		recordInputStream.close();
+		if (streamingFilename != null) {
+			StreamingFileWatcher.getInstance().watch(this, streamingFilename, null);
+		}
+
+		if (recordInputStream != null) {
+			recordInputStream.close();
+		}
 	}
 }
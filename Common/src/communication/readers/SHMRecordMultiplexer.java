@@ -15,82 +15,266 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import utilities.MPSCRingBuffer;
 
 import communication.channel.Record;
-import communication.interfaces.RecordReader;
+import communication.channel.RecordBatch;
+import communication.interfaces.PollableRecordReader;
+import communication.interfaces.ReadinessListener;
+
+/**
+ * Merges the records of several producers into a single reader. Writes are handed over
+ * through a lock-free ring: single records travel as they are, and batch writes are handed
+ * over as a unit. The ring capacity therefore counts writes, whatever their size.
+ * 
+ * The reader parks when the ring is empty and is woken up by the next write, or by the
+ * close of the last origin, which signals the end of the stream. Producers that find the
+ * ring full back off until the reader frees a slot, unless the multiplexer is unbounded:
+ * writes that find the ring full then go to an overflow queue, so that producers never wait.
+ * Offers still fail once the ring is full, even if the multiplexer is unbounded, so that
+ * producers with flow control of their own (such as TCP senders waiting for credit) keep it.
+ * 
+ * Only one thread should consume from the multiplexer.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SHMRecordMultiplexer implements PollableRecordReader {
+	/**
+	 * Default ring capacity, overridable with the hammr.shm.capacity system property.
+	 */
+	public static final int DEFAULT_CAPACITY = Integer.getInteger("hammr.shm.capacity", 1024);
+
+	// Spins before a blocked reader or writer starts parking
+
+	private static final int SPIN_LIMIT = 64;
 
-public class SHMRecordMultiplexer implements RecordReader {
-	private static int DEFAULT_LIMIT = 32;
-	private static int DEFAULT_RETRY = 250;
+	// Upper bound for a single park; a safety net only, wake-ups are explicit
+
+	private static final long PARK_LIMIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+	// Park interval of producers waiting for space
+
+	private static final long BACKOFF = TimeUnit.MICROSECONDS.toNanos(50);
 
 	protected Set<String> origins;
 
-	protected BlockingQueue<Record> queue;
+	private MPSCRingBuffer<Object> ring;
+
+	// Writes that did not fit in the ring, for unbounded multiplexers only
+
+	private Queue<Object> overflow;
+
+	// Set once the last origin closes
+
+	private volatile boolean finished;
+
+	// First origin whose stream was cut short, if any
+
+	private volatile String failedOrigin;
+
+	// Reader thread, and whether it is (about to be) parked
+
+	private volatile Thread consumer;
+
+	private volatile boolean waiting;
+
+	// Notified after each write, for readers that poll several multiplexers
+
+	private volatile ReadinessListener listener;
+
+	// Batch being consumed by the reader, and the position of its next record
+
+	private RecordBatch current;
+
+	private int position;
+
+	// Holder used to consume single-record writes as batches
+
+	private RecordBatch single;
 
 	public SHMRecordMultiplexer(Set<String> origins) {
+		this(origins, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param origins Names of the producers.
+	 * @param capacity Maximum number of pending writes; rounded up to a power of two.
+	 */
+	public SHMRecordMultiplexer(Set<String> origins, int capacity) {
+		this(origins, capacity, true);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param origins Names of the producers.
+	 * @param capacity Number of writes held in the ring; rounded up to a power of two.
+	 * @param bounded False if writes that do not fit in the ring should be queued instead of waiting for space.
+	 */
+	public SHMRecordMultiplexer(Set<String> origins, int capacity, boolean bounded) {
 		this.origins = Collections.synchronizedSet(new HashSet<String>());
 
 		this.origins.addAll(origins);
 
-		this.queue = new ArrayBlockingQueue<Record>(DEFAULT_LIMIT);
+		this.ring = new MPSCRingBuffer<Object>(capacity);
+
+		if (!bounded) {
+			this.overflow = new ConcurrentLinkedQueue<Object>();
+		}
+
+		this.single = new RecordBatch(1);
+
+		this.finished = (origins.size() == 0);
 	}
 
-	public Record read() throws EOFException, IOException {
-		Record record;
+	public synchronized Record read() throws EOFException, IOException {
+		if (hasCurrent() || takeCurrent(-1L)) {
+			return current.get(position++);
+		}
 
-		while (true) {
-			try {
-				record = queue.poll(DEFAULT_RETRY, TimeUnit.MILLISECONDS);
+		throw endOfStream();
+	}
 
-				if (record != null) {
-					return record;
-				}
-				else if (origins.size() == 0) {
-					throw new EOFException();
+	public synchronized int readBatch(RecordBatch batch) throws EOFException, IOException {
+		if (!hasCurrent() && !takeCurrent(-1L)) {
+			throw endOfStream();
+		}
+
+		int added = 0;
+
+		while (!batch.isFull()) {
+			if (!hasCurrent() && !pollCurrent()) {
+				break;
+			}
+
+			batch.add(current.get(position++));
+
+			added++;
+		}
+
+		return added;
+	}
+
+	public synchronized int pollBatch(RecordBatch batch) throws EOFException, IOException {
+		int added = 0;
+
+		while (!batch.isFull()) {
+			if (!hasCurrent() && !pollCurrent()) {
+				if (added > 0 || !finished) {
+					break;
 				}
-			} catch (InterruptedException exception) {
-				System.err.println("Unexpected thread interruption while waiting for a read");
 
-				exception.printStackTrace();
+				// A producer may have enqueued its last batch right before closing
+
+				if (!pollCurrent()) {
+					throw endOfStream();
+				}
 			}
+
+			batch.add(current.get(position++));
+
+			added++;
 		}
+
+		return added;
 	}
 
-	public Record tryRead() throws EOFException, IOException {
-		return queue.poll();
+	public void setReadinessListener(ReadinessListener listener) {
+		this.listener = listener;
 	}
 
-	public Record tryRead(int timeout, TimeUnit timeUnit) throws IOException {
-		while(true) {
-			try {
-				return queue.poll(timeout, timeUnit);
-			} catch (InterruptedException exception) {
-				System.err.println("Unexpected thread interruption while waiting for a read");
+	public synchronized Record tryRead() throws EOFException, IOException {
+		if (hasCurrent() || pollCurrent()) {
+			return current.get(position++);
+		}
 
-				exception.printStackTrace();
-			}
+		return null;
+	}
+
+	public synchronized Record tryRead(int timeout, TimeUnit timeUnit) throws IOException {
+		if (hasCurrent() || takeCurrent(timeUnit.toNanos(timeout))) {
+			return current.get(position++);
 		}
+
+		return null;
 	}
 
-	public Record peek() {
-		return queue.peek();
+	public synchronized Record peek() {
+		if (hasCurrent() || pollCurrent()) {
+			return current.get(position);
+		}
+
+		return null;
 	}
-	
+
 	public boolean write(String origin, Record record) throws IOException {
-		try {
-			queue.put(record);
-		} catch (InterruptedException exception) {
-			System.err.println("Unexpected thread interruption while waiting for write");
+		return put(record);
+	}
 
-			exception.printStackTrace();
-			return false;
+	/**
+	 * Enqueues a batch of records. The multiplexer keeps the batch, so the caller must
+	 * not modify it afterwards.
+	 * 
+	 * @param origin Producer of the batch.
+	 * @param batch Batch of records.
+	 */
+	public boolean write(String origin, RecordBatch batch) throws IOException {
+		return put(batch);
+	}
+
+	/**
+	 * Enqueues a record if there is space, without blocking.
+	 * 
+	 * @param origin Producer of the record.
+	 * @param record Record.
+	 * 
+	 * @return True if the record was enqueued, false if the multiplexer is full.
+	 */
+	public boolean offer(String origin, Record record) {
+		return offerElement(record);
+	}
+
+	/**
+	 * Enqueues a batch of records if there is space, without blocking. The multiplexer
+	 * keeps the batch if it is accepted.
+	 * 
+	 * @param origin Producer of the batch.
+	 * @param batch Batch of records.
+	 * 
+	 * @return True if the batch was enqueued, false if the multiplexer is full.
+	 */
+	public boolean offer(String origin, RecordBatch batch) {
+		return offerElement(batch);
+	}
+
+	/**
+	 * Tells whether a producer is still open.
+	 * 
+	 * @param origin Name of the producer.
+	 * 
+	 * @return False once the producer closes; its records may still be waiting for the reader.
+	 */
+	public boolean isOpen(String origin) {
+		return origins.contains(origin);
+	}
+
+	/**
+	 * Estimates the number of writes not yet consumed by the reader.
+	 */
+	public int getBacklog() {
+		if (overflow != null) {
+			return ring.size() + overflow.size();
 		}
 
-		return true;
+		return ring.size();
 	}
 
 	public void close(String origin) {
@@ -99,6 +283,27 @@ public class SHMRecordMultiplexer implements RecordReader {
 		if (result == false) {
 			System.err.println("Error deleting origin " + origin + " for SHM channel multiplexer");
 		}
+
+		if (origins.isEmpty()) {
+			finished = true;
+
+			signal();
+		}
+	}
+
+	/**
+	 * Closes a producer whose stream was cut short, as when its sender aborted. Once the
+	 * records already enqueued are consumed, the reader gets an IOException instead of the
+	 * end of the stream.
+	 * 
+	 * @param origin Name of the producer.
+	 */
+	public void fail(String origin) {
+		if (failedOrigin == null) {
+			failedOrigin = origin;
+		}
+
+		close(origin);
 	}
 
 	public void close() throws IOException {
@@ -106,4 +311,197 @@ public class SHMRecordMultiplexer implements RecordReader {
 
 		throw new IOException();
 	}
+
+	/**
+	 * Obtains the exception reporting the end of the stream: an IOException if a producer failed.
+	 */
+	private IOException endOfStream() {
+		if (failedOrigin != null) {
+			return new IOException("Input from \"" + failedOrigin + "\" was cut short");
+		}
+
+		return new EOFException();
+	}
+
+	private boolean offerElement(Object element) {
+		// Offers never overflow, and wait for the overflow to drain so that they are not delivered before it
+
+		if (overflow != null && !overflow.isEmpty()) {
+			return false;
+		}
+
+		if (!ring.offer(element)) {
+			return false;
+		}
+
+		signal();
+
+		return true;
+	}
+
+	/**
+	 * Inserts a record or batch, backing off while the ring of a bounded multiplexer is full.
+	 * 
+	 * @param element Record or batch.
+	 * 
+	 * @return True if the element was inserted, false if the producer was interrupted.
+	 */
+	private boolean put(Object element) {
+		if (overflow != null) {
+			// Once writes overflow, the next ones follow them, so that each producer keeps its order
+
+			if (!overflow.isEmpty() || !ring.offer(element)) {
+				overflow.add(element);
+			}
+
+			signal();
+
+			return true;
+		}
+
+		int spins = 0;
+
+		while (!ring.offer(element)) {
+			if (spins < SPIN_LIMIT) {
+				spins++;
+
+				Thread.yield();
+			}
+			else {
+				LockSupport.parkNanos(this, BACKOFF);
+			}
+
+			if (Thread.interrupted()) {
+				System.err.println("Unexpected thread interruption while waiting for write");
+
+				return false;
+			}
+		}
+
+		signal();
+
+		return true;
+	}
+
+	/**
+	 * Wakes up the reader if it is parked, and notifies the listener, if any.
+	 */
+	private void signal() {
+		if (waiting) {
+			LockSupport.unpark(consumer);
+		}
+
+		ReadinessListener readinessListener = listener;
+
+		if (readinessListener != null) {
+			readinessListener.readerReady(this);
+		}
+	}
+
+	private boolean hasCurrent() {
+		return current != null && position < current.size();
+	}
+
+	/**
+	 * Makes the informed ring element the current batch.
+	 * 
+	 * @param element Record or batch obtained from the ring.
+	 * 
+	 * @return True if the element has records to be read.
+	 */
+	private boolean setCurrent(Object element) {
+		if (element instanceof RecordBatch) {
+			current = (RecordBatch) element;
+		}
+		else {
+			single.clear();
+			single.add((Record) element);
+
+			current = single;
+		}
+
+		position = 0;
+
+		return hasCurrent();
+	}
+
+	/**
+	 * Obtains the next non-empty batch without blocking.
+	 * 
+	 * @return True if a batch was obtained, false otherwise.
+	 */
+	private boolean pollCurrent() {
+		Object element;
+
+		while ((element = ring.poll()) != null || (overflow != null && (element = overflow.poll()) != null)) {
+			if (setCurrent(element)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Blocks until the next non-empty batch is obtained, the stream ends, or the timeout expires.
+	 * 
+	 * @param timeout Timeout in nanoseconds, or a negative number to wait indefinitely.
+	 * 
+	 * @return True if a batch was obtained, false if the stream ended or the timeout expired.
+	 */
+	private boolean takeCurrent(long timeout) {
+		long deadline = System.nanoTime() + timeout;
+
+		for (int spins = 0; spins < SPIN_LIMIT; spins++) {
+			if (pollCurrent()) {
+				return true;
+			}
+
+			if (finished) {
+				// A producer may have enqueued its last batch right before closing
+
+				return pollCurrent();
+			}
+
+			Thread.yield();
+		}
+
+		consumer = Thread.currentThread();
+
+		try {
+			while (true) {
+				// Raise the flag before checking, so that a concurrent write either is seen or unparks us
+
+				waiting = true;
+
+				if (pollCurrent()) {
+					return true;
+				}
+
+				if (finished) {
+					return pollCurrent();
+				}
+
+				long interval = PARK_LIMIT;
+
+				if (timeout >= 0L) {
+					long remaining = deadline - System.nanoTime();
+
+					if (remaining <= 0L) {
+						return false;
+					}
+
+					interval = Math.min(interval, remaining);
+				}
+
+				LockSupport.parkNanos(this, interval);
+
+				if (Thread.interrupted()) {
+					System.err.println("Unexpected thread interruption while waiting for a read");
+				}
+			}
+		} finally {
+			waiting = false;
+		}
+	}
 }
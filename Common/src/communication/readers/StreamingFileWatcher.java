@@ -0,0 +1,157 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package communication.readers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+
+import communication.interfaces.ReadinessListener;
+import communication.interfaces.RecordReader;
+
+/**
+ * Watches the files of streaming readers on a single thread, notifying their listeners
+ * whenever a file appears, grows or is completed. The files are only inspected, never read,
+ * so that a reader waiting for the rest of a record does not hold the watcher.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+class StreamingFileWatcher {
+	private static final long WATCH_INTERVAL = 10;
+
+	private static final StreamingFileWatcher instance = new StreamingFileWatcher();
+
+	private ConcurrentMap<RecordReader, Watch> watches;
+
+	private Thread thread;
+
+	private StreamingFileWatcher() {
+		this.watches = new ConcurrentHashMap<RecordReader, Watch>();
+	}
+
+	public static StreamingFileWatcher getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts notifying a listener about the file of a reader, replacing its previous listener.
+	 * 
+	 * @param reader Reader of the file.
+	 * @param filename File being produced.
+	 * @param listener Listener, or null to stop watching the file.
+	 */
+	public synchronized void watch(RecordReader reader, Filename filename, ReadinessListener listener) {
+		if (listener == null) {
+			watches.remove(reader);
+
+			return;
+		}
+
+		watches.put(reader, new Watch(filename, listener));
+
+		if (thread == null) {
+			thread = new Thread(new Runnable() {
+				public void run() {
+					watchFiles();
+				}
+			}, "StreamingFileWatcher");
+
+			thread.setDaemon(true);
+
+			thread.start();
+		}
+	}
+
+	private void watchFiles() {
+		while (true) {
+			synchronized (this) {
+				if (watches.isEmpty()) {
+					thread = null;
+
+					return;
+				}
+			}
+
+			for (Map.Entry<RecordReader, Watch> entry: watches.entrySet()) {
+				Watch watch = entry.getValue();
+
+				try {
+					if (watch.changed()) {
+						watch.listener.readerReady(entry.getKey());
+					}
+				} catch (RuntimeException exception) {
+					System.err.println("Error notifying the reader of streaming file " + watch.filename);
+
+					exception.printStackTrace();
+				}
+
+				// Once the file is complete, the reader has everything it needs
+
+				if (watch.complete) {
+					watches.remove(entry.getKey(), watch);
+				}
+			}
+
+			try {
+				Thread.sleep(WATCH_INTERVAL);
+			} catch (InterruptedException exception) {
+				System.err.println("Unexpected thread interruption while watching streaming files");
+			}
+		}
+	}
+
+	private static class Watch {
+		private Filename filename;
+
+		private Filename completionMarker;
+
+		private ReadinessListener listener;
+
+		private long length;
+
+		private boolean complete;
+
+		public Watch(Filename filename, ReadinessListener listener) {
+			this.filename = filename;
+
+			this.completionMarker = FileHelper.getCompletionMarker(filename);
+
+			this.listener = listener;
+
+			this.length = -1L;
+		}
+
+		/**
+		 * Tells whether the file appeared, grew or was completed since the last call.
+		 */
+		public boolean changed() {
+			// The marker is committed after the last byte, so it is checked first
+
+			boolean marked = FileHelper.exists(completionMarker);
+
+			long current = FileHelper.exists(filename) ? FileHelper.length(filename) : -1L;
+
+			boolean result = (current != length) || marked;
+
+			length = current;
+
+			complete = marked;
+
+			return result;
+		}
+	}
+}
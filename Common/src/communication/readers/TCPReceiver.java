@@ -0,0 +1,1142 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.readers;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import utilities.MappedRing;
+
+import communication.channel.Record;
+import communication.channel.RecordBatch;
+import communication.compression.BlockCodec;
+import communication.compression.FrameCompressor;
+import communication.streams.RecordInputStream;
+
+import enums.CompressionType;
+
+/**
+ * Receives the TCP traffic of all multiplexers in the JVM on a single port, using a small,
+ * fixed number of selector threads.
+ * 
+ * Senders share one connection (link) per receiver, obtained from TCPConnectionPool, and
+ * open a logical channel on it for each producer. Every frame has a header with the channel
+ * identifier (4 bytes), the frame type (1 byte) and the payload length (4 bytes). An OPEN frame
+ * names the destination multiplexer and the origin, DATA frames hold complete record streams
+ * (possibly compressed by a FrameCompressor), and a CLOSE frame ends the channel; an ABORT frame
+ * ends a channel whose sender could not send all of its records. A channel
+ * that cannot be opened, for instance because its destination is unknown, is answered with
+ * a REJECT frame and its frames are ignored; the other channels of the link are not affected.
+ * 
+ * Frames are decoded by the selector threads and delivered to the multiplexers without
+ * blocking. Each channel has a credit of INITIAL_CREDIT bytes; once the records of a DATA
+ * frame are accepted by the multiplexer, a CREDIT frame returning its length is sent back
+ * on the link. Since senders never exceed their credit, the records waiting for a full
+ * multiplexer are bounded per channel, and the other channels of the link are not held back.
+ * 
+ * Senders on the same machine may open a channel with an OPEN_RING frame instead, naming a
+ * MappedRing file that carries the record streams. The ring channels are read by the selector
+ * thread of their link, which spins over them while they have records and sleeps in the
+ * selector otherwise; a sender that finds the ring reader asleep sends a WAKEUP frame. The
+ * CLOSE frame of a ring channel takes effect after its ring is drained.
+ * 
+ * Senders in the same JVM bypass the receiver altogether: they obtain the destination
+ * multiplexer with getLocalMultiplexer() and write the records to it directly, as SHM
+ * writers do, closing the channel with closeLocal().
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPReceiver {
+	public static final byte FRAME_OPEN = 1;
+	public static final byte FRAME_DATA = 2;
+	public static final byte FRAME_CLOSE = 3;
+	public static final byte FRAME_CREDIT = 4;
+	public static final byte FRAME_OPEN_RING = 5;
+	public static final byte FRAME_WAKEUP = 6;
+	public static final byte FRAME_REJECT = 7;
+	public static final byte FRAME_ABORT = 8;
+
+	public static final int INITIAL_CREDIT = 256 * 1024;
+
+	private static final int HEADER_SIZE = 9;
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAXIMUM_FRAME_SIZE = 64 * 1024 * 1024;
+
+	// Interval for retrying deliveries to full multiplexers, in milliseconds
+	private static final int RETRY_INTERVAL = 5;
+
+	// Idle rounds over the rings before the selector thread sleeps
+	private static final int RING_SPINS = 128;
+
+	// Maximum sleep while rings are open, in milliseconds; a safety net only, wake-ups are explicit
+	private static final int RING_SLEEP = 100;
+
+	private static TCPReceiver instance;
+
+	private ServerSocketChannel serverChannel;
+
+	private SelectorLoop[] loops;
+
+	private int nextLoop;
+
+	private Map<String, Registration> registrations;
+
+	public static synchronized TCPReceiver getInstance() throws IOException {
+		if (instance == null) {
+			instance = new TCPReceiver(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Obtains the receiver of this JVM without starting it.
+	 * 
+	 * @return The receiver, or null if no multiplexer was created in this JVM.
+	 */
+	public static synchronized TCPReceiver getExistingInstance() {
+		return instance;
+	}
+
+	private TCPReceiver(int numberLoops) throws IOException {
+		registrations = new ConcurrentHashMap<String, Registration>();
+
+		loops = new SelectorLoop[numberLoops];
+
+		for (int i = 0; i < numberLoops; i++) {
+			loops[i] = new SelectorLoop(i);
+		}
+
+		nextLoop = 0;
+
+		serverChannel = ServerSocketChannel.open();
+
+		serverChannel.socket().bind(new InetSocketAddress(0));
+
+		serverChannel.configureBlocking(false);
+
+		loops[0].enqueue(serverChannel);
+
+		for (int i = 0; i < numberLoops; i++) {
+			loops[i].start();
+		}
+	}
+
+	/**
+	 * Obtains the address senders should connect to.
+	 */
+	public InetSocketAddress getAddress() {
+		try {
+			return new InetSocketAddress(InetAddress.getLocalHost(), serverChannel.socket().getLocalPort());
+		} catch (UnknownHostException exception) {
+			System.err.println("Unable to obtain local address");
+
+			exception.printStackTrace();
+
+			return null;
+		}
+	}
+
+	/**
+	 * Starts receiving records for a multiplexer. The multiplexer is unregistered after
+	 * the specified number of channels is closed.
+	 * 
+	 * @param identifier Identifier used by the senders to address the multiplexer.
+	 * @param multiplexer Multiplexer that receives the records.
+	 * @param expectedChannels Number of channels (one per origin) directed to the multiplexer.
+	 */
+	public void register(String identifier, TCPRecordMultiplexer multiplexer, int expectedChannels) {
+		if (expectedChannels > 0) {
+			registrations.put(identifier, new Registration(identifier, multiplexer, expectedChannels));
+		}
+	}
+
+	/**
+	 * Tests whether an address is the one of this receiver, that is, whether the
+	 * destination multiplexer lives in this JVM.
+	 * 
+	 * @param socketAddress Address obtained from the destination's getAddress().
+	 */
+	public boolean isLocal(InetSocketAddress socketAddress) {
+		if (socketAddress == null || socketAddress.getPort() != serverChannel.socket().getLocalPort()) {
+			return false;
+		}
+
+		return socketAddress.equals(getAddress());
+	}
+
+	/**
+	 * Obtains a multiplexer registered in this JVM, so that a local sender can write
+	 * to it directly. Every channel opened this way should be closed with closeLocal().
+	 * 
+	 * @param identifier Identifier of the multiplexer.
+	 * 
+	 * @return The multiplexer, or null if no multiplexer is registered with the identifier.
+	 */
+	public TCPRecordMultiplexer getLocalMultiplexer(String identifier) {
+		Registration registration = registrations.get(identifier);
+
+		if (registration == null) {
+			return null;
+		}
+
+		return registration.multiplexer;
+	}
+
+	/**
+	 * Closes a channel opened with getLocalMultiplexer().
+	 * 
+	 * @param multiplexer Multiplexer obtained from getLocalMultiplexer().
+	 * @param origin Name of the producer.
+	 */
+	public void closeLocal(TCPRecordMultiplexer multiplexer, String origin) {
+		Registration registration = registrations.get(multiplexer.getIdentifier());
+
+		if (registration != null && registration.multiplexer == multiplexer) {
+			registration.close(origin);
+		}
+		else {
+			multiplexer.close(origin);
+		}
+	}
+
+	private synchronized SelectorLoop nextLoop() {
+		SelectorLoop loop = loops[nextLoop];
+
+		nextLoop = (nextLoop + 1) % loops.length;
+
+		return loop;
+	}
+
+	private class Registration {
+		private String identifier;
+
+		private TCPRecordMultiplexer multiplexer;
+
+		private int remainingChannels;
+
+		public Registration(String identifier, TCPRecordMultiplexer multiplexer, int expectedChannels) {
+			this.identifier = identifier;
+
+			this.multiplexer = multiplexer;
+
+			this.remainingChannels = expectedChannels;
+		}
+
+		public void close(String origin) {
+			end(origin, false);
+		}
+
+		/**
+		 * Closes a channel whose records were cut short, so that the reader of the multiplexer fails.
+		 * 
+		 * @param origin Name of the producer.
+		 */
+		public void fail(String origin) {
+			end(origin, true);
+		}
+
+		private void end(String origin, boolean failed) {
+			if (failed) {
+				multiplexer.fail(origin);
+			}
+			else {
+				multiplexer.close(origin);
+			}
+
+			synchronized (this) {
+				remainingChannels--;
+
+				if (remainingChannels > 0) {
+					return;
+				}
+			}
+
+			// A newer registration with the same identifier (a later iteration) is preserved
+
+			synchronized (registrations) {
+				if (registrations.get(identifier) == this) {
+					registrations.remove(identifier);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Logical channel, carrying the records of one origin to one multiplexer.
+	 */
+	private class LogicalChannel {
+		private Link link;
+
+		private int identifier;
+
+		private Registration registration;
+
+		private String origin;
+
+		// Deliveries not yet accepted by the multiplexer
+		private Queue<Delivery> pending;
+
+		// Ring carrying the records, or null if they come in DATA frames
+		private MappedRing ring;
+
+		// Set when a ring channel is closed by the sender, but its ring is not yet drained
+		private boolean closing;
+
+		// Set once the channel is abandoned after an error
+		private boolean abandoned;
+
+		public LogicalChannel(Link link, int identifier, Registration registration, String origin, MappedRing ring) {
+			this.link = link;
+
+			this.identifier = identifier;
+
+			this.registration = registration;
+
+			this.origin = origin;
+
+			this.pending = new LinkedList<Delivery>();
+
+			this.ring = ring;
+
+			this.closing = false;
+		}
+
+		/**
+		 * Decodes the next message of the ring, if the previous ones were delivered, or
+		 * completes the closing once the ring is drained.
+		 * 
+		 * @return True if the channel made progress, false otherwise.
+		 */
+		public boolean pump() throws IOException {
+			if (!pending.isEmpty()) {
+				return false;
+			}
+
+			byte[] frame = ring.read();
+
+			if (frame != null) {
+				link.decode(this, frame, 0);
+
+				return true;
+			}
+
+			if (closing) {
+				// The sender writes all its messages before closing the channel
+
+				ring.close();
+
+				link.loop.rings.remove(this);
+
+				link.enqueue(this, new Delivery(null, 0));
+
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Performs the pending deliveries in order, as long as the multiplexer has space.
+		 * 
+		 * @return True if no delivery remains pending, false otherwise.
+		 */
+		public boolean deliver() {
+			while (!pending.isEmpty()) {
+				Delivery delivery = pending.peek();
+
+				if (delivery.failed) {
+					registration.fail(origin);
+				}
+				else if (delivery.batch == null) {
+					registration.close(origin);
+				}
+				else if (!registration.multiplexer.offer(origin, delivery.batch)) {
+					return false;
+				}
+
+				if (delivery.credit > 0) {
+					link.grant(identifier, delivery.credit);
+				}
+
+				pending.remove();
+			}
+
+			return true;
+		}
+
+		/**
+		 * Fails the channel right away, dropping its pending deliveries. Further calls have no effect.
+		 */
+		public void abandon() {
+			if (abandoned) {
+				return;
+			}
+
+			abandoned = true;
+
+			pending.clear();
+
+			link.loop.stalled.remove(this);
+
+			if (ring != null) {
+				ring.close();
+
+				link.loop.rings.remove(this);
+			}
+
+			try {
+				registration.fail(origin);
+			} catch (RuntimeException exception) {
+				System.err.println("Error closing channel from \"" + origin + "\"");
+
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Pending delivery: a batch for the multiplexer, or the closing of the channel if the batch is null.
+	 * The credit is returned to the sender once the delivery is performed.
+	 */
+	private class Delivery {
+		private RecordBatch batch;
+
+		private int credit;
+
+		// The channel is closed because its records were cut short
+		private boolean failed;
+
+		public Delivery(RecordBatch batch, int credit) {
+			this(batch, credit, false);
+		}
+
+		public Delivery(RecordBatch batch, int credit, boolean failed) {
+			this.batch = batch;
+
+			this.credit = credit;
+
+			this.failed = failed;
+		}
+	}
+
+	private class Link {
+		private SelectorLoop loop;
+
+		private SocketChannel socketChannel;
+
+		private SelectionKey key;
+
+		private Map<Integer, LogicalChannel> channels;
+
+		// Channels refused by the receiver and not yet closed by the sender
+		private Set<Integer> rejected;
+
+		private ByteBuffer header;
+
+		private int frameChannel;
+		private byte frameType;
+
+		private byte[] payload;
+		private int payloadPosition;
+
+		// Credit frames not yet written to the socket
+		private ByteBuffer outgoing;
+
+		private boolean closed;
+
+		public Link(SelectorLoop loop, SocketChannel socketChannel) {
+			this.loop = loop;
+
+			this.socketChannel = socketChannel;
+
+			this.channels = new HashMap<Integer, LogicalChannel>();
+
+			this.rejected = new HashSet<Integer>();
+
+			this.header = ByteBuffer.allocate(HEADER_SIZE);
+
+			this.outgoing = ByteBuffer.allocate(16 * (HEADER_SIZE + 4));
+
+			this.closed = false;
+		}
+
+		/**
+		 * Consumes the bytes in the buffer, processing every frame completed by them.
+		 */
+		public void consume(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				if (payload == null) {
+					while (header.hasRemaining() && buffer.hasRemaining()) {
+						header.put(buffer.get());
+					}
+
+					if (header.hasRemaining()) {
+						return;
+					}
+
+					header.flip();
+
+					frameChannel = header.getInt();
+					frameType = header.get();
+
+					int length = header.getInt();
+
+					header.clear();
+
+					if (length < 0 || length > MAXIMUM_FRAME_SIZE) {
+						throw new IOException("Invalid frame length " + length);
+					}
+
+					payload = new byte[length];
+					payloadPosition = 0;
+				}
+
+				int immediate = Math.min(buffer.remaining(), payload.length - payloadPosition);
+
+				buffer.get(payload, payloadPosition, immediate);
+
+				payloadPosition += immediate;
+
+				if (payloadPosition == payload.length) {
+					process(frameChannel, frameType, payload);
+
+					payload = null;
+				}
+			}
+		}
+
+		private void process(int identifier, byte type, byte[] frame) throws IOException {
+			if (type == FRAME_OPEN || type == FRAME_OPEN_RING) {
+				DataInputStream payloadInputStream = new DataInputStream(new ByteArrayInputStream(frame));
+
+				String destination = payloadInputStream.readUTF();
+				String origin = payloadInputStream.readUTF();
+
+				Registration registration = registrations.get(destination);
+
+				if (registration == null) {
+					reject(identifier, "Channel from \"" + origin + "\" directed to unknown destination \"" + destination + "\"");
+
+					return;
+				}
+
+				MappedRing ring = null;
+
+				if (type == FRAME_OPEN_RING) {
+					String path = payloadInputStream.readUTF();
+
+					try {
+						ring = MappedRing.open(path);
+					} catch (IOException exception) {
+						exception.printStackTrace();
+
+						reject(identifier, "Unable to open ring file " + path + " for channel from \"" + origin + "\"");
+
+						return;
+					}
+				}
+
+				LogicalChannel channel = new LogicalChannel(this, identifier, registration, origin, ring);
+
+				channels.put(identifier, channel);
+
+				if (ring != null) {
+					loop.rings.add(channel);
+				}
+
+				return;
+			}
+
+			LogicalChannel channel = channels.get(identifier);
+
+			if (channel == null) {
+				// Frames of rejected channels are ignored until the sender closes them
+
+				if (rejected.contains(identifier)) {
+					if (type == FRAME_CLOSE || type == FRAME_ABORT) {
+						rejected.remove(identifier);
+					}
+				}
+				else {
+					System.err.println("Ignoring frame of type " + type + " for unknown channel " + identifier);
+				}
+
+				return;
+			}
+
+			if (type == FRAME_CLOSE) {
+				// The channel is removed only afterwards, so that it is abandoned if the closing fails
+
+				if (channel.ring != null) {
+					channel.closing = true;
+				}
+				else {
+					enqueue(channel, new Delivery(null, 0));
+				}
+
+				channels.remove(identifier);
+
+				return;
+			}
+
+			if (type == FRAME_ABORT) {
+				System.err.println("Channel from \"" + channel.origin + "\" terminated abruptly by its sender");
+
+				if (channel.ring != null) {
+					// The ring is not drained: its records may be incomplete
+
+					channel.ring.close();
+
+					loop.rings.remove(channel);
+				}
+
+				enqueue(channel, new Delivery(null, 0, true));
+
+				channels.remove(identifier);
+
+				return;
+			}
+
+			if (type == FRAME_WAKEUP) {
+				// Receiving the frame already woke the selector thread up
+
+				return;
+			}
+
+			if (type != FRAME_DATA) {
+				throw new IOException("Unknown frame type " + type);
+			}
+
+			decode(channel, frame, frame.length);
+		}
+
+		/**
+		 * Decodes a record stream into batches for the multiplexer of a channel.
+		 * 
+		 * @param channel Channel that carried the stream.
+		 * @param frame Contents of the stream.
+		 * @param credit Credit returned to the sender once the records are delivered.
+		 */
+		private void decode(LogicalChannel channel, byte[] frame, int credit) throws IOException {
+			if (FrameCompressor.isCompressed(frame)) {
+				frame = FrameCompressor.decompress(frame, loop.getCodec(FrameCompressor.getCompressionType(frame)));
+			}
+
+			RecordInputStream recordInputStream = new RecordInputStream(new ByteArrayInputStream(frame), channel.registration.multiplexer.getSerializerRegistry());
+
+			RecordBatch batch = new RecordBatch();
+
+			while (true) {
+				Record record;
+
+				try {
+					record = recordInputStream.readRecord();
+				} catch (EOFException exception) {
+					break;
+				}
+
+				// Records of unknown classes are reported and skipped by the stream
+				if (record == null) {
+					continue;
+				}
+
+				if (batch.isFull()) {
+					enqueue(channel, new Delivery(batch, 0));
+
+					batch = new RecordBatch();
+				}
+
+				batch.add(record);
+			}
+
+			// The credit of the frame is returned with its last batch
+
+			enqueue(channel, new Delivery(batch.isEmpty() ? new RecordBatch() : batch, credit));
+		}
+
+		private void enqueue(LogicalChannel channel, Delivery delivery) {
+			boolean idle = channel.pending.isEmpty();
+
+			channel.pending.add(delivery);
+
+			if (idle && !channel.deliver()) {
+				loop.stalled.add(channel);
+			}
+		}
+
+		/**
+		 * Returns credit to the sender of a channel.
+		 */
+		public void grant(int identifier, int credit) {
+			if (closed) {
+				return;
+			}
+
+			reserve(HEADER_SIZE + 4);
+
+			outgoing.putInt(identifier);
+			outgoing.put(FRAME_CREDIT);
+			outgoing.putInt(4);
+			outgoing.putInt(credit);
+
+			write();
+		}
+
+		/**
+		 * Refuses a channel opened by the sender, keeping the link up for its other channels.
+		 * 
+		 * @param identifier Identifier of the channel.
+		 * @param reason Description of the problem.
+		 */
+		private void reject(int identifier, String reason) {
+			System.err.println(reason + "; rejecting channel " + identifier);
+
+			rejected.add(identifier);
+
+			if (closed) {
+				return;
+			}
+
+			reserve(HEADER_SIZE);
+
+			outgoing.putInt(identifier);
+			outgoing.put(FRAME_REJECT);
+			outgoing.putInt(0);
+
+			write();
+		}
+
+		/**
+		 * Makes room for an outgoing frame.
+		 */
+		private void reserve(int length) {
+			if (outgoing.remaining() < length) {
+				ByteBuffer larger = ByteBuffer.allocate(outgoing.capacity() * 2);
+
+				outgoing.flip();
+
+				larger.put(outgoing);
+
+				outgoing = larger;
+			}
+		}
+
+		/**
+		 * Writes as much of the outgoing credit frames as possible without blocking.
+		 */
+		public void write() {
+			if (closed) {
+				return;
+			}
+
+			try {
+				outgoing.flip();
+
+				socketChannel.write(outgoing);
+
+				outgoing.compact();
+			} catch (IOException exception) {
+				// The sender may already have gone away; its credit is no longer needed
+
+				outgoing.clear();
+			}
+
+			if (outgoing.position() > 0) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+			else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		public void close() {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+
+			key.cancel();
+
+			try {
+				socketChannel.close();
+			} catch (IOException exception) {
+				System.err.println("Error closing TCP link");
+
+				exception.printStackTrace();
+			}
+
+			// Channels not closed by the sender are closed so that their readers are not blocked forever
+
+			for (LogicalChannel channel: channels.values()) {
+				System.err.println("Channel from \"" + channel.origin + "\" terminated abruptly");
+
+				if (channel.ring != null) {
+					channel.ring.close();
+
+					loop.rings.remove(channel);
+				}
+
+				enqueue(channel, new Delivery(null, 0, true));
+			}
+
+			channels.clear();
+		}
+
+		/**
+		 * Closes the link after an unexpected error while handling its frames, keeping the other
+		 * links of the loop running. Its channels are abandoned, since their pending deliveries
+		 * may be the cause of the error.
+		 * 
+		 * @param exception Error that made the link unusable.
+		 */
+		public void abort(RuntimeException exception) {
+			System.err.println("Unexpected error on TCP link; closing it");
+
+			exception.printStackTrace();
+
+			for (LogicalChannel channel: channels.values()) {
+				System.err.println("Channel from \"" + channel.origin + "\" terminated abruptly");
+
+				channel.abandon();
+			}
+
+			channels.clear();
+
+			close();
+		}
+	}
+
+	private class SelectorLoop extends Thread {
+		private Selector selector;
+
+		private Queue<Object> registrationQueue;
+
+		// Channels with deliveries waiting for space in their multiplexers
+		private Set<LogicalChannel> stalled;
+
+		// Channels carried by rings, polled by this loop
+		private Set<LogicalChannel> rings;
+
+		// Consecutive rounds in which no ring made progress
+		private int idleRounds;
+
+		private ByteBuffer readBuffer;
+
+		// Codecs for the compressed frames, created as needed
+		private Map<CompressionType, BlockCodec> codecs;
+
+		public SelectorLoop(int index) throws IOException {
+			super("TCPReceiver-" + index);
+
+			setDaemon(true);
+
+			this.selector = Selector.open();
+
+			this.registrationQueue = new ConcurrentLinkedQueue<Object>();
+
+			this.stalled = new LinkedHashSet<LogicalChannel>();
+
+			this.rings = new LinkedHashSet<LogicalChannel>();
+
+			this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+			this.codecs = new HashMap<CompressionType, BlockCodec>();
+		}
+
+		/**
+		 * Obtains the codec of this loop for the specified type.
+		 */
+		public BlockCodec getCodec(CompressionType compressionType) {
+			BlockCodec codec = codecs.get(compressionType);
+
+			if (codec == null) {
+				codec = BlockCodec.getInstance(compressionType);
+
+				codecs.put(compressionType, codec);
+			}
+
+			return codec;
+		}
+
+		/**
+		 * Schedules the registration of a server channel or an accepted connection with this loop.
+		 */
+		public void enqueue(Object channel) {
+			registrationQueue.add(channel);
+
+			selector.wakeup();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					processRegistrations();
+
+					if (rings.isEmpty()) {
+						selector.select(stalled.isEmpty() ? 0 : RETRY_INTERVAL);
+					}
+					else {
+						selectWithRings();
+					}
+
+					processStalled();
+
+					Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+					while (iterator.hasNext()) {
+						SelectionKey key = iterator.next();
+
+						iterator.remove();
+
+						if (!key.isValid()) {
+							continue;
+						}
+
+						if (key.isAcceptable()) {
+							accept();
+
+							continue;
+						}
+
+						if (key.isWritable()) {
+							((Link) key.attachment()).write();
+						}
+
+						if (key.isValid() && key.isReadable()) {
+							read(key);
+						}
+					}
+				} catch (IOException exception) {
+					System.err.println("Error on TCP receiver selector loop");
+
+					exception.printStackTrace();
+				} catch (RuntimeException exception) {
+					// Errors of a single link are handled where they occur; the loop keeps serving the others
+
+					System.err.println("Unexpected error on TCP receiver selector loop");
+
+					exception.printStackTrace();
+				}
+			}
+		}
+
+		private void processRegistrations() {
+			Object channel;
+
+			while ((channel = registrationQueue.poll()) != null) {
+				try {
+					if (channel instanceof ServerSocketChannel) {
+						((ServerSocketChannel) channel).register(selector, SelectionKey.OP_ACCEPT);
+					}
+					else {
+						SocketChannel socketChannel = (SocketChannel) channel;
+
+						Link link = new Link(this, socketChannel);
+
+						link.key = socketChannel.register(selector, SelectionKey.OP_READ, link);
+					}
+				} catch (ClosedChannelException exception) {
+					System.err.println("Error registering channel for TCP receiver");
+
+					exception.printStackTrace();
+				}
+			}
+		}
+
+		/**
+		 * Polls the rings, and waits in the selector if none of them has records, after
+		 * declaring the sleep so that their senders wake this thread up.
+		 */
+		private void selectWithRings() throws IOException {
+			if (processRings()) {
+				idleRounds = 0;
+
+				selector.selectNow();
+
+				return;
+			}
+
+			if (idleRounds < RING_SPINS) {
+				idleRounds++;
+
+				selector.selectNow();
+
+				return;
+			}
+
+			for (LogicalChannel channel: rings) {
+				channel.ring.park();
+			}
+
+			// A sender may have written right before the declaration
+
+			if (!processRings()) {
+				selector.select(stalled.isEmpty() ? RING_SLEEP : RETRY_INTERVAL);
+			}
+
+			for (LogicalChannel channel: rings) {
+				channel.ring.unpark();
+			}
+
+			idleRounds = 0;
+		}
+
+		/**
+		 * Polls every ring once.
+		 * 
+		 * @return True if any ring made progress, false otherwise.
+		 */
+		private boolean processRings() {
+			boolean progress = false;
+
+			// Channels may leave the set while pumped
+
+			for (LogicalChannel channel: new ArrayList<LogicalChannel>(rings)) {
+				// Channels abandoned along with a failed link are skipped
+
+				if (!rings.contains(channel)) {
+					continue;
+				}
+
+				try {
+					progress |= channel.pump();
+				} catch (IOException exception) {
+					System.err.println("Error decoding ring channel from \"" + channel.origin + "\"");
+
+					exception.printStackTrace();
+				} catch (RuntimeException exception) {
+					channel.abandon();
+
+					channel.link.abort(exception);
+
+					continue;
+				}
+
+				if (!channel.pending.isEmpty()) {
+					stalled.add(channel);
+				}
+			}
+
+			return progress;
+		}
+
+		private void processStalled() {
+			Iterator<LogicalChannel> iterator = stalled.iterator();
+
+			Map<LogicalChannel, RuntimeException> failures = null;
+
+			while (iterator.hasNext()) {
+				LogicalChannel channel = iterator.next();
+
+				try {
+					if (channel.deliver()) {
+						iterator.remove();
+					}
+				} catch (RuntimeException exception) {
+					if (failures == null) {
+						failures = new HashMap<LogicalChannel, RuntimeException>();
+					}
+
+					failures.put(channel, exception);
+				}
+			}
+
+			// Failed links are closed after the iteration, since closing them changes the set
+
+			if (failures != null) {
+				for (Map.Entry<LogicalChannel, RuntimeException> failure: failures.entrySet()) {
+					LogicalChannel channel = failure.getKey();
+
+					channel.abandon();
+
+					channel.link.abort(failure.getValue());
+				}
+			}
+		}
+
+		private void accept() throws IOException {
+			SocketChannel socketChannel = serverChannel.accept();
+
+			if (socketChannel == null) {
+				return;
+			}
+
+			socketChannel.configureBlocking(false);
+
+			// Links are spread over the loops
+
+			nextLoop().enqueue(socketChannel);
+		}
+
+		private void read(SelectionKey key) {
+			Link link = (Link) key.attachment();
+
+			boolean finished = false;
+
+			try {
+				int read = link.socketChannel.read(readBuffer);
+
+				if (read == -1) {
+					finished = true;
+				}
+				else {
+					readBuffer.flip();
+
+					link.consume(readBuffer);
+				}
+			} catch (IOException exception) {
+				System.err.println("Error receiving data from TCP link (I/O error)");
+
+				exception.printStackTrace();
+
+				finished = true;
+			} catch (RuntimeException exception) {
+				// Malformed frames or multiplexer errors lose only this link
+
+				link.abort(exception);
+			} finally {
+				readBuffer.clear();
+			}
+
+			if (finished) {
+				link.close();
+			}
+		}
+	}
+}
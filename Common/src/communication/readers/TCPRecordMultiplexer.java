@@ -11,101 +11,92 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package communication.readers;
 
-import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.UnknownHostException;
 import java.util.Set;
 
-import communication.channel.Record;
 import communication.interfaces.RecordReader;
+import communication.serialization.SerializerRegistry;
 
+/**
+ * Multiplexer fed by TCP channels, one per origin. The channels are received by the
+ * JVM-wide TCPReceiver, which addresses the multiplexer by its identifier.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
 public class TCPRecordMultiplexer extends SHMRecordMultiplexer implements RecordReader {
-	private ServerSocket serverSocket;
+	private static long anonymousCounter = 0L;
 
-	public TCPRecordMultiplexer(Set<String> origins) throws IOException {
-		super(origins);
+	private String identifier;
 
-		serverSocket = new ServerSocket(0);
+	private SerializerRegistry serializerRegistry;
 
-		TCPAccepter accepter = new TCPAccepter();
+	private InetSocketAddress address;
 
-		accepter.start();
+	public TCPRecordMultiplexer(Set<String> origins) throws IOException {
+		this(origins, null);
 	}
 
-	public InetSocketAddress getAddress() {
-		try {
-			return new InetSocketAddress(InetAddress.getLocalHost(), serverSocket.getLocalPort());
-		} catch (UnknownHostException exception) {
-			System.err.println("Unable to obtain local address");
-
-			exception.printStackTrace();
-
-			return null;
-		}
+	public TCPRecordMultiplexer(Set<String> origins, SerializerRegistry serializerRegistry) throws IOException {
+		this(generateIdentifier(), origins, serializerRegistry);
 	}
 
-	private class TCPAccepter extends Thread {
-		public void run() {
-			for (int i = 0; i < origins.size(); i++) {
-				try {
-					Socket socket = serverSocket.accept();
-
-					TCPRelayer relayer = new TCPRelayer(socket);
-
-					relayer.start();
-				} catch (IOException exception) {
-					System.err.println("Error accepting client (I/O error)");
-
-					exception.printStackTrace();
-				}
-			}
-		}
+	/**
+	 * Constructor.
+	 * 
+	 * @param identifier Identifier used by the senders to address the multiplexer, unique within the JVM.
+	 * @param origins Names of the producers.
+	 * @param serializerRegistry Registry used to decode binary streams, or null to use the built-in types.
+	 */
+	public TCPRecordMultiplexer(String identifier, Set<String> origins, SerializerRegistry serializerRegistry) throws IOException {
+		this(identifier, origins, serializerRegistry, true);
 	}
 
-	private class TCPRelayer extends Thread {
-		private String origin;
-		private ObjectInputStream objectInputStream;
+	/**
+	 * Constructor.
+	 * 
+	 * @param identifier Identifier used by the senders to address the multiplexer, unique within the JVM.
+	 * @param origins Names of the producers.
+	 * @param serializerRegistry Registry used to decode binary streams, or null to use the built-in types.
+	 * @param bounded False if local writes that do not fit should be queued instead of waiting for space; records received from the network still wait for space.
+	 */
+	public TCPRecordMultiplexer(String identifier, Set<String> origins, SerializerRegistry serializerRegistry, boolean bounded) throws IOException {
+		super(origins, DEFAULT_CAPACITY, bounded);
+
+		this.identifier = identifier;
 
-		public TCPRelayer(Socket socket) throws IOException {
-			this.origin = null;
+		this.serializerRegistry = serializerRegistry;
 
-			this.objectInputStream = new ObjectInputStream(socket.getInputStream());
-		}
+		TCPReceiver receiver = TCPReceiver.getInstance();
 
-		public void run() {
-			Object object;
+		this.address = receiver.getAddress();
 
-			try {
-				object = objectInputStream.readObject();
+		receiver.register(identifier, this, origins.size());
+	}
 
-				origin = (String) object;
+	/**
+	 * Obtains the identifier used for a node's multiplexer.
+	 * 
+	 * @param applicationName Name of the application.
+	 * @param nodeName Name of the node.
+	 */
+	public static String getIdentifier(String applicationName, String nodeName) {
+		return applicationName + ":" + nodeName;
+	}
 
-				while (true) {
-					try {
-						object = objectInputStream.readObject();
-					} catch (EOFException exception) {
-						break;
-					}
+	private static synchronized String generateIdentifier() {
+		return "anonymous-" + (anonymousCounter++);
+	}
 
-					write(origin, (Record) object);
-				}
-			} catch (IOException exception) {
-				System.err.println("Error receiving data from client \"" + origin + "\" (I/O error)");
+	public String getIdentifier() {
+		return identifier;
+	}
 
-				exception.printStackTrace();
-			} catch (ClassNotFoundException exception) {
-				System.err.println("Error receiving data from client \"" + origin + "\" (class not found)");
+	public InetSocketAddress getAddress() {
+		return address;
+	}
 
-				exception.printStackTrace();
-			}
-			finally {
-				close(origin);
-			}
-		}
+	SerializerRegistry getSerializerRegistry() {
+		return serializerRegistry;
 	}
 }
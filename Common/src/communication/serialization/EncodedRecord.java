@@ -0,0 +1,75 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import communication.channel.Record;
+
+/**
+ * Record that is written to several channels, together with its binary encoding. The
+ * record is encoded at most once per serializer registry, so that broadcasting it to N
+ * serializing channels costs a single serialization. Channels that pass objects by
+ * reference use the record itself.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class EncodedRecord {
+	private Record record;
+
+	// Registry used for the cached encoding, and the encoding itself (type identifier followed by the contents)
+
+	private SerializerRegistry serializerRegistry;
+
+	private byte[] encoding;
+
+	public EncodedRecord(Record record) {
+		this.record = record;
+	}
+
+	public Record getRecord() {
+		return record;
+	}
+
+	/**
+	 * Obtains the record as written by SerializerRegistry.writeRecord(). The returned
+	 * array is shared by all callers and must not be modified.
+	 * 
+	 * @param serializerRegistry Registry used to encode the record.
+	 * 
+	 * @return The encoded record.
+	 */
+	public byte[] getEncoding(SerializerRegistry serializerRegistry) throws IOException {
+		if (encoding != null && this.serializerRegistry == serializerRegistry) {
+			return encoding;
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		serializerRegistry.writeRecord(new DataOutputStream(buffer), record);
+
+		// Channels normally share a registry; keep the first encoding otherwise
+
+		if (encoding == null) {
+			this.serializerRegistry = serializerRegistry;
+
+			this.encoding = buffer.toByteArray();
+
+			return encoding;
+		}
+
+		return buffer.toByteArray();
+	}
+}
@@ -0,0 +1,50 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.serialization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+import communication.channel.Record;
+
+/**
+ * Compact binary encoding for a specific Record type. Serializers are registered
+ * in a SerializerRegistry under a type identifier, which is the only type information
+ * written to the stream.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public interface RecordSerializer<T extends Record> extends Serializable {
+	/**
+	 * Writes the contents of the record.
+	 * 
+	 * @param output Destination of the encoded record.
+	 * @param record Record to be encoded.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public abstract void write(DataOutput output, T record) throws IOException;
+
+	/**
+	 * Reads a record previously written by write().
+	 * 
+	 * @param input Source of the encoded record.
+	 * 
+	 * @return The decoded record.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public abstract T read(DataInput input) throws IOException;
+}
@@ -0,0 +1,188 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Encoding primitives shared by the record serializers.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializationHelper {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_STRING = 1;
+	private static final byte TAG_INTEGER = 2;
+	private static final byte TAG_LONG = 3;
+	private static final byte TAG_DOUBLE = 4;
+	private static final byte TAG_BOOLEAN = 5;
+	private static final byte TAG_SERIALIZED = 6;
+
+	/**
+	 * Writes a non-negative integer using 7 bits per byte.
+	 */
+	public static void writeVarInt(DataOutput output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+
+			value >>>= 7;
+		}
+
+		output.writeByte(value);
+	}
+
+	public static int readVarInt(DataInput input) throws IOException {
+		int result = 0;
+
+		for (int shift = 0; shift < 32; shift += 7) {
+			int current = input.readByte();
+
+			result |= (current & 0x7F) << shift;
+
+			if ((current & 0x80) == 0) {
+				return result;
+			}
+		}
+
+		throw new IOException("Malformed variable-length integer");
+	}
+
+	/**
+	 * Writes a (possibly null) string as its UTF-8 length plus one, followed by the UTF-8 bytes.
+	 */
+	public static void writeString(DataOutput output, String string) throws IOException {
+		if (string == null) {
+			writeVarInt(output, 0);
+
+			return;
+		}
+
+		byte[] bytes = string.getBytes(UTF8);
+
+		writeVarInt(output, bytes.length + 1);
+
+		output.write(bytes);
+	}
+
+	public static String readString(DataInput input) throws IOException {
+		int length = readVarInt(input);
+
+		if (length == 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length - 1];
+
+		input.readFully(bytes);
+
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Writes an arbitrary object. Common boxed types and strings are written directly;
+	 * everything else falls back to Java serialization.
+	 */
+	public static void writeObject(DataOutput output, Object object) throws IOException {
+		if (object == null) {
+			output.writeByte(TAG_NULL);
+		}
+		else if (object instanceof String) {
+			output.writeByte(TAG_STRING);
+			writeString(output, (String) object);
+		}
+		else if (object instanceof Integer) {
+			output.writeByte(TAG_INTEGER);
+			output.writeInt((Integer) object);
+		}
+		else if (object instanceof Long) {
+			output.writeByte(TAG_LONG);
+			output.writeLong((Long) object);
+		}
+		else if (object instanceof Double) {
+			output.writeByte(TAG_DOUBLE);
+			output.writeDouble((Double) object);
+		}
+		else if (object instanceof Boolean) {
+			output.writeByte(TAG_BOOLEAN);
+			output.writeBoolean((Boolean) object);
+		}
+		else {
+			output.writeByte(TAG_SERIALIZED);
+			writeSerialized(output, object);
+		}
+	}
+
+	public static Object readObject(DataInput input) throws IOException {
+		byte tag = input.readByte();
+
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_STRING:
+			return readString(input);
+		case TAG_INTEGER:
+			return input.readInt();
+		case TAG_LONG:
+			return input.readLong();
+		case TAG_DOUBLE:
+			return input.readDouble();
+		case TAG_BOOLEAN:
+			return input.readBoolean();
+		case TAG_SERIALIZED:
+			return readSerialized(input);
+		default:
+			throw new IOException("Unknown object tag " + tag);
+		}
+	}
+
+	/**
+	 * Writes an object using Java serialization, prefixed by its length.
+	 */
+	public static void writeSerialized(DataOutput output, Object object) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(buffer);
+
+		objectOutputStream.writeObject(object);
+		objectOutputStream.close();
+
+		writeVarInt(output, buffer.size());
+
+		output.write(buffer.toByteArray());
+	}
+
+	public static Object readSerialized(DataInput input) throws IOException {
+		byte[] bytes = new byte[readVarInt(input)];
+
+		input.readFully(bytes);
+
+		ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+
+		try {
+			return objectInputStream.readObject();
+		} catch (ClassNotFoundException exception) {
+			throw new IOException("Unknown class in serialized object: " + exception.getMessage());
+		} finally {
+			objectInputStream.close();
+		}
+	}
+}
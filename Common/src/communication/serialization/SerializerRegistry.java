@@ -0,0 +1,136 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.serialization;
+
+import graphs.communication.EdgeRecordSerializer;
+import graphs.communication.VertexRecordSerializer;
+import graphs.communication.EdgeRecord;
+import graphs.communication.VertexRecord;
+import graphs.programs.pagerank.MarkerRecord;
+import graphs.programs.pagerank.MarkerRecordSerializer;
+import graphs.programs.shortestpath.SPGraphUpdateMessage;
+import graphs.programs.shortestpath.SPGraphUpdateMessageSerializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import mapreduce.communication.IntDoubleRecord;
+import mapreduce.communication.IntDoubleRecordSerializer;
+import mapreduce.communication.IntIntRecord;
+import mapreduce.communication.IntIntRecordSerializer;
+import mapreduce.communication.LongLongRecord;
+import mapreduce.communication.LongLongRecordSerializer;
+import mapreduce.communication.MRRecord;
+import mapreduce.communication.MRRecordSerializer;
+
+import communication.channel.Record;
+
+/**
+ * Maps Record classes to type identifiers and compact serializers. Records whose exact class
+ * is not registered are written with Java serialization.
+ * 
+ * The built-in record types are registered on construction; applications register their own
+ * types with identifiers starting at FIRST_APPLICATION_TYPE.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializerRegistry implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int JAVA_SERIALIZATION = 0;
+
+	public static final int FIRST_APPLICATION_TYPE = 64;
+
+	private Map<Class<? extends Record>, Integer> typeIdentifiers;
+
+	private Map<Integer, RecordSerializer<? extends Record>> serializers;
+
+	public SerializerRegistry() {
+		typeIdentifiers = new HashMap<Class<? extends Record>, Integer>();
+
+		serializers = new HashMap<Integer, RecordSerializer<? extends Record>>();
+
+		register(1, Record.class, new BasicRecordSerializer());
+		register(2, MRRecord.class, new MRRecordSerializer());
+		register(3, VertexRecord.class, new VertexRecordSerializer());
+		register(4, EdgeRecord.class, new EdgeRecordSerializer());
+		register(5, SPGraphUpdateMessage.class, new SPGraphUpdateMessageSerializer());
+		register(6, MarkerRecord.class, new MarkerRecordSerializer());
+		register(7, IntDoubleRecord.class, new IntDoubleRecordSerializer());
+		register(8, LongLongRecord.class, new LongLongRecordSerializer());
+		register(9, IntIntRecord.class, new IntIntRecordSerializer());
+	}
+
+	/**
+	 * Registers a serializer for a record type. Subclasses of the type are not covered.
+	 * 
+	 * @param typeIdentifier Identifier written to the stream before each record of this type.
+	 * @param type Exact class of the records handled by the serializer.
+	 * @param serializer Serializer used for the records of this type.
+	 */
+	public synchronized void register(int typeIdentifier, Class<? extends Record> type, RecordSerializer<? extends Record> serializer) {
+		if (typeIdentifier <= JAVA_SERIALIZATION) {
+			throw new IllegalArgumentException("Type identifier " + typeIdentifier + " is reserved");
+		}
+
+		if (serializers.containsKey(typeIdentifier) && !Integer.valueOf(typeIdentifier).equals(typeIdentifiers.get(type))) {
+			throw new IllegalArgumentException("Type identifier " + typeIdentifier + " already in use");
+		}
+
+		typeIdentifiers.put(type, typeIdentifier);
+
+		serializers.put(typeIdentifier, serializer);
+	}
+
+	/**
+	 * Writes the type identifier of the record followed by its contents.
+	 */
+	@SuppressWarnings("unchecked")
+	public void writeRecord(DataOutput output, Record record) throws IOException {
+		Integer typeIdentifier = typeIdentifiers.get(record.getClass());
+
+		if (typeIdentifier == null) {
+			SerializationHelper.writeVarInt(output, JAVA_SERIALIZATION);
+			SerializationHelper.writeSerialized(output, record);
+
+			return;
+		}
+
+		SerializationHelper.writeVarInt(output, typeIdentifier);
+
+		((RecordSerializer<Record>) serializers.get(typeIdentifier)).write(output, record);
+	}
+
+	/**
+	 * Reads a record previously written by writeRecord().
+	 */
+	public Record readRecord(DataInput input) throws IOException {
+		int typeIdentifier = SerializationHelper.readVarInt(input);
+
+		if (typeIdentifier == JAVA_SERIALIZATION) {
+			return (Record) SerializationHelper.readSerialized(input);
+		}
+
+		RecordSerializer<? extends Record> serializer = serializers.get(typeIdentifier);
+
+		if (serializer == null) {
+			throw new IOException("No serializer registered for type identifier " + typeIdentifier);
+		}
+
+		return serializer.read(input);
+	}
+}
@@ -13,85 +13,332 @@ package communication.shufflers;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import communication.channel.InputChannel;
 import communication.channel.Record;
-import communication.readers.SHMRecordMultiplexer;
+import communication.channel.RecordBatch;
+import communication.interfaces.PollableRecordReader;
+import communication.interfaces.ReadinessListener;
+import communication.interfaces.RecordReader;
 
-public class RecordReaderShuffler {
-	private SHMRecordMultiplexer multiplexer;
+/**
+ * Merges the input channels of a node into a single stream of records, without helper
+ * threads. Channels that share a reader are read through it only once.
+ * 
+ * Readers are visited in round-robin order, reading a single batch per visit. Readers fed
+ * by other threads are polled without blocking, and the remaining ones (files) are read
+ * directly, as they never wait for a producer. If no reader has records ready, the caller
+ * parks until one of them signals readiness.
+ * 
+ * The quantum sets the fairness of record reads: it is the maximum number of records taken
+ * from a reader in a single visit. Batch reads take at most one batch per visit.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RecordReaderShuffler implements ReadinessListener {
+	public static final int DEFAULT_QUANTUM = RecordBatch.DEFAULT_CAPACITY;
+
+	// Upper bound for a single park; a safety net only, wake-ups are explicit
+
+	private static final long PARK_LIMIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+	// Readers not yet exhausted, and the next one to be visited
+
+	private List<RecordReader> sources;
+
+	private int cursor;
+
+	// Records obtained for single-record reads, and the position of the next one
+
+	private RecordBatch buffer;
+
+	private int position;
+
+	// Reader thread, and whether it is (about to be) parked
+
+	private volatile Thread consumer;
+
+	private volatile boolean waiting;
+
+	// Notified whenever one of the readers becomes ready, for nodes driven by a scheduler
+
+	private volatile ReadinessListener listener;
 
 	public RecordReaderShuffler(Map<String, InputChannel> inputs) throws IOException {
-		multiplexer = new SHMRecordMultiplexer(inputs.keySet());
+		this(inputs, DEFAULT_QUANTUM);
+	}
 
-		Relayer relayer;
+	/**
+	 * Constructor method.
+	 * 
+	 * @param inputs Input channels to be merged.
+	 * @param quantum Maximum number of records taken from a reader in a single visit.
+	 */
+	public RecordReaderShuffler(Map<String, InputChannel> inputs, int quantum) throws IOException {
+		Set<RecordReader> readers = Collections.newSetFromMap(new IdentityHashMap<RecordReader, Boolean>());
 
-		for(String name: inputs.keySet()) {
-			relayer = new Relayer(name, inputs.get(name), multiplexer);
+		this.sources = new ArrayList<RecordReader>();
+
+		for (String name: inputs.keySet()) {
+			RecordReader reader = inputs.get(name).getRecordReader();
+
+			if (reader == null) {
+				throw new IOException("Input channel " + name + " has no reader");
+			}
 
-			relayer.start();
+			if (readers.add(reader)) {
+				sources.add(reader);
+
+				if (reader instanceof PollableRecordReader) {
+					((PollableRecordReader) reader).setReadinessListener(this);
+				}
+			}
 		}
+
+		this.cursor = 0;
+
+		this.buffer = new RecordBatch(quantum);
+
+		this.position = 0;
 	}
 
-	public Record readArbitrary() throws EOFException, IOException {
-		return multiplexer.read();
+	public synchronized Record readArbitrary() throws EOFException, IOException {
+		if (hasBuffered() || refill(-1L)) {
+			return buffer.get(position++);
+		}
+
+		// Unreachable: an indefinite wait only returns with records or by end of stream
+
+		throw new EOFException();
 	}
 
-	public Record tryReadArbitrary() throws IOException {
-		return multiplexer.tryRead();
+	public synchronized int readArbitrary(RecordBatch batch) throws EOFException, IOException {
+		if (!hasBuffered()) {
+			return visit(batch, -1L);
+		}
+
+		int added = 0;
+
+		while (hasBuffered() && !batch.isFull()) {
+			batch.add(buffer.get(position++));
+
+			added++;
+		}
+
+		return added;
 	}
 
-	public Record tryReadArbitrary(int timeout, TimeUnit timeUnit) throws IOException {
-		return multiplexer.tryRead(timeout, timeUnit);
+	public synchronized Record tryReadArbitrary() throws IOException {
+		try {
+			if (hasBuffered() || refill(0L)) {
+				return buffer.get(position++);
+			}
+		} catch (EOFException exception) {
+			// All inputs are exhausted
+		}
+
+		return null;
 	}
-	
-	public Record peek() {
-		return multiplexer.peek();
+
+	public synchronized Record tryReadArbitrary(int timeout, TimeUnit timeUnit) throws IOException {
+		try {
+			if (hasBuffered() || refill(Math.max(1L, timeUnit.toNanos(timeout)))) {
+				return buffer.get(position++);
+			}
+		} catch (EOFException exception) {
+			// All inputs are exhausted
+		}
+
+		return null;
 	}
 
-	private class Relayer extends Thread {
-		private String origin;
+	/**
+	 * Obtains a record if one is ready, without waiting.
+	 * 
+	 * @return A record, or null if no reader has records ready.
+	 * 
+	 * @throws EOFException If all readers are exhausted.
+	 */
+	public synchronized Record pollArbitrary() throws EOFException, IOException {
+		if (hasBuffered() || refill(0L)) {
+			return buffer.get(position++);
+		}
 
-		private InputChannel inputChannel;
+		return null;
+	}
 
-		private SHMRecordMultiplexer multiplexer;
+	public synchronized Record peek() {
+		try {
+			if (hasBuffered() || refill(0L)) {
+				return buffer.get(position);
+			}
+		} catch (EOFException exception) {
+			// All inputs are exhausted
+		} catch (IOException exception) {
+			System.err.println("Error polling inputs for reader shuffler");
 
-		public Relayer(String origin, InputChannel inputChannel, SHMRecordMultiplexer multiplexer) {
-			this.origin = origin;
+			exception.printStackTrace();
+		}
 
-			this.inputChannel = inputChannel;
+		return null;
+	}
 
-			this.multiplexer = multiplexer;
+	public void readerReady(RecordReader reader) {
+		if (waiting) {
+			LockSupport.unpark(consumer);
 		}
 
-		public void run() {
-			Record record;
+		ReadinessListener readinessListener = listener;
 
+		if (readinessListener != null) {
+			readinessListener.readerReady(reader);
+		}
+	}
+
+	/**
+	 * Tells whether a reader was exhausted, and all of its records were obtained.
+	 * 
+	 * @param reader One of the merged readers.
+	 */
+	public synchronized boolean isExhausted(RecordReader reader) {
+		return !sources.contains(reader);
+	}
+
+	/**
+	 * Sets a listener notified whenever one of the readers becomes ready.
+	 * 
+	 * @param listener Listener, or null to remove the current one.
+	 */
+	public void setReadinessListener(ReadinessListener listener) {
+		this.listener = listener;
+	}
+
+	private boolean hasBuffered() {
+		return position < buffer.size();
+	}
+
+	private boolean refill(long timeout) throws EOFException, IOException {
+		buffer.clear();
+
+		position = 0;
+
+		return visit(buffer, timeout) > 0;
+	}
+
+	/**
+	 * Reads a batch from the next reader with records ready, waiting for one if necessary.
+	 * 
+	 * @param batch Batch that receives the records.
+	 * @param timeout Timeout in nanoseconds, 0 not to wait, or a negative number to wait indefinitely.
+	 * 
+	 * @return Number of records appended to the batch, or 0 if the timeout expired.
+	 * 
+	 * @throws EOFException If all readers are exhausted.
+	 */
+	private int visit(RecordBatch batch, long timeout) throws EOFException, IOException {
+		long deadline = System.nanoTime() + timeout;
+
+		try {
 			while (true) {
-				try {
-					record = inputChannel.read();
-				} catch (EOFException exception) {
-					break;
-				} catch (IOException exception) {
-					System.err.println("Error reading channel handler for reader shuffler");
-
-					exception.printStackTrace();
-					break;
+				int added = poll(batch);
+
+				if (added > 0) {
+					return added;
 				}
 
-				try {
-					multiplexer.write(origin, record);
-				} catch (IOException exception) {
-					System.err.println("Error writing channel handler data to local reader shuffler multiplexer");
+				if (sources.isEmpty()) {
+					throw new EOFException();
+				}
 
-					exception.printStackTrace();
-					break;
+				if (timeout == 0L) {
+					return 0;
 				}
+
+				long interval = PARK_LIMIT;
+
+				if (timeout > 0L) {
+					long remaining = deadline - System.nanoTime();
+
+					if (remaining <= 0L) {
+						return 0;
+					}
+
+					interval = Math.min(interval, remaining);
+				}
+
+				if (!waiting) {
+					// Raise the flag and check again, so that a concurrent write either is seen or unparks us
+
+					consumer = Thread.currentThread();
+
+					waiting = true;
+
+					continue;
+				}
+
+				LockSupport.parkNanos(this, interval);
+
+				if (Thread.interrupted()) {
+					System.err.println("Unexpected thread interruption while waiting for a read");
+				}
+			}
+		} finally {
+			waiting = false;
+		}
+	}
+
+	/**
+	 * Visits each reader at most once, starting from the cursor, until one of them delivers
+	 * records. Exhausted readers are discarded.
+	 * 
+	 * @param batch Batch that receives the records.
+	 * 
+	 * @return Number of records appended to the batch, possibly 0.
+	 */
+	private int poll(RecordBatch batch) throws IOException {
+		int visits = sources.size();
+
+		for (int i = 0; i < visits && !sources.isEmpty(); i++) {
+			if (cursor >= sources.size()) {
+				cursor = 0;
+			}
+
+			RecordReader source = sources.get(cursor);
+
+			int added;
+
+			try {
+				if (source instanceof PollableRecordReader) {
+					added = ((PollableRecordReader) source).pollBatch(batch);
+				}
+				else {
+					added = source.readBatch(batch);
+				}
+			} catch (EOFException exception) {
+				if (source instanceof PollableRecordReader) {
+					((PollableRecordReader) source).setReadinessListener(null);
+				}
+
+				sources.remove(cursor);
+
+				continue;
 			}
 
-			multiplexer.close(origin);
+			cursor++;
+
+			if (added > 0) {
+				return added;
+			}
 		}
+
+		return 0;
 	}
 }
@@ -19,15 +19,40 @@ import java.util.Random;
 
 import communication.channel.OutputChannel;
 import communication.channel.Record;
+import communication.channel.RecordBatch;
+import communication.interfaces.BacklogReporter;
+import communication.interfaces.RecordWriter;
+import enums.ShufflingPolicy;
 
+/**
+ * Spreads records over a set of output channels. The channel of each record (or batch) is
+ * chosen according to the shuffling policy, using the backlog reported by the writers as
+ * their load.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
 public class RecordWriterShuffler {
 	private List<OutputChannel> outputChannels;
 
+	private ShufflingPolicy shufflingPolicy;
+
 	Random random;
 
 	public RecordWriterShuffler(Collection<OutputChannel> outputChannels) {
+		this(outputChannels, ShufflingPolicy.RANDOM);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param outputChannels Channels the records are spread over.
+	 * @param shufflingPolicy Policy used to choose the channel of each write.
+	 */
+	public RecordWriterShuffler(Collection<OutputChannel> outputChannels, ShufflingPolicy shufflingPolicy) {
 		this.outputChannels = new ArrayList<OutputChannel>(outputChannels);
 
+		this.shufflingPolicy = shufflingPolicy;
+
 		random = new Random();
 	}
 
@@ -36,10 +61,80 @@ public class RecordWriterShuffler {
 			return false;
 		}
 
-		int index = random.nextInt(outputChannels.size());
-
-		OutputChannel outputChannel = outputChannels.get(index);
+		OutputChannel outputChannel = outputChannels.get(select());
 
 		return outputChannel.write(record);
 	}
+
+	public boolean writeArbitrary(RecordBatch batch) throws IOException {
+		if(outputChannels.size() == 0) {
+			return false;
+		}
+
+		OutputChannel outputChannel = outputChannels.get(select());
+
+		return outputChannel.writeBatch(batch);
+	}
+
+	/**
+	 * Chooses the index of the channel for the next write.
+	 */
+	private int select() {
+		int size = outputChannels.size();
+
+		if (size == 1) {
+			return 0;
+		}
+
+		switch (shufflingPolicy) {
+		case TWO_CHOICES:
+			int first = random.nextInt(size);
+			int second = random.nextInt(size - 1);
+
+			// Two distinct channels
+
+			if (second >= first) {
+				second++;
+			}
+
+			return (getLoad(first) <= getLoad(second)) ? first : second;
+		case LEAST_LOADED:
+			// Scan from a random start, so that ties are broken randomly
+
+			int start = random.nextInt(size);
+
+			int best = start;
+
+			long bestLoad = getLoad(start);
+
+			for (int i = 1; i < size && bestLoad > 0L; i++) {
+				int index = (start + i) % size;
+
+				long load = getLoad(index);
+
+				if (load < bestLoad) {
+					best = index;
+
+					bestLoad = load;
+				}
+			}
+
+			return best;
+		default:
+			return random.nextInt(size);
+		}
+	}
+
+	/**
+	 * Obtains the load of a channel: the backlog of its writer, or 0 if the writer does not report it.
+	 */
+	private long getLoad(int index) {
+		RecordWriter writer = outputChannels.get(index).getRecordWriter();
+
+		if (writer instanceof BacklogReporter) {
+			return ((BacklogReporter) writer).getBacklog();
+		}
+
+		return 0L;
+	}
 }
@@ -0,0 +1,176 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.streams;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import communication.compression.BlockCodec;
+
+import enums.CompressionType;
+
+/**
+ * Reads streams written by BlockCompressedOutputStream.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class BlockCompressedInputStream extends InputStream {
+	private DataInputStream inputStream;
+
+	private BlockCodec[] codecs;
+
+	private byte[] block;
+	private int blockPosition;
+	private int blockLength;
+
+	private byte[] compressed;
+
+	public BlockCompressedInputStream(InputStream inputStream) throws IOException {
+		this.inputStream = new DataInputStream(inputStream);
+
+		int magic = this.inputStream.readUnsignedShort();
+
+		if (magic != BlockCompressedOutputStream.BLOCK_STREAM_MAGIC) {
+			throw new IOException("Not a block-compressed stream");
+		}
+
+		int version = this.inputStream.readUnsignedByte();
+
+		if (version != BlockCompressedOutputStream.BLOCK_STREAM_VERSION) {
+			throw new IOException("Unsupported block-compressed stream version " + version);
+		}
+
+		this.codecs = new BlockCodec[CompressionType.values().length];
+
+		this.block = new byte[0];
+		this.blockPosition = 0;
+		this.blockLength = 0;
+
+		this.compressed = new byte[0];
+	}
+
+	/**
+	 * Checks whether the stream starts with the block-compressed header, without consuming it.
+	 * 
+	 * @param inputStream Stream to check, which must support mark() and reset().
+	 */
+	public static boolean isBlockCompressed(InputStream inputStream) throws IOException {
+		inputStream.mark(2);
+
+		int first = inputStream.read();
+		int second = inputStream.read();
+
+		inputStream.reset();
+
+		return first != -1 && second != -1 && ((first << 8) | second) == BlockCompressedOutputStream.BLOCK_STREAM_MAGIC;
+	}
+
+	public int read() throws IOException {
+		while (blockPosition == blockLength) {
+			if (!readBlock()) {
+				return -1;
+			}
+		}
+
+		return block[blockPosition++] & 0xFF;
+	}
+
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		while (blockPosition == blockLength) {
+			if (!readBlock()) {
+				return -1;
+			}
+		}
+
+		int immediate = Math.min(length, blockLength - blockPosition);
+
+		System.arraycopy(block, blockPosition, buffer, offset, immediate);
+
+		blockPosition += immediate;
+
+		return immediate;
+	}
+
+	public int available() throws IOException {
+		return blockLength - blockPosition;
+	}
+
+	public void close() throws IOException {
+		for (BlockCodec codec: codecs) {
+			if (codec != null) {
+				codec.end();
+			}
+		}
+
+		inputStream.close();
+	}
+
+	/**
+	 * Reads and decompresses the next block.
+	 * 
+	 * @return False if the end of the stream was reached, true otherwise.
+	 */
+	private boolean readBlock() throws IOException {
+		int identifier = inputStream.read();
+
+		if (identifier == -1) {
+			return false;
+		}
+
+		try {
+			CompressionType type = CompressionType.fromIdentifier(identifier);
+
+			if (type == null) {
+				throw new IOException("Unknown block codec " + identifier);
+			}
+
+			int length = inputStream.readInt();
+
+			if (block.length < length) {
+				block = new byte[length];
+			}
+
+			if (type == CompressionType.NONE) {
+				inputStream.readFully(block, 0, length);
+			}
+			else {
+				int compressedLength = inputStream.readInt();
+
+				if (compressed.length < compressedLength) {
+					compressed = new byte[compressedLength];
+				}
+
+				inputStream.readFully(compressed, 0, compressedLength);
+
+				if (codecs[type.ordinal()] == null) {
+					codecs[type.ordinal()] = BlockCodec.getInstance(type);
+				}
+
+				codecs[type.ordinal()].decompress(compressed, compressedLength, block, length);
+			}
+
+			blockPosition = 0;
+			blockLength = length;
+		} catch (EOFException exception) {
+			throw new IOException("Truncated block-compressed stream");
+		}
+
+		return true;
+	}
+}
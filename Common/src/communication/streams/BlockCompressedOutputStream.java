@@ -0,0 +1,170 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.streams;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import communication.compression.BlockCodec;
+
+import enums.CompressionType;
+
+/**
+ * Output stream that groups data in fixed-size blocks, compressing each block independently.
+ * 
+ * The stream starts with BLOCK_STREAM_MAGIC and BLOCK_STREAM_VERSION. Each block has a header
+ * with the codec identifier (1 byte) and the uncompressed length (4 bytes), followed by the
+ * compressed length (4 bytes) unless the block is stored. Blocks that do not shrink are stored.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+	static final int BLOCK_STREAM_MAGIC = 0x485A;
+	static final int BLOCK_STREAM_VERSION = 1;
+
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private OutputStream outputStream;
+
+	private BlockCodec codec;
+
+	private byte[] block;
+	private int blockPosition;
+
+	private byte[] compressed;
+
+	private byte[] header;
+
+	private boolean closed;
+
+	public BlockCompressedOutputStream(OutputStream outputStream, CompressionType compressionType) throws IOException {
+		this(outputStream, compressionType, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param outputStream Underlying stream.
+	 * @param compressionType Codec applied to each block; CompressionType.NONE stores the blocks.
+	 * @param blockSize Uncompressed size of each block.
+	 */
+	public BlockCompressedOutputStream(OutputStream outputStream, CompressionType compressionType, int blockSize) throws IOException {
+		this.outputStream = outputStream;
+
+		this.codec = BlockCodec.getInstance(compressionType);
+
+		this.block = new byte[blockSize];
+		this.blockPosition = 0;
+
+		// Compressed output larger than the input is discarded, and the block is stored instead
+
+		this.compressed = new byte[blockSize];
+
+		this.header = new byte[9];
+
+		header[0] = (byte) (BLOCK_STREAM_MAGIC >>> 8);
+		header[1] = (byte) BLOCK_STREAM_MAGIC;
+		header[2] = (byte) BLOCK_STREAM_VERSION;
+
+		outputStream.write(header, 0, 3);
+	}
+
+	public void write(int value) throws IOException {
+		if (blockPosition == block.length) {
+			writeBlock();
+		}
+
+		block[blockPosition++] = (byte) value;
+	}
+
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (blockPosition == block.length) {
+				writeBlock();
+			}
+
+			int immediate = Math.min(length, block.length - blockPosition);
+
+			System.arraycopy(buffer, offset, block, blockPosition, immediate);
+
+			blockPosition += immediate;
+
+			offset += immediate;
+			length -= immediate;
+		}
+	}
+
+	/**
+	 * Writes the pending data as a (possibly partial) block and flushes the underlying stream.
+	 */
+	public void flush() throws IOException {
+		if (blockPosition > 0) {
+			writeBlock();
+		}
+
+		outputStream.flush();
+	}
+
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			flush();
+		} finally {
+			if (codec != null) {
+				codec.end();
+			}
+
+			outputStream.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		int compressedLength = -1;
+
+		if (codec != null) {
+			compressedLength = codec.compress(block, blockPosition, compressed);
+		}
+
+		if (compressedLength < 0 || compressedLength >= blockPosition) {
+			header[0] = (byte) CompressionType.NONE.getIdentifier();
+
+			writeInt(header, 1, blockPosition);
+
+			outputStream.write(header, 0, 5);
+			outputStream.write(block, 0, blockPosition);
+		}
+		else {
+			header[0] = (byte) codec.getType().getIdentifier();
+
+			writeInt(header, 1, blockPosition);
+			writeInt(header, 5, compressedLength);
+
+			outputStream.write(header, 0, 9);
+			outputStream.write(compressed, 0, compressedLength);
+		}
+
+		blockPosition = 0;
+	}
+
+	private static void writeInt(byte[] buffer, int position, int value) {
+		buffer[position] = (byte) (value >>> 24);
+		buffer[position + 1] = (byte) (value >>> 16);
+		buffer[position + 2] = (byte) (value >>> 8);
+		buffer[position + 3] = (byte) value;
+	}
+}
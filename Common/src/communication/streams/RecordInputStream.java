@@ -9,29 +9,358 @@ Redistributions in binary form must reproduce the above copyright notice, this l
 THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package communication.streams;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.util.Arrays;
 
 import communication.channel.Record;
+import communication.serialization.SerializationHelper;
+import communication.serialization.SerializerRegistry;
+
+/**
+ * Reads records written by RecordOutputStream, detecting from the stream header whether
+ * Java serialization or the compact binary format was used.
+ * 
+ * Splittable streams can also be read from an arbitrary byte range: the reader skips to the
+ * first sync marker at or after the range start, and stops at the first sync marker at or
+ * after the range end. Concurrent readers of disjoint ranges thus obtain disjoint sets of records.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RecordInputStream implements Closeable {
+	private static final int JAVA_STREAM_MAGIC = 0xACED;
+
+	private InputStream inputStream;
+
+	/* Java serialization format */
+	private ObjectInputStream objectInputStream;
+
+	/* Binary format */
+	private SerializerRegistry serializerRegistry;
+
+	private DataInputStream dataInputStream;
+
+	/* Splittable binary format */
+	private PositionInputStream positionInputStream;
+
+	private byte[] syncMarker;
+	private byte[] syncBuffer;
+
+	private long splitEnd;
 
-public class RecordInputStream extends ObjectInputStream {
 	public RecordInputStream(InputStream inputStream) throws IOException {
-		super(inputStream);
+		this(inputStream, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param inputStream Underlying stream.
+	 * @param serializerRegistry Registry used to decode binary streams; if null, a registry with the built-in types is used.
+	 */
+	public RecordInputStream(InputStream inputStream, SerializerRegistry serializerRegistry) throws IOException {
+		this(inputStream, serializerRegistry, 0L, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor for reading a byte range of the stream. Streams that are not splittable
+	 * are read entirely by the range that starts at offset 0, and are empty for the other ranges.
+	 * 
+	 * @param inputStream Underlying stream, positioned at its beginning.
+	 * @param serializerRegistry Registry used to decode binary streams; if null, a registry with the built-in types is used.
+	 * @param start Start of the range (inclusive).
+	 * @param end End of the range (exclusive).
+	 */
+	public RecordInputStream(InputStream inputStream, SerializerRegistry serializerRegistry, long start, long end) throws IOException {
+		// Streams that support marking are already buffered (or memory-mapped)
+
+		this.inputStream = (inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream));
+
+		this.inputStream.mark(2);
+
+		int first = this.inputStream.read();
+		int second = this.inputStream.read();
+
+		// Empty stream: behaves as a stream with no records
+
+		if (first == -1) {
+			return;
+		}
+
+		if (second == -1) {
+			throw new IOException("Truncated record stream header");
+		}
+
+		int magic = (first << 8) | second;
+
+		if (magic == JAVA_STREAM_MAGIC) {
+			if (start > 0L) {
+				return;
+			}
+
+			this.inputStream.reset();
+
+			objectInputStream = new ObjectInputStream(this.inputStream);
+		}
+		else if (magic == RecordOutputStream.BINARY_STREAM_MAGIC) {
+			int version = this.inputStream.read();
+
+			this.serializerRegistry = (serializerRegistry != null ? serializerRegistry : new SerializerRegistry());
+
+			if (version == RecordOutputStream.BINARY_STREAM_VERSION) {
+				if (start > 0L) {
+					return;
+				}
+
+				dataInputStream = new DataInputStream(this.inputStream);
+			}
+			else if (version == RecordOutputStream.SPLITTABLE_STREAM_VERSION) {
+				positionInputStream = new PositionInputStream(this.inputStream, 3L);
+
+				dataInputStream = new DataInputStream(positionInputStream);
+
+				syncMarker = new byte[RecordOutputStream.SYNC_MARKER_LENGTH];
+				syncBuffer = new byte[RecordOutputStream.SYNC_MARKER_LENGTH];
+
+				dataInputStream.readFully(syncMarker);
+
+				splitEnd = end;
+
+				if (start > positionInputStream.getPosition() && !seekSync(start)) {
+					dataInputStream = null;
+				}
+			}
+			else {
+				throw new IOException("Unsupported record stream version " + version);
+			}
+		}
+		else {
+			throw new IOException("Unknown record stream format");
+		}
+	}
+
+	/**
+	 * Checks whether the stream starts with the header of a splittable binary stream, without consuming it.
+	 * 
+	 * @param inputStream Stream to check, which must support mark() and reset().
+	 */
+	public static boolean isSplittable(InputStream inputStream) throws IOException {
+		inputStream.mark(3);
+
+		int first = inputStream.read();
+		int second = inputStream.read();
+		int version = inputStream.read();
+
+		inputStream.reset();
+
+		return first != -1 && second != -1 && ((first << 8) | second) == RecordOutputStream.BINARY_STREAM_MAGIC && version == RecordOutputStream.SPLITTABLE_STREAM_VERSION;
 	}
 
 	public Record readRecord() throws EOFException, IOException {
-		try {
-			return (Record) readObject();
-		} catch (ClassNotFoundException exception) {
-			System.err.println("Error reading from channel: unknown class");
+		if (objectInputStream != null) {
+			try {
+				return (Record) objectInputStream.readObject();
+			} catch (ClassNotFoundException exception) {
+				System.err.println("Error reading from channel: unknown class");
+
+				exception.printStackTrace();
 
-			exception.printStackTrace();
+				return null;
+			}
+		}
+
+		if (dataInputStream != null) {
+			if (syncMarker != null) {
+				return readSplittableRecord();
+			}
+
+			return serializerRegistry.readRecord(dataInputStream);
+		}
+
+		throw new EOFException();
+	}
+
+	/**
+	 * Reads the name of the producer, written by RecordOutputStream.writeOrigin().
+	 */
+	public String readOrigin() throws EOFException, IOException {
+		if (objectInputStream != null) {
+			try {
+				return (String) objectInputStream.readObject();
+			} catch (ClassNotFoundException exception) {
+				throw new IOException("Unexpected class reading origin");
+			}
+		}
+
+		if (dataInputStream != null) {
+			return SerializationHelper.readString(dataInputStream);
+		}
+
+		throw new EOFException();
+	}
+
+	/**
+	 * Returns the number of bytes that can be read without blocking. A positive value
+	 * does not guarantee that a whole record is available.
+	 */
+	public int available() throws IOException {
+		if (objectInputStream != null) {
+			return objectInputStream.available() + inputStream.available();
+		}
+
+		return inputStream.available();
+	}
+
+	public void close() throws IOException {
+		inputStream.close();
+	}
+
+	private Record readSplittableRecord() throws EOFException, IOException {
+		while (true) {
+			long entryPosition = positionInputStream.getPosition();
+
+			int length = SerializationHelper.readVarInt(dataInputStream);
+
+			if (length != 0) {
+				return serializerRegistry.readRecord(dataInputStream);
+			}
+
+			// Sync entry: the chunk that follows belongs to the range that contains its position
+
+			dataInputStream.readFully(syncBuffer);
+
+			if (!Arrays.equals(syncMarker, syncBuffer)) {
+				throw new IOException("Corrupted record stream (invalid sync marker)");
+			}
+
+			if (entryPosition >= splitEnd) {
+				dataInputStream = null;
+
+				throw new EOFException();
+			}
+		}
+	}
+
+	/**
+	 * Positions the stream right after the first sync entry that starts at or after the specified offset.
+	 * 
+	 * @param offset Offset in the stream.
+	 * 
+	 * @return False if no such sync entry exists, or if it starts at or after the end of the range.
+	 */
+	private boolean seekSync(long offset) throws IOException {
+		long remaining = offset - positionInputStream.getPosition();
+
+		while (remaining > 0L) {
+			long skipped = positionInputStream.skip(remaining);
+
+			if (skipped <= 0L) {
+				if (positionInputStream.read() == -1) {
+					return false;
+				}
+
+				skipped = 1L;
+			}
+
+			remaining -= skipped;
+		}
+
+		// A sync entry is a zero byte followed by the marker; keep the last bytes read in a circular window
+
+		int patternLength = syncMarker.length + 1;
+
+		byte[] window = new byte[patternLength];
+
+		long read = 0L;
+
+		while (true) {
+			int current = positionInputStream.read();
+
+			if (current == -1) {
+				return false;
+			}
+
+			window[(int) (read % patternLength)] = (byte) current;
+
+			read++;
+
+			if (read >= patternLength && matchesSync(window, (int) (read % patternLength))) {
+				long entryPosition = positionInputStream.getPosition() - patternLength;
+
+				return entryPosition < splitEnd;
+			}
+		}
+	}
+
+	private boolean matchesSync(byte[] window, int oldest) {
+		if (window[oldest] != 0) {
+			return false;
+		}
+
+		for (int i = 0; i < syncMarker.length; i++) {
+			if (window[(oldest + 1 + i) % window.length] != syncMarker[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Keeps track of the offset of the underlying stream.
+	 */
+	private static class PositionInputStream extends FilterInputStream {
+		private long position;
+
+		public PositionInputStream(InputStream inputStream, long position) {
+			super(inputStream);
+
+			this.position = position;
+		}
+
+		public long getPosition() {
+			return position;
+		}
+
+		public int read() throws IOException {
+			int result = in.read();
+
+			if (result != -1) {
+				position++;
+			}
+
+			return result;
+		}
+
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int result = in.read(buffer, offset, length);
+
+			if (result > 0) {
+				position += result;
+			}
+
+			return result;
+		}
+
+		public long skip(long bytes) throws IOException {
+			long result = in.skip(bytes);
+
+			position += result;
+
+			return result;
+		}
 
-			return null;
+		public boolean markSupported() {
+			return false;
 		}
 	}
 }
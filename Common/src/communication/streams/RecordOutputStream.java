@@ -9,31 +9,228 @@ Redistributions in binary form must reproduce the above copyright notice, this l
 THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package communication.streams;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.Random;
 
 import communication.channel.Record;
+import communication.serialization.EncodedRecord;
+import communication.serialization.SerializationHelper;
+import communication.serialization.SerializerRegistry;
 
-public class RecordOutputStream extends ObjectOutputStream {
+/**
+ * Writes records either with Java serialization or, when a serializer registry
+ * is supplied, with the compact binary format. RecordInputStream detects the
+ * format from the stream header.
+ * 
+ * The binary format has a splittable variant, in which every record is prefixed by its length
+ * and a sync entry (a zero length followed by a per-stream random marker) is inserted every
+ * SYNC_INTERVAL bytes, allowing readers to start at arbitrary offsets.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RecordOutputStream implements Closeable, Flushable {
 	private static long DEFAULT_WRITE_COUNT_FLUSH = 65535;
 
+	static final int BINARY_STREAM_MAGIC = 0x484D;
+	static final int BINARY_STREAM_VERSION = 1;
+	static final int SPLITTABLE_STREAM_VERSION = 2;
+
+	static final int SYNC_MARKER_LENGTH = 16;
+
+	private static final long SYNC_INTERVAL = 64 * 1024;
+
 	private long writeCounter = 0L;
 
+	private OutputStream outputStream;
+
+	/* Java serialization format */
+	private ObjectOutputStream objectOutputStream;
+
+	/* Binary format; each record is staged and handed to the underlying stream in one write */
+	private SerializerRegistry serializerRegistry;
+
+	private ByteArrayOutputStream stagingBuffer;
+	private DataOutputStream stagingOutput;
+
+	/* Splittable binary format */
+	private byte[] syncMarker;
+
+	private DataOutputStream directOutput;
+
+	private long bytesSinceSync;
+
 	public RecordOutputStream(OutputStream outputStream) throws IOException {
-		super(outputStream);
+		this(outputStream, null);
+	}
+
+	public RecordOutputStream(OutputStream outputStream, SerializerRegistry serializerRegistry) throws IOException {
+		this(outputStream, serializerRegistry, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param outputStream Underlying stream.
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 * @param splittable If true, the splittable binary format is used (with the built-in types if the registry is null).
+	 */
+	public RecordOutputStream(OutputStream outputStream, SerializerRegistry serializerRegistry, boolean splittable) throws IOException {
+		this.outputStream = outputStream;
+
+		if (splittable && serializerRegistry == null) {
+			serializerRegistry = new SerializerRegistry();
+		}
+
+		this.serializerRegistry = serializerRegistry;
+
+		if (serializerRegistry == null) {
+			objectOutputStream = new ObjectOutputStream(outputStream);
+		}
+		else {
+			stagingBuffer = new ByteArrayOutputStream();
+			stagingOutput = new DataOutputStream(stagingBuffer);
+
+			stagingOutput.writeShort(BINARY_STREAM_MAGIC);
+
+			if (splittable) {
+				stagingOutput.writeByte(SPLITTABLE_STREAM_VERSION);
+
+				syncMarker = new byte[SYNC_MARKER_LENGTH];
+
+				new Random().nextBytes(syncMarker);
+
+				stagingOutput.write(syncMarker);
+
+				directOutput = new DataOutputStream(outputStream);
+			}
+			else {
+				stagingOutput.writeByte(BINARY_STREAM_VERSION);
+			}
+
+			commitStaged();
+
+			if (splittable) {
+				writeSync();
+			}
+		}
+	}
+
+	public boolean isSplittable() {
+		return syncMarker != null;
+	}
+
+	public boolean isBinary() {
+		return serializerRegistry != null;
 	}
 
 	public void writeRecord(Record channelElement) throws IOException {
-		writeCounter++;
+		if (objectOutputStream != null) {
+			writeCounter++;
+
+			if ((writeCounter % DEFAULT_WRITE_COUNT_FLUSH) == 0) {
+				objectOutputStream.flush();
+				objectOutputStream.reset();
+			}
+
+			objectOutputStream.writeObject(channelElement);
 
-		if ((writeCounter % DEFAULT_WRITE_COUNT_FLUSH) == 0) {
-			flush();
-			reset();
+			return;
 		}
 
-		writeObject(channelElement);
+		serializerRegistry.writeRecord(stagingOutput, channelElement);
+
+		commitRecord();
+	}
+
+	/**
+	 * Writes a record shared with other streams, reusing its encoding if the binary format is used.
+	 */
+	public void writeEncodedRecord(EncodedRecord encodedRecord) throws IOException {
+		if (objectOutputStream != null) {
+			writeRecord(encodedRecord.getRecord());
+
+			return;
+		}
+
+		stagingOutput.write(encodedRecord.getEncoding(serializerRegistry));
+
+		commitRecord();
+	}
+
+	/**
+	 * Writes the name of the producer, used by receivers that multiplex several origins.
+	 */
+	public void writeOrigin(String origin) throws IOException {
+		if (objectOutputStream != null) {
+			objectOutputStream.writeObject(origin);
+
+			return;
+		}
+
+		SerializationHelper.writeString(stagingOutput, origin);
+
+		commitStaged();
+	}
+
+	/**
+	 * Forgets the objects already written; only meaningful for Java serialization.
+	 */
+	public void reset() throws IOException {
+		if (objectOutputStream != null) {
+			objectOutputStream.reset();
+		}
+	}
+
+	public void flush() throws IOException {
+		if (objectOutputStream != null) {
+			objectOutputStream.flush();
+		}
+		else {
+			outputStream.flush();
+		}
+	}
+
+	public void close() throws IOException {
+		if (objectOutputStream != null) {
+			objectOutputStream.close();
+		}
+		else {
+			outputStream.close();
+		}
+	}
+
+	private void writeSync() throws IOException {
+		directOutput.writeByte(0);
+		directOutput.write(syncMarker);
+
+		bytesSinceSync = 0L;
+	}
+
+	private void commitRecord() throws IOException {
+		if (syncMarker != null) {
+			if (bytesSinceSync >= SYNC_INTERVAL) {
+				writeSync();
+			}
+
+			bytesSinceSync += stagingBuffer.size();
+
+			SerializationHelper.writeVarInt(directOutput, stagingBuffer.size() + 1);
+		}
+
+		commitStaged();
+	}
+
+	private void commitStaged() throws IOException {
+		stagingBuffer.writeTo(outputStream);
+		stagingBuffer.reset();
 	}
 }
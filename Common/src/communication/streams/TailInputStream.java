@@ -0,0 +1,190 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+import utilities.filesystem.Protocol;
+
+/**
+ * Reads a file while its writer is still producing it. When the reader catches up with the
+ * writer, it waits for more data instead of reaching the end of the stream; the end is only
+ * reached once the writer commits the completion marker of the file (see FileHelper.getCompletionMarker()).
+ * 
+ * Only POSIX files are followed as they grow; files of other filesystems are opened once their
+ * completion marker exists.
+ * 
+ * By default, the reader waits for the writer indefinitely, since a healthy writer may go a
+ * long time without output. If an idle timeout is given, a file that neither grows nor is
+ * completed for longer than the timeout makes reads throw an IOException instead.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TailInputStream extends InputStream {
+	private static final long POLL_INTERVAL = 10;
+
+	private static final long DEFAULT_IDLE_TIMEOUT = 0;
+
+	private Filename filename;
+
+	private Filename completionMarker;
+
+	private InputStream inputStream;
+
+	// The marker was seen, so the data present in the file is all there is
+	private boolean complete;
+
+	private long idleTimeout;
+
+	// Last time the file was opened or data was read from it
+	private long lastProgress;
+
+	public TailInputStream(Filename filename) {
+		this(filename, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param filename File to be read.
+	 * @param idleTimeout Time in milliseconds the file may go without growing before its writer is assumed to have failed, or 0 to wait indefinitely.
+	 */
+	public TailInputStream(Filename filename, long idleTimeout) {
+		this.filename = filename;
+
+		this.completionMarker = FileHelper.getCompletionMarker(filename);
+
+		this.idleTimeout = idleTimeout;
+
+		this.lastProgress = System.currentTimeMillis();
+	}
+
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+
+		int read = read(single, 0, 1);
+
+		return (read < 0) ? -1 : (single[0] & 0xFF);
+	}
+
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		while (true) {
+			if (inputStream == null && !open()) {
+				pause();
+
+				continue;
+			}
+
+			int read = inputStream.read(buffer, offset, length);
+
+			if (read > 0) {
+				lastProgress = System.currentTimeMillis();
+
+				return read;
+			}
+
+			if (complete) {
+				return -1;
+			}
+
+			// The marker is committed after the last byte, so the read that follows it sees all the data
+
+			if (FileHelper.exists(completionMarker)) {
+				complete = true;
+
+				continue;
+			}
+
+			pause();
+		}
+	}
+
+	public int available() throws IOException {
+		return (inputStream == null) ? 0 : inputStream.available();
+	}
+
+	/**
+	 * Tells whether a read would return without waiting for the writer, either with data or
+	 * with the end of the stream.
+	 * 
+	 * @return True if a read would not wait, false otherwise.
+	 * 
+	 * @throws IOException If the idle timeout expired.
+	 */
+	public boolean isReady() throws IOException {
+		if (complete) {
+			return true;
+		}
+
+		if (inputStream == null && !open()) {
+			checkIdle();
+
+			return false;
+		}
+
+		if (inputStream.available() > 0 || FileHelper.exists(completionMarker)) {
+			return true;
+		}
+
+		checkIdle();
+
+		return false;
+	}
+
+	public void close() throws IOException {
+		if (inputStream != null) {
+			inputStream.close();
+		}
+	}
+
+	private boolean open() throws IOException {
+		if (filename.getProtocol() != Protocol.POSIX_COMPATIBLE && !FileHelper.exists(completionMarker)) {
+			return false;
+		}
+
+		if (!FileHelper.exists(filename)) {
+			return false;
+		}
+
+		inputStream = FileHelper.openR(filename);
+
+		lastProgress = System.currentTimeMillis();
+
+		return true;
+	}
+
+	private void checkIdle() throws IOException {
+		if (idleTimeout > 0 && System.currentTimeMillis() - lastProgress > idleTimeout) {
+			throw new IOException("File " + filename + " was not completed and did not grow for " + idleTimeout + " ms; its writer probably failed");
+		}
+	}
+
+	private void pause() throws IOException {
+		checkIdle();
+
+		try {
+			Thread.sleep(POLL_INTERVAL);
+		} catch (InterruptedException exception) {
+			System.err.println("Unexpected thread interruption while waiting for file " + filename + " to grow");
+
+			exception.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.streams;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Buffered stream whose buffers are written to the underlying stream by a background I/O
+ * thread, so that the writing thread only blocks when all of its buffers are in flight. With
+ * the default of two buffers, one is filled while the other is written.
+ * 
+ * The I/O threads are shared by all the streams in the JVM (their number is given by the
+ * hammr.io.threads property); each stream always uses the same thread, so its buffers are
+ * written in order. Errors of the I/O thread are reported by the following write, flush or
+ * close. The flush() and close() methods only return after all the buffers were written.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class WriteBehindOutputStream extends OutputStream {
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	public static final int DEFAULT_BUFFERS = 2;
+
+	private static final int NUMBER_THREADS = Math.max(1, Integer.getInteger("hammr.io.threads", 1));
+
+	private static IOThread[] threads;
+
+	private static int nextThread;
+
+	private OutputStream outputStream;
+
+	private IOThread thread;
+
+	// Buffer being filled by the writing thread
+
+	private byte[] current;
+	private int position;
+
+	// Buffers available to the writing thread, and the number of buffers being written
+
+	private Queue<byte[]> free;
+
+	private int inFlight;
+
+	private volatile IOException failure;
+
+	private boolean closed;
+
+	public WriteBehindOutputStream(OutputStream outputStream) {
+		this(outputStream, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param outputStream Underlying stream.
+	 * @param bufferSize Size of each buffer.
+	 * @param buffers Number of buffers, including the one being filled; at least 2.
+	 */
+	public WriteBehindOutputStream(OutputStream outputStream, int bufferSize, int buffers) {
+		if (buffers < 2) {
+			throw new IllegalArgumentException("Write-behind requires at least 2 buffers");
+		}
+
+		this.outputStream = outputStream;
+
+		this.thread = obtainThread();
+
+		this.current = new byte[bufferSize];
+		this.position = 0;
+
+		this.free = new LinkedList<byte[]>();
+
+		for (int i = 1; i < buffers; i++) {
+			free.add(new byte[bufferSize]);
+		}
+	}
+
+	public void write(int value) throws IOException {
+		if (position == current.length) {
+			submit();
+		}
+
+		current[position++] = (byte) value;
+	}
+
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (position == current.length) {
+				submit();
+			}
+
+			int immediate = Math.min(length, current.length - position);
+
+			System.arraycopy(buffer, offset, current, position, immediate);
+
+			position += immediate;
+
+			offset += immediate;
+			length -= immediate;
+		}
+	}
+
+	/**
+	 * Writes the pending data, waits until all the buffers were written, and flushes the underlying stream.
+	 */
+	public void flush() throws IOException {
+		if (position > 0) {
+			submit();
+		}
+
+		awaitWritten();
+
+		outputStream.flush();
+	}
+
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			flush();
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the I/O thread, and takes a free one.
+	 */
+	private void submit() throws IOException {
+		byte[] next;
+
+		synchronized (this) {
+			checkFailure();
+
+			inFlight++;
+
+			thread.enqueue(new Job(this, current, position));
+
+			while (free.isEmpty() && failure == null) {
+				waitBuffers();
+			}
+
+			checkFailure();
+
+			next = free.remove();
+		}
+
+		current = next;
+		position = 0;
+	}
+
+	private synchronized void awaitWritten() throws IOException {
+		while (inFlight > 0) {
+			waitBuffers();
+		}
+
+		checkFailure();
+	}
+
+	private void waitBuffers() {
+		try {
+			wait();
+		} catch (InterruptedException exception) {
+			System.err.println("Unexpected thread interruption while waiting for write-behind buffers");
+
+			exception.printStackTrace();
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			IOException exception = new IOException("Background write failed: " + failure.getMessage());
+
+			exception.initCause(failure);
+
+			throw exception;
+		}
+	}
+
+	/**
+	 * Called by the I/O thread once a buffer was written (or failed).
+	 */
+	private synchronized void release(byte[] buffer, IOException exception) {
+		if (exception != null && failure == null) {
+			failure = exception;
+		}
+
+		free.add(buffer);
+
+		inFlight--;
+
+		notifyAll();
+	}
+
+	private static synchronized IOThread obtainThread() {
+		if (threads == null) {
+			threads = new IOThread[NUMBER_THREADS];
+
+			for (int i = 0; i < NUMBER_THREADS; i++) {
+				threads[i] = new IOThread(i);
+
+				threads[i].start();
+			}
+		}
+
+		IOThread result = threads[nextThread];
+
+		nextThread = (nextThread + 1) % NUMBER_THREADS;
+
+		return result;
+	}
+
+	/**
+	 * Buffer waiting to be written.
+	 */
+	private static class Job {
+		private WriteBehindOutputStream stream;
+
+		private byte[] buffer;
+		private int length;
+
+		public Job(WriteBehindOutputStream stream, byte[] buffer, int length) {
+			this.stream = stream;
+
+			this.buffer = buffer;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Writes the buffers of its streams, in the order they were submitted.
+	 */
+	private static class IOThread extends Thread {
+		private BlockingQueue<Job> jobs;
+
+		public IOThread(int index) {
+			super("WriteBehind-" + index);
+
+			setDaemon(true);
+
+			this.jobs = new LinkedBlockingQueue<Job>();
+		}
+
+		public void enqueue(Job job) {
+			jobs.add(job);
+		}
+
+		public void run() {
+			while (true) {
+				Job job;
+
+				try {
+					job = jobs.take();
+				} catch (InterruptedException exception) {
+					System.err.println("Unexpected thread interruption while waiting for write-behind buffers");
+
+					exception.printStackTrace();
+					continue;
+				}
+
+				IOException failure = null;
+
+				// Once a buffer of the stream failed, the following ones are discarded
+
+				try {
+					if (job.stream.failure == null) {
+						job.stream.outputStream.write(job.buffer, 0, job.length);
+					}
+				} catch (IOException exception) {
+					failure = exception;
+				} catch (Throwable throwable) {
+					// Any error is reported to the stream, and the thread keeps serving the others
+
+					failure = new IOException("Unexpected error writing buffer: " + throwable);
+
+					failure.initCause(throwable);
+				} finally {
+					job.stream.release(job.buffer, failure);
+				}
+			}
+		}
+	}
+}
@@ -11,21 +11,88 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package communication.writers;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
 import communication.channel.Record;
-import communication.interfaces.RecordWriter;
+import communication.channel.RecordBatch;
+import communication.interfaces.EncodedRecordWriter;
+import communication.serialization.EncodedRecord;
+import communication.serialization.SerializerRegistry;
+import communication.streams.BlockCompressedOutputStream;
 import communication.streams.RecordOutputStream;
+import communication.streams.WriteBehindOutputStream;
 
-public class FileRecordWriter implements RecordWriter {
+import enums.CompressionType;
+
+public class FileRecordWriter implements EncodedRecordWriter {
 
 	private final RecordOutputStream recordOutputStream;
 
+	// Marker committed once the file is complete, or null if the file is not read while written
+	private Filename completionMarker;
+
 	public FileRecordWriter(Filename filename) throws IOException {
-		recordOutputStream = new RecordOutputStream(FileHelper.openW(filename));
+		this(filename, null);
+	}
+
+	public FileRecordWriter(Filename filename, SerializerRegistry serializerRegistry) throws IOException {
+		this(filename, serializerRegistry, CompressionType.NONE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param filename File to be written.
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 * @param compressionType Codec for a block-compressed file, or CompressionType.NONE for a plain file.
+	 */
+	public FileRecordWriter(Filename filename, SerializerRegistry serializerRegistry, CompressionType compressionType) throws IOException {
+		this(filename, serializerRegistry, new FileWriterOptions(compressionType));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param filename File to be written.
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 * @param options Format of the file, and whether it is streamed or written behind.
+	 */
+	public FileRecordWriter(Filename filename, SerializerRegistry serializerRegistry, FileWriterOptions options) throws IOException {
+		if (options.isStreaming()) {
+			completionMarker = FileHelper.getCompletionMarker(filename);
+
+			// A marker left by a previous run would end the readers early
+
+			FileHelper.remove(completionMarker);
+		}
+
+		if (options.isSplittable() && options.isCompressed()) {
+			throw new IllegalArgumentException("Block-compressed files cannot be split");
+		}
+
+		OutputStream outputStream = FileHelper.openW(filename);
+
+		if (options.isWriteBehind()) {
+			outputStream = new WriteBehindOutputStream(outputStream);
+		}
+
+		if (!options.isCompressed()) {
+			// The write-behind stream does its own buffering
+
+			if (!options.isWriteBehind()) {
+				outputStream = new BufferedOutputStream(outputStream);
+			}
+
+			recordOutputStream = new RecordOutputStream(outputStream, serializerRegistry, options.isSplittable());
+		}
+		else {
+			recordOutputStream = new RecordOutputStream(new BlockCompressedOutputStream(outputStream, options.getCompressionType()), serializerRegistry);
+		}
 	}
 
 	public synchronized boolean write(Record record) throws IOException {
@@ -34,6 +101,20 @@ public class FileRecordWriter implements RecordWriter {
 		return true;
 	}
 
+	public synchronized boolean writeEncoded(EncodedRecord encodedRecord) throws IOException {
+		recordOutputStream.writeEncodedRecord(encodedRecord);
+
+		return true;
+	}
+
+	public synchronized boolean writeBatch(RecordBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); i++) {
+			recordOutputStream.writeRecord(batch.get(i));
+		}
+
+		return true;
+	}
+
 	public synchronized boolean flush() throws IOException {
 		recordOutputStream.flush();
 
@@ -44,6 +125,10 @@ public class FileRecordWriter implements RecordWriter {
 		recordOutputStream.flush();
 		recordOutputStream.close();
 
+		if (completionMarker != null) {
+			FileHelper.openW(completionMarker).close();
+		}
+
 		return true;
 	}
 }
@@ -0,0 +1,99 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.writers;
+
+import java.io.Serializable;
+
+import enums.CompressionType;
+
+/**
+ * Format and behavior of a file written by a FileRecordWriter.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FileWriterOptions implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private CompressionType compressionType;
+
+	private boolean splittable;
+
+	private boolean streaming;
+
+	private boolean writeBehind;
+
+	public FileWriterOptions() {
+		this(CompressionType.NONE);
+	}
+
+	public FileWriterOptions(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
+
+	public CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	/**
+	 * Sets the codec of a block-compressed file.
+	 * 
+	 * @param compressionType Codec for a block-compressed file, or CompressionType.NONE for a plain file.
+	 */
+	public void setCompressionType(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
+
+	public boolean isCompressed() {
+		return compressionType != null && compressionType != CompressionType.NONE;
+	}
+
+	public boolean isSplittable() {
+		return splittable;
+	}
+
+	/**
+	 * Sets whether the file is written with sync markers, so that it can be read in byte ranges.
+	 * Splittable files cannot be compressed.
+	 * 
+	 * @param splittable True for a splittable file.
+	 */
+	public void setSplittable(boolean splittable) {
+		this.splittable = splittable;
+	}
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets whether the file may be read while it is written.
+	 * 
+	 * @param streaming True to commit a completion marker once the file is closed.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public boolean isWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * Sets whether the file is written by a background I/O thread.
+	 * 
+	 * @param writeBehind True to overlap the writes with the producer's computation.
+	 */
+	public void setWriteBehind(boolean writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+}
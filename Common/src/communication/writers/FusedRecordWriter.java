@@ -0,0 +1,58 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.writers;
+
+import java.io.IOException;
+
+import communication.channel.Record;
+import communication.channel.RecordBatch;
+import communication.interfaces.RecordConsumer;
+import communication.interfaces.RecordWriter;
+
+/**
+ * Writer for NODEBOX channels. The records are passed to the consumer as they are
+ * written, in the producer's thread, with no queue and no copy.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FusedRecordWriter implements RecordWriter {
+	private RecordConsumer consumer;
+
+	public FusedRecordWriter(RecordConsumer consumer) {
+		this.consumer = consumer;
+	}
+
+	public boolean write(Record record) throws IOException {
+		return consumer.consume(record);
+	}
+
+	public boolean writeBatch(RecordBatch batch) throws IOException {
+		for (Record record: batch) {
+			if (!consumer.consume(record)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public boolean flush() throws IOException {
+		return true;
+	}
+
+	public boolean close() throws IOException {
+		consumer.finish();
+
+		return true;
+	}
+}
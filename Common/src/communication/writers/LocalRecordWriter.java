@@ -0,0 +1,51 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.writers;
+
+import java.io.IOException;
+
+import communication.readers.TCPReceiver;
+import communication.readers.TCPRecordMultiplexer;
+
+/**
+ * Writer for TCP channels whose destination multiplexer lives in the same JVM. The
+ * records are handed over to the multiplexer directly, as SHM writers do, without
+ * being serialized or crossing the TCPReceiver.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LocalRecordWriter extends SHMRecordWriter {
+	private String name;
+
+	private TCPRecordMultiplexer recordMultiplexer;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param name Name of the producer.
+	 * @param tcpRecordMultiplexer Multiplexer obtained from TCPReceiver.getLocalMultiplexer().
+	 */
+	public LocalRecordWriter(String name, TCPRecordMultiplexer tcpRecordMultiplexer) {
+		super(name, tcpRecordMultiplexer);
+
+		this.name = name;
+
+		this.recordMultiplexer = tcpRecordMultiplexer;
+	}
+
+	public boolean close() throws IOException {
+		TCPReceiver.getInstance().closeLocal(recordMultiplexer, name);
+
+		return true;
+	}
+}
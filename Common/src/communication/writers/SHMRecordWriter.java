@@ -14,10 +14,12 @@ package communication.writers;
 import java.io.IOException;
 
 import communication.channel.Record;
-import communication.interfaces.RecordWriter;
+import communication.channel.RecordBatch;
+import communication.interfaces.BacklogReporter;
+import communication.interfaces.NonBlockingRecordWriter;
 import communication.readers.SHMRecordMultiplexer;
 
-public class SHMRecordWriter implements RecordWriter {
+public class SHMRecordWriter implements NonBlockingRecordWriter, BacklogReporter {
 	private String name;
 	private SHMRecordMultiplexer recordMultiplexer;
 
@@ -28,15 +30,40 @@ public class SHMRecordWriter implements RecordWriter {
 	}
 
 	public boolean write(Record record) throws IOException {
-		recordMultiplexer.write(name, record);
+		return recordMultiplexer.write(name, record);
+	}
 
-		return true;
+	public boolean tryWrite(Record record) throws IOException {
+		return recordMultiplexer.offer(name, record);
+	}
+
+	public boolean writeBatch(RecordBatch batch) throws IOException {
+		if (batch.isEmpty()) {
+			return true;
+		}
+
+		// A single record travels as it is, without a batch of its own
+
+		if (batch.size() == 1) {
+			return recordMultiplexer.write(name, batch.get(0));
+		}
+
+		// The multiplexer keeps the batch, so the caller's instance cannot be handed over
+
+		return recordMultiplexer.write(name, batch.copy());
 	}
 
 	public boolean flush() throws IOException {
 		return true;
 	}
 
+	/**
+	 * Obtains the writes of all the producers waiting for the reader.
+	 */
+	public long getBacklog() {
+		return recordMultiplexer.getBacklog();
+	}
+
 	public boolean close() throws IOException {
 		recordMultiplexer.close(name);
 
@@ -0,0 +1,150 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.writers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Queue of frames kept in a local temporary file, used by writers that must not block when
+ * their receiver lags. Frames are read back in the order they were appended. The file is
+ * created in the directory given by the hammr.spill.directory system property, or in the
+ * default temporary directory.
+ * 
+ * Only one thread should use a spill file at any given time.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SpillFile {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private File file;
+
+	private DataOutputStream outputStream;
+
+	private DataInputStream inputStream;
+
+	// True if frames were appended after the output was last flushed
+	private boolean dirty;
+
+	private long appended;
+
+	private long removed;
+
+	private long bytes;
+
+	public SpillFile(String prefix) throws IOException {
+		String directory = System.getProperty("hammr.spill.directory");
+
+		this.file = File.createTempFile(prefix, ".spill", directory == null ? null : new File(directory));
+
+		this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+
+		this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+
+		this.dirty = false;
+
+		this.appended = 0L;
+
+		this.removed = 0L;
+
+		this.bytes = 0L;
+	}
+
+	/**
+	 * Appends a frame.
+	 * 
+	 * @param frame Array holding the frame.
+	 * @param length Length of the frame.
+	 */
+	public void append(byte[] frame, int length) throws IOException {
+		outputStream.writeInt(length);
+		outputStream.write(frame, 0, length);
+
+		dirty = true;
+
+		appended++;
+
+		bytes += length;
+	}
+
+	/**
+	 * Removes the oldest frame.
+	 * 
+	 * @return The oldest frame, or null if the file holds no frames.
+	 */
+	public byte[] remove() throws IOException {
+		if (isEmpty()) {
+			return null;
+		}
+
+		if (dirty) {
+			outputStream.flush();
+
+			dirty = false;
+		}
+
+		byte[] frame = new byte[inputStream.readInt()];
+
+		inputStream.readFully(frame);
+
+		removed++;
+
+		bytes -= frame.length;
+
+		return frame;
+	}
+
+	public boolean isEmpty() {
+		return appended == removed;
+	}
+
+	/**
+	 * Obtains the number of frames held.
+	 */
+	public long size() {
+		return appended - removed;
+	}
+
+	/**
+	 * Obtains the number of frame bytes held.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Closes and deletes the file.
+	 */
+	public void delete() {
+		try {
+			outputStream.close();
+
+			inputStream.close();
+		} catch (IOException exception) {
+			System.err.println("Error closing spill file " + file);
+
+			exception.printStackTrace();
+		}
+
+		if (!file.delete()) {
+			System.err.println("Unable to delete spill file " + file);
+		}
+	}
+}
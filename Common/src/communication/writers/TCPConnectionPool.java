@@ -0,0 +1,509 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.writers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import communication.readers.TCPReceiver;
+
+/**
+ * Keeps one connection (link) per remote TCPReceiver, shared by all the TCP writers of
+ * the JVM that send to it. Each writer opens a logical channel on the link; the link is
+ * closed when its last channel is closed.
+ * 
+ * Channels are subject to credit-based flow control: a channel starts with
+ * TCPReceiver.INITIAL_CREDIT bytes, sending a frame consumes its length, and the receiver
+ * returns the credit once the records of the frame are accepted by the destination multiplexer.
+ * A channel refused by the receiver fails on its next use, without affecting the link.
+ * 
+ * Channels to a receiver on the same machine may instead carry their records through a
+ * MappedRing: the link then only opens and closes the channel, and wakes the receiver up
+ * when it sleeps.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPConnectionPool {
+	private static final int LINK_BUFFER_SIZE = 128 * 1024;
+
+	private static TCPConnectionPool instance;
+
+	private Map<InetSocketAddress, Link> links;
+
+	public static synchronized TCPConnectionPool getInstance() {
+		if (instance == null) {
+			instance = new TCPConnectionPool();
+		}
+
+		return instance;
+	}
+
+	private TCPConnectionPool() {
+		this.links = new HashMap<InetSocketAddress, Link>();
+	}
+
+	/**
+	 * Obtains the link to a remote receiver, establishing it if needed. Every call should be
+	 * matched by a call to release().
+	 * 
+	 * @param socketAddress Address of the remote receiver.
+	 */
+	public synchronized Link acquire(InetSocketAddress socketAddress) throws IOException {
+		Link link = links.get(socketAddress);
+
+		if (link == null || link.isBroken()) {
+			link = new Link(socketAddress);
+
+			links.put(socketAddress, link);
+		}
+
+		link.references++;
+
+		return link;
+	}
+
+	/**
+	 * Tests whether an address belongs to this machine.
+	 * 
+	 * @param socketAddress Address of a remote receiver.
+	 */
+	public static boolean isLocal(InetSocketAddress socketAddress) {
+		InetAddress address = socketAddress.getAddress();
+
+		if (address == null) {
+			return false;
+		}
+
+		if (address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+			return true;
+		}
+
+		try {
+			return NetworkInterface.getByInetAddress(address) != null;
+		} catch (SocketException exception) {
+			return false;
+		}
+	}
+
+	public synchronized void release(Link link) throws IOException {
+		link.references--;
+
+		if (link.references == 0) {
+			if (links.get(link.socketAddress) == link) {
+				links.remove(link.socketAddress);
+			}
+
+			link.close();
+		}
+	}
+
+	public static class Link {
+		private InetSocketAddress socketAddress;
+
+		private Socket socket;
+
+		private DataOutputStream socketOutputStream;
+
+		private int references;
+
+		private int nextChannel;
+
+		// Available credit of each channel, in bytes; also used as monitor for credit waits
+		private Map<Integer, long[]> credits;
+
+		// Channels refused by the receiver; guarded by the credit map
+		private Set<Integer> rejected;
+
+		private volatile boolean broken;
+
+		private volatile boolean closing;
+
+		private Link(InetSocketAddress socketAddress) throws IOException {
+			this.socketAddress = socketAddress;
+
+			this.socket = new Socket(socketAddress.getAddress(), socketAddress.getPort());
+
+			this.socketOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), LINK_BUFFER_SIZE));
+
+			this.references = 0;
+
+			this.nextChannel = 0;
+
+			this.credits = new HashMap<Integer, long[]>();
+
+			this.rejected = new HashSet<Integer>();
+
+			this.broken = false;
+
+			CreditReader creditReader = new CreditReader(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+
+			creditReader.start();
+		}
+
+		/**
+		 * Opens a logical channel.
+		 * 
+		 * @param destination Identifier of the destination multiplexer.
+		 * @param origin Name of the producer.
+		 * 
+		 * @return The identifier of the channel on this link.
+		 */
+		public synchronized int open(String destination, String origin) throws IOException {
+			int channel = nextChannel++;
+
+			synchronized (credits) {
+				credits.put(channel, new long[] { TCPReceiver.INITIAL_CREDIT });
+			}
+
+			writeOpen(channel, TCPReceiver.FRAME_OPEN, destination, origin, null);
+
+			return channel;
+		}
+
+		/**
+		 * Opens a logical channel whose records are carried by a ring file. Such channels
+		 * are not subject to credit: the ring itself bounds the records in transit.
+		 * 
+		 * @param destination Identifier of the destination multiplexer.
+		 * @param origin Name of the producer.
+		 * @param path Location of the ring file.
+		 * 
+		 * @return The identifier of the channel on this link.
+		 */
+		public synchronized int openRing(String destination, String origin, String path) throws IOException {
+			int channel = nextChannel++;
+
+			writeOpen(channel, TCPReceiver.FRAME_OPEN_RING, destination, origin, path);
+
+			return channel;
+		}
+
+		/**
+		 * Consumes credit for a frame, if the channel has any left. The credit may become
+		 * negative, so that frames larger than the initial credit can be sent.
+		 * 
+		 * @param channel Channel identifier, obtained from open().
+		 * @param length Length of the frame.
+		 * 
+		 * @return True if the frame may be sent, false otherwise.
+		 */
+		public boolean tryAcquire(int channel, int length) throws IOException {
+			long[] credit = getCredit(channel);
+
+			synchronized (credit) {
+				checkChannel(channel);
+
+				if (credit[0] <= 0L) {
+					return false;
+				}
+
+				credit[0] -= length;
+
+				return true;
+			}
+		}
+
+		/**
+		 * Waits until the channel has credit.
+		 * 
+		 * @param channel Channel identifier, obtained from open().
+		 */
+		public void awaitCredit(int channel) throws IOException {
+			long[] credit = getCredit(channel);
+
+			synchronized (credit) {
+				while (credit[0] <= 0L && !broken && !isRejected(channel)) {
+					try {
+						credit.wait();
+					} catch (InterruptedException exception) {
+						System.err.println("Unexpected thread interruption while waiting for channel credit");
+
+						exception.printStackTrace();
+					}
+				}
+
+				checkChannel(channel);
+			}
+		}
+
+		/**
+		 * Verifies that a channel is still usable.
+		 * 
+		 * @param channel Channel identifier, obtained from open() or openRing().
+		 * 
+		 * @throws IOException If the link is broken, or the receiver rejected the channel.
+		 */
+		public void checkChannel(int channel) throws IOException {
+			if (broken) {
+				throw new IOException("Link to " + socketAddress + " is broken");
+			}
+
+			if (isRejected(channel)) {
+				throw new IOException("Channel " + channel + " was rejected by " + socketAddress);
+			}
+		}
+
+		/**
+		 * Sends a frame holding a complete record stream. Credit for the frame should have
+		 * been obtained with tryAcquire().
+		 * 
+		 * @param channel Channel identifier, obtained from open().
+		 * @param frame Array holding the frame.
+		 * @param length Length of the frame.
+		 */
+		public synchronized void send(int channel, byte[] frame, int length) throws IOException {
+			writeHeader(channel, TCPReceiver.FRAME_DATA, length);
+
+			socketOutputStream.write(frame, 0, length);
+
+			socketOutputStream.flush();
+		}
+
+		public void send(int channel, byte[] frame) throws IOException {
+			send(channel, frame, frame.length);
+		}
+
+		/**
+		 * Wakes up the receiver of a ring channel.
+		 * 
+		 * @param channel Channel identifier, obtained from openRing().
+		 */
+		public synchronized void wakeup(int channel) throws IOException {
+			writeHeader(channel, TCPReceiver.FRAME_WAKEUP, 0);
+
+			socketOutputStream.flush();
+		}
+
+		public synchronized void close(int channel) throws IOException {
+			end(channel, TCPReceiver.FRAME_CLOSE);
+		}
+
+		/**
+		 * Closes a channel whose records could not all be sent; the receiver reports the
+		 * channel as terminated abruptly.
+		 * 
+		 * @param channel Channel identifier, obtained from open() or openRing().
+		 */
+		public synchronized void abort(int channel) throws IOException {
+			end(channel, TCPReceiver.FRAME_ABORT);
+		}
+
+		private void end(int channel, byte type) throws IOException {
+			synchronized (credits) {
+				credits.remove(channel);
+
+				rejected.remove(channel);
+			}
+
+			writeHeader(channel, type, 0);
+
+			socketOutputStream.flush();
+		}
+
+		/**
+		 * Obtains the bytes sent on a channel whose credit was not yet returned.
+		 * 
+		 * @param channel Channel identifier, obtained from open().
+		 */
+		public long getOutstanding(int channel) {
+			long[] credit;
+
+			synchronized (credits) {
+				credit = credits.get(channel);
+			}
+
+			if (credit == null) {
+				return 0L;
+			}
+
+			synchronized (credit) {
+				return Math.max(0L, TCPReceiver.INITIAL_CREDIT - credit[0]);
+			}
+		}
+
+		public boolean isBroken() {
+			return broken;
+		}
+
+		private boolean isRejected(int channel) {
+			synchronized (credits) {
+				return rejected.contains(channel);
+			}
+		}
+
+		private long[] getCredit(int channel) throws IOException {
+			long[] credit;
+
+			synchronized (credits) {
+				credit = credits.get(channel);
+			}
+
+			if (credit == null) {
+				throw new IOException("Channel " + channel + " is not open");
+			}
+
+			return credit;
+		}
+
+		private void writeOpen(int channel, byte type, String destination, String origin, String path) throws IOException {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+			DataOutputStream payloadOutputStream = new DataOutputStream(payload);
+
+			payloadOutputStream.writeUTF(destination);
+			payloadOutputStream.writeUTF(origin);
+
+			if (path != null) {
+				payloadOutputStream.writeUTF(path);
+			}
+
+			writeHeader(channel, type, payload.size());
+
+			payload.writeTo(socketOutputStream);
+
+			socketOutputStream.flush();
+		}
+
+		private void writeHeader(int channel, byte type, int length) throws IOException {
+			socketOutputStream.writeInt(channel);
+			socketOutputStream.writeByte(type);
+			socketOutputStream.writeInt(length);
+		}
+
+		/**
+		 * Finishes the output; the socket is closed by the credit reader once the
+		 * receiver closes its side, so that no credit frame is left unread.
+		 */
+		private synchronized void close() throws IOException {
+			closing = true;
+
+			socketOutputStream.flush();
+
+			socket.shutdownOutput();
+		}
+
+		private void reject(int channel) {
+			long[] credit;
+
+			synchronized (credits) {
+				rejected.add(channel);
+
+				credit = credits.get(channel);
+			}
+
+			// Writers waiting for credit on the channel fail right away
+
+			if (credit != null) {
+				synchronized (credit) {
+					credit.notifyAll();
+				}
+			}
+		}
+
+		private void fail() {
+			broken = true;
+
+			synchronized (credits) {
+				for (long[] credit: credits.values()) {
+					synchronized (credit) {
+						credit.notifyAll();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Receives the credit returned by the receiver.
+		 */
+		private class CreditReader extends Thread {
+			private DataInputStream socketInputStream;
+
+			public CreditReader(DataInputStream socketInputStream) {
+				super("TCPConnectionPool-" + socketAddress);
+
+				setDaemon(true);
+
+				this.socketInputStream = socketInputStream;
+			}
+
+			public void run() {
+				try {
+					while (true) {
+						int channel = socketInputStream.readInt();
+						byte type = socketInputStream.readByte();
+						int length = socketInputStream.readInt();
+
+						if (type == TCPReceiver.FRAME_REJECT && length == 0) {
+							reject(channel);
+
+							continue;
+						}
+
+						if (type != TCPReceiver.FRAME_CREDIT || length != 4) {
+							throw new IOException("Unexpected frame type " + type + " from receiver");
+						}
+
+						int amount = socketInputStream.readInt();
+
+						long[] credit;
+
+						synchronized (credits) {
+							credit = credits.get(channel);
+						}
+
+						// Credit for channels already closed is discarded
+
+						if (credit != null) {
+							synchronized (credit) {
+								credit[0] += amount;
+
+								credit.notifyAll();
+							}
+						}
+					}
+				} catch (IOException exception) {
+					// The receiver closes its side after our shutdown; anything else is an error
+
+					if (!closing) {
+						System.err.println("TCP link to " + socketAddress + " terminated unexpectedly");
+
+						exception.printStackTrace();
+					}
+				} finally {
+					fail();
+
+					try {
+						socket.close();
+					} catch (IOException exception) {
+						System.err.println("Error closing TCP link to " + socketAddress);
+
+						exception.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+}
@@ -11,26 +11,185 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package communication.writers;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import utilities.MappedRing;
 
 import communication.channel.Record;
-import communication.interfaces.RecordWriter;
+import communication.channel.RecordBatch;
+import communication.compression.FrameCompressor;
+import communication.interfaces.BacklogReporter;
+import communication.interfaces.NonBlockingRecordWriter;
+import communication.interfaces.EncodedRecordWriter;
+import communication.serialization.EncodedRecord;
+import communication.serialization.SerializerRegistry;
 import communication.streams.RecordOutputStream;
 
-public class TCPRecordWriter implements RecordWriter {
+import enums.CompressionType;
+
+/**
+ * Sends records to a TCPRecordMultiplexer, over a logical channel of the link shared with
+ * the other writers that target the same JVM. Records are grouped in frames, each holding a
+ * complete record stream, so that the receiver can decode them without blocking. A frame is
+ * sent when it reaches FRAME_SIZE bytes, or when the writer is flushed or closed.
+ * 
+ * Frames that cannot be sent for lack of credit are kept by the writer, which only blocks
+ * (stalls) when more than MAXIMUM_PENDING_FRAMES are waiting, or when it is flushed or closed.
+ * 
+ * A spilling (hybrid) writer never stalls while writing: once MAXIMUM_PENDING_FRAMES are
+ * waiting, the following frames go to a local SpillFile, and are sent in order as credit
+ * returns. If frames remain when the writer is closed, a background thread sends them and
+ * closes the channel afterwards; awaitClosed() waits for it. If the remaining frames cannot
+ * be sent, the channel is aborted, so that the receiver does not wait for it forever.
+ * 
+ * If the receiver is on the same machine, the frames may instead be written to a MappedRing
+ * shared with it; the writer then stalls only while the ring is full.
+ * 
+ * Frames sent over the link may be compressed by a FrameCompressor, before they take credit.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPRecordWriter implements EncodedRecordWriter, NonBlockingRecordWriter, BacklogReporter {
+	private static final int FRAME_SIZE = 64 * 1024;
+
+	private static final int MAXIMUM_PENDING_FRAMES = 4;
+
+	// Spins before a writer waiting for ring space starts parking, and the park interval
+
+	private static final int RING_SPINS = 64;
+
+	private static final long RING_BACKOFF = TimeUnit.MICROSECONDS.toNanos(50);
+
 	private String name;
+
+	private SerializerRegistry serializerRegistry;
+
+	private TCPConnectionPool.Link link;
+
+	private int channel;
+
+	// Ring shared with the receiver, or null if the frames are sent over the link
+	private MappedRing ring;
+
+	private FrameBuffer frameBuffer;
+
+	// Compressor for the frames sent over the link, or null if they are sent as written
+	private FrameCompressor compressor;
+
+	// Stream for the frame being filled, or null if the frame has no records
 	private RecordOutputStream recordOutputStream;
 
-	public TCPRecordWriter(String name, InetSocketAddress socketAddress) throws IOException {
+	// Complete frames waiting for credit, and their total length
+	private Queue<byte[]> pendingFrames;
+
+	private long pendingBytes;
+
+	// Frames waiting for credit after the pending ones, if spilling is enabled and needed
+	private boolean spillEnabled;
+
+	private SpillFile spillFile;
+
+	// Frames that may wait for credit before the writer stalls
+	private int maximumBacklog;
+
+	// Thread completing the close of a spilling writer, or null if the close was performed by close()
+	private Finisher finisher;
+
+	// Set if the channel could not be closed normally
+	private volatile boolean closeFailed;
+
+	/* Statistics */
+	private long bytesSent;
+	private long framesSent;
+
+	private long stallCount;
+	private long stallTime;
+
+	private long bytesSpilled;
+
+	public TCPRecordWriter(String name, InetSocketAddress socketAddress, String destination) throws IOException {
+		this(name, socketAddress, destination, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name Name of the producer.
+	 * @param socketAddress Address of the receiver of the destination multiplexer.
+	 * @param destination Identifier of the destination multiplexer.
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 */
+	public TCPRecordWriter(String name, InetSocketAddress socketAddress, String destination, SerializerRegistry serializerRegistry) throws IOException {
+		this(name, socketAddress, destination, serializerRegistry, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name Name of the producer.
+	 * @param socketAddress Address of the receiver of the destination multiplexer.
+	 * @param destination Identifier of the destination multiplexer.
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 * @param sharedMemory True to carry the records through a ring file, if the receiver is on the same machine.
+	 */
+	public TCPRecordWriter(String name, InetSocketAddress socketAddress, String destination, SerializerRegistry serializerRegistry, boolean sharedMemory) throws IOException {
+		this(name, socketAddress, destination, serializerRegistry, sharedMemory, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name Name of the producer.
+	 * @param socketAddress Address of the receiver of the destination multiplexer.
+	 * @param destination Identifier of the destination multiplexer.
+	 * @param serializerRegistry Registry used for the compact binary format, or null to use Java serialization.
+	 * @param sharedMemory True to carry the records through a ring file, if the receiver is on the same machine.
+	 * @param spillEnabled True to spill frames to a local file instead of stalling; ignored for ring channels.
+	 */
+	public TCPRecordWriter(String name, InetSocketAddress socketAddress, String destination, SerializerRegistry serializerRegistry, boolean sharedMemory, boolean spillEnabled) throws IOException {
 		this.name = name;
 
-		Socket socket = new Socket(socketAddress.getAddress(), socketAddress.getPort());
+		this.serializerRegistry = serializerRegistry;
 
-		this.recordOutputStream = new RecordOutputStream(socket.getOutputStream());
+		this.link = TCPConnectionPool.getInstance().acquire(socketAddress);
 
-		recordOutputStream.writeObject(name);
+		if (sharedMemory) {
+			try {
+				this.ring = MappedRing.create(MappedRing.DEFAULT_CAPACITY);
+			} catch (IOException exception) {
+				System.err.println("Unable to create ring file for channel from " + name + " to " + destination + ", using TCP instead");
+
+				exception.printStackTrace();
+			}
+		}
+
+		if (ring != null) {
+			try {
+				this.channel = link.openRing(destination, name, ring.getPath());
+			} catch (IOException exception) {
+				ring.delete();
+
+				throw exception;
+			}
+		}
+		else {
+			this.channel = link.open(destination, name);
+		}
+
+		this.frameBuffer = new FrameBuffer(FRAME_SIZE + FRAME_SIZE / 4);
+
+		this.pendingFrames = new LinkedList<byte[]>();
+
+		this.spillEnabled = spillEnabled;
+
+		this.maximumBacklog = spillEnabled ? Integer.MAX_VALUE : MAXIMUM_PENDING_FRAMES;
 	}
 
 	public String getName() {
@@ -41,24 +200,461 @@ public class TCPRecordWriter implements RecordWriter {
 		this.name = name;
 	}
 
+	/**
+	 * Enables the compression of the frames; ignored for ring channels.
+	 * 
+	 * @param compressionType Codec used for the frames, or CompressionType.NONE to send them as written.
+	 * @param adaptive True to stop compressing while it does not pay off.
+	 */
+	public void setCompression(CompressionType compressionType, boolean adaptive) {
+		if (ring != null || compressionType == null || compressionType == CompressionType.NONE) {
+			compressor = null;
+
+			return;
+		}
+
+		compressor = new FrameCompressor(compressionType, adaptive);
+	}
+
 	public boolean write(Record record) throws IOException {
+		if (!pendingFrames.isEmpty()) {
+			drainPendingFrames(maximumBacklog);
+		}
+
+		if (recordOutputStream == null) {
+			recordOutputStream = new RecordOutputStream(frameBuffer, serializerRegistry);
+		}
+
 		recordOutputStream.writeRecord(record);
 
+		if (frameBuffer.size() >= FRAME_SIZE) {
+			completeFrame();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes a record unless completing the current frame could block: for ring channels,
+	 * when the ring may not have room for it; otherwise, when the frames waiting for credit
+	 * already reached their limit, after sending those that have credit.
+	 */
+	public boolean tryWrite(Record record) throws IOException {
+		if (ring != null) {
+			if (ring.getBacklog() + frameBuffer.size() + 2 * FRAME_SIZE > ring.getCapacity()) {
+				return false;
+			}
+		}
+		else {
+			if (!pendingFrames.isEmpty()) {
+				drainPendingFrames(Integer.MAX_VALUE);
+			}
+
+			if (getWaitingFrames() >= maximumBacklog) {
+				return false;
+			}
+		}
+
+		return write(record);
+	}
+
+	public boolean writeEncoded(EncodedRecord encodedRecord) throws IOException {
+		if (!pendingFrames.isEmpty()) {
+			drainPendingFrames(maximumBacklog);
+		}
+
+		if (recordOutputStream == null) {
+			recordOutputStream = new RecordOutputStream(frameBuffer, serializerRegistry);
+		}
+
+		recordOutputStream.writeEncodedRecord(encodedRecord);
+
+		if (frameBuffer.size() >= FRAME_SIZE) {
+			completeFrame();
+		}
+
+		return true;
+	}
+
+	public boolean writeBatch(RecordBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); i++) {
+			write(batch.get(i));
+		}
+
 		return true;
 	}
 
 	public boolean flush() throws IOException {
-		recordOutputStream.flush();
-		recordOutputStream.reset();
+		if (recordOutputStream != null) {
+			completeFrame();
+		}
+
+		drainPendingFrames(0);
 
 		return true;
 	}
 
 	public boolean close() throws IOException {
-		recordOutputStream.flush();
+		if (spillEnabled && ring == null) {
+			if (recordOutputStream != null) {
+				completeFrame();
+			}
+
+			if (getWaitingFrames() > 0) {
+				// Let the node finish; the remaining frames are sent as the receiver catches up
+
+				finisher = new Finisher();
+
+				finisher.start();
+
+				return true;
+			}
+		}
 
-		recordOutputStream.close();
+		finish();
 
 		return true;
 	}
+
+	/**
+	 * Waits until the close of the writer is complete, which close() may leave to a
+	 * background thread for spilling writers.
+	 * 
+	 * @return True if all the records were sent and the channel closed, false otherwise.
+	 */
+	public boolean awaitClosed() {
+		if (finisher != null) {
+			while (true) {
+				try {
+					finisher.join();
+
+					break;
+				} catch (InterruptedException exception) {
+					System.err.println("Unexpected thread interruption while waiting for the close of TCP writer " + name);
+
+					exception.printStackTrace();
+				}
+			}
+		}
+
+		return !closeFailed;
+	}
+
+	/**
+	 * Obtains the number of bytes sent, after compression (excluding frame headers).
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	public long getFramesSent() {
+		return framesSent;
+	}
+
+	/**
+	 * Obtains the compressor of the frames, for its statistics.
+	 * 
+	 * @return The compressor, or null if the frames are not compressed.
+	 */
+	public FrameCompressor getCompressor() {
+		return compressor;
+	}
+
+	/**
+	 * Tests whether the records are carried by a ring file shared with the receiver.
+	 */
+	public boolean isSharedMemory() {
+		return ring != null;
+	}
+
+	/**
+	 * Obtains the bytes written but not yet accepted by the receiver: the frame being
+	 * filled, the frames waiting for credit (or ring space), and the frames whose credit
+	 * was not returned yet.
+	 */
+	public long getBacklog() {
+		if (ring != null) {
+			return frameBuffer.size() + ring.getBacklog();
+		}
+
+		return frameBuffer.size() + pendingBytes + (spillFile == null ? 0L : spillFile.getBytes()) + link.getOutstanding(channel);
+	}
+
+	/**
+	 * Obtains the number of record bytes that went through the spill file.
+	 */
+	public long getBytesSpilled() {
+		return bytesSpilled;
+	}
+
+	/**
+	 * Obtains the number of times the writer blocked waiting for credit (or ring space).
+	 */
+	public long getStallCount() {
+		return stallCount;
+	}
+
+	/**
+	 * Obtains the time the writer blocked waiting for credit (or ring space), in milliseconds.
+	 */
+	public long getStallTime() {
+		return stallTime / 1000000L;
+	}
+
+	private void completeFrame() throws IOException {
+		recordOutputStream.flush();
+
+		recordOutputStream = null;
+
+		if (ring != null) {
+			writeRing(frameBuffer.getBuffer(), frameBuffer.size());
+
+			frameBuffer.reset();
+
+			return;
+		}
+
+		byte[] frame = frameBuffer.getBuffer();
+
+		int length = frameBuffer.size();
+
+		if (compressor != null) {
+			int compressedLength = compressor.compress(frame, length);
+
+			if (compressedLength > 0) {
+				frame = compressor.getFrame();
+
+				length = compressedLength;
+			}
+		}
+
+		if (getWaitingFrames() == 0 && link.tryAcquire(channel, length)) {
+			bytesSent += length;
+			framesSent++;
+
+			link.send(channel, frame, length);
+		}
+		else if (spillEnabled && (spillFile != null || pendingFrames.size() >= MAXIMUM_PENDING_FRAMES)) {
+			if (spillFile == null) {
+				spillFile = new SpillFile("hammr-" + name + "-");
+			}
+
+			spillFile.append(frame, length);
+
+			bytesSpilled += length;
+		}
+		else {
+			pendingFrames.add(Arrays.copyOf(frame, length));
+
+			pendingBytes += length;
+		}
+
+		frameBuffer.reset();
+
+		drainPendingFrames(maximumBacklog);
+	}
+
+	/**
+	 * Obtains the number of frames waiting for credit, in memory or spilled.
+	 */
+	private long getWaitingFrames() {
+		return pendingFrames.size() + (spillFile == null ? 0L : spillFile.size());
+	}
+
+	/**
+	 * Moves spilled frames to memory while there is room, preserving their order.
+	 */
+	private void refillPendingFrames() throws IOException {
+		while (pendingFrames.size() < MAXIMUM_PENDING_FRAMES && !spillFile.isEmpty()) {
+			byte[] frame = spillFile.remove();
+
+			pendingFrames.add(frame);
+
+			pendingBytes += frame.length;
+		}
+
+		if (spillFile.isEmpty()) {
+			spillFile.delete();
+
+			spillFile = null;
+		}
+	}
+
+	/**
+	 * Sends pending frames while there is credit, blocking only while more
+	 * than the specified number of frames remain.
+	 * 
+	 * @param maximumPending Number of frames that may be left pending.
+	 */
+	private void drainPendingFrames(int maximumPending) throws IOException {
+		while (true) {
+			if (spillFile != null) {
+				refillPendingFrames();
+			}
+
+			if (pendingFrames.isEmpty()) {
+				return;
+			}
+
+			byte[] frame = pendingFrames.peek();
+
+			if (!link.tryAcquire(channel, frame.length)) {
+				if (getWaitingFrames() <= maximumPending) {
+					return;
+				}
+
+				long stallStart = System.nanoTime();
+
+				link.awaitCredit(channel);
+
+				stallCount++;
+				stallTime += System.nanoTime() - stallStart;
+
+				continue;
+			}
+
+			bytesSent += frame.length;
+			framesSent++;
+
+			link.send(channel, frame);
+
+			pendingFrames.remove();
+
+			pendingBytes -= frame.length;
+		}
+	}
+
+	/**
+	 * Sends the remaining frames and closes the channel.
+	 */
+	private void finish() throws IOException {
+		try {
+			flush();
+
+			link.close(channel);
+		} catch (IOException exception) {
+			closeFailed = true;
+
+			// The receiver must neither wait for the channel forever, nor take it for complete
+
+			try {
+				link.abort(channel);
+			} catch (IOException abortException) {
+				// The link itself is broken, so the receiver terminates the channel anyway
+			}
+
+			throw exception;
+		} finally {
+			if (ring != null) {
+				ring.delete();
+
+				ring.close();
+			}
+
+			if (spillFile != null) {
+				spillFile.delete();
+
+				spillFile = null;
+			}
+
+			if (compressor != null) {
+				compressor.end();
+			}
+
+			TCPConnectionPool.getInstance().release(link);
+		}
+	}
+
+	/**
+	 * Completes the close of a spilling writer whose receiver still lags.
+	 */
+	private class Finisher extends Thread {
+		public Finisher() {
+			super("TCPRecordWriter-" + name);
+		}
+
+		public void run() {
+			try {
+				finish();
+			} catch (IOException exception) {
+				System.err.println("Error sending spilled frames of TCP writer " + name);
+
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writes a frame to the ring, waiting for space as needed. The receiver is woken up
+	 * if it went to sleep.
+	 * 
+	 * @param frame Array holding the frame.
+	 * @param length Length of the frame.
+	 */
+	private void writeRing(byte[] frame, int length) throws IOException {
+		int offset = 0;
+
+		int spins = 0;
+
+		long stallStart = 0L;
+
+		while (offset < length) {
+			int written = ring.write(frame, offset, length - offset);
+
+			if (written > 0) {
+				offset += written;
+
+				if (ring.needsWakeup()) {
+					link.wakeup(channel);
+				}
+
+				continue;
+			}
+
+			// Fails if the link is broken, or if the receiver rejected the channel, which leaves the ring file unopened
+
+			try {
+				link.checkChannel(channel);
+			} catch (IOException exception) {
+				ring.delete();
+
+				throw exception;
+			}
+
+			if (stallStart == 0L) {
+				stallStart = System.nanoTime();
+
+				stallCount++;
+			}
+
+			if (spins < RING_SPINS) {
+				spins++;
+
+				Thread.yield();
+			}
+			else {
+				LockSupport.parkNanos(this, RING_BACKOFF);
+			}
+		}
+
+		if (stallStart != 0L) {
+			stallTime += System.nanoTime() - stallStart;
+		}
+
+		bytesSent += length;
+		framesSent++;
+	}
+
+	/**
+	 * Frame buffer that exposes its contents without copying them.
+	 */
+	private static class FrameBuffer extends ByteArrayOutputStream {
+		public FrameBuffer(int size) {
+			super(size);
+		}
+
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
 }
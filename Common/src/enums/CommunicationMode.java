@@ -14,5 +14,5 @@ package enums;
 import java.io.Serializable;
 
 public enum CommunicationMode implements Serializable {
-	SHM, TCP, FILE, NODEBOX, TIMEBOX;
+	SHM, TCP, FILE, NODEBOX, TIMEBOX, HYBRID;
 }
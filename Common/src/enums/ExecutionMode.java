@@ -0,0 +1,30 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package enums;
+
+/**
+ * How launchers run the Nodes of their NodeGroups:
+ * 
+ * THREAD runs each Node in its own platform thread;
+ * POOL runs each Node in a platform thread, at most hammr.pool.threads of them at once
+ * unless all of them are blocked;
+ * VIRTUAL runs each Node in a virtual thread, when the JVM supports them; the CPU and user
+ * times of these Nodes are then reported as unavailable.
+ * 
+ * In every mode, the endpoints of TIMEBOX edges run in time slices on the shared pool of
+ * threads of the TimeboxScheduler. In POOL and VIRTUAL modes, launchers also accept a
+ * bounded number of Nodes by default.
+ */
+public enum ExecutionMode {
+	THREAD, POOL, VIRTUAL;
+}
@@ -28,6 +28,8 @@ import platforms.x86.X86_DVFS;
 import utilities.MutableInteger;
 import appspecs.Node;
 
+import communication.serialization.SerializerRegistry;
+
 public class NodeGroup implements Serializable {
 	private static final long serialVersionUID = 1L;
 
@@ -57,6 +59,8 @@ public class NodeGroup implements Serializable {
 	
 	private ProgressReport progressReport;
 
+	private SerializerRegistry serializerRegistry;
+
 	/////////////////////////
 	// PARSING INFORMATION //
 	/////////////////////////
@@ -187,6 +191,19 @@ public class NodeGroup implements Serializable {
 	public Stage getStage() {
 		return stage;
 	}
+
+	public void setSerializerRegistry(SerializerRegistry serializerRegistry) {
+		this.serializerRegistry = serializerRegistry;
+	}
+
+	/**
+	 * Returns the registry used to encode records written by this NodeGroup.
+	 * 
+	 * @return The registry for the binary record format, or null if Java serialization should be used.
+	 */
+	public SerializerRegistry getSerializerRegistry() {
+		return serializerRegistry;
+	}
 	
 	public void setGroupManager(StateManager groupManager) {
 		this.groupManager = groupManager;
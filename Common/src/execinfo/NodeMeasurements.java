@@ -12,6 +12,9 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 package execinfo;
 
 import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Package for node timing measurements.
@@ -22,11 +25,24 @@ import java.io.Serializable;
 public class NodeMeasurements implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Value of the CPU and user times when the JVM could not measure them, as for Nodes run by virtual threads.
+	 */
+	public static final long UNAVAILABLE = -1L;
+
 	private long realTime;
 	private long cpuTime;
 	private long userTime;
 	private double energy;
 
+	private long tcpBytesSent;
+	private long tcpStallCount;
+	private long tcpStallTime;
+	private long tcpBytesSpilled;
+
+	// Compression statistics of the TCP outputs, by channel: bytes compressed, bytes produced and time spent
+	private Map<String, long[]> tcpCompression;
+
 	/**
 	 * Constructor method.
 	 * 
@@ -40,6 +56,8 @@ public class NodeMeasurements implements Serializable {
 		this.cpuTime = cpuTime;
 		this.userTime = userTime;
 		this.energy = energy;
+
+		this.tcpCompression = new TreeMap<String, long[]>();
 	}
 
 	/**
@@ -54,7 +72,7 @@ public class NodeMeasurements implements Serializable {
 	/**
 	 * Getter for the CPU time associated with the Node run.
 	 * 
-	 * @return CPU time (epoch)
+	 * @return CPU time (epoch), or UNAVAILABLE.
 	 */
 	public long getCpuTime() {
 		return cpuTime;
@@ -63,7 +81,7 @@ public class NodeMeasurements implements Serializable {
 	/**
 	 * Getter for user time associated with Node's run.
 	 * 
-	 * @return User time (epoch).
+	 * @return User time (epoch), or UNAVAILABLE.
 	 */
 	public long getUserTime() {
 		return userTime;
@@ -77,4 +95,94 @@ public class NodeMeasurements implements Serializable {
 	public double getEnergy() {
 		return energy;
 	}
+
+	/**
+	 * Setter for the flow control statistics of the Node's TCP outputs.
+	 * 
+	 * @param tcpBytesSent	Bytes sent through TCP channels.
+	 * @param tcpStallCount	Number of times the Node blocked waiting for credit.
+	 * @param tcpStallTime	Time the Node blocked waiting for credit.
+	 */
+	public void setTCPStatistics(long tcpBytesSent, long tcpStallCount, long tcpStallTime) {
+		this.tcpBytesSent = tcpBytesSent;
+		this.tcpStallCount = tcpStallCount;
+		this.tcpStallTime = tcpStallTime;
+	}
+
+	/**
+	 * Getter for the bytes sent through TCP channels.
+	 * 
+	 * @return Bytes sent.
+	 */
+	public long getTCPBytesSent() {
+		return tcpBytesSent;
+	}
+
+	/**
+	 * Getter for the number of times the Node blocked waiting for TCP credit.
+	 * 
+	 * @return Number of stalls.
+	 */
+	public long getTCPStallCount() {
+		return tcpStallCount;
+	}
+
+	/**
+	 * Getter for the time the Node blocked waiting for TCP credit.
+	 * 
+	 * @return Stall time (milliseconds).
+	 */
+	public long getTCPStallTime() {
+		return tcpStallTime;
+	}
+
+	/**
+	 * Setter for the bytes the Node's hybrid TCP outputs spilled to local files.
+	 * 
+	 * @param tcpBytesSpilled	Bytes spilled.
+	 */
+	public void setTCPBytesSpilled(long tcpBytesSpilled) {
+		this.tcpBytesSpilled = tcpBytesSpilled;
+	}
+
+	/**
+	 * Getter for the bytes the Node's hybrid TCP outputs spilled to local files.
+	 * 
+	 * @return Bytes spilled.
+	 */
+	public long getTCPBytesSpilled() {
+		return tcpBytesSpilled;
+	}
+
+	/**
+	 * Setter for the compression statistics of one of the Node's TCP outputs.
+	 * 
+	 * @param channelName	Name of the output channel.
+	 * @param bytesIn	Bytes of the frames compressed.
+	 * @param bytesOut	Bytes the compressed frames took.
+	 * @param compressionTime	Time spent compressing (milliseconds).
+	 */
+	public void setTCPCompression(String channelName, long bytesIn, long bytesOut, long compressionTime) {
+		tcpCompression.put(channelName, new long[] {bytesIn, bytesOut, compressionTime});
+	}
+
+	/**
+	 * Getter for the names of the TCP outputs that compress their frames.
+	 * 
+	 * @return Names of the output channels.
+	 */
+	public Set<String> getTCPCompressionChannels() {
+		return tcpCompression.keySet();
+	}
+
+	/**
+	 * Getter for the compression statistics of one of the Node's TCP outputs.
+	 * 
+	 * @param channelName	Name of the output channel.
+	 * 
+	 * @return Bytes compressed, bytes produced and compression time (milliseconds), or null if the output does not compress.
+	 */
+	public long[] getTCPCompression(String channelName) {
+		return tcpCompression.get(channelName);
+	}
 }
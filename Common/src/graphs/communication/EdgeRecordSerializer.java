@@ -0,0 +1,92 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package graphs.communication;
+
+import graphs.programs.GraphEdge;
+import graphs.programs.shortestpath.SPGraphEdge;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import communication.serialization.RecordSerializer;
+import communication.serialization.SerializationHelper;
+
+public class EdgeRecordSerializer implements RecordSerializer<EdgeRecord<GraphEdge>> {
+	private static final long serialVersionUID = 1L;
+
+	private static final byte PLAIN_EDGE = 0;
+	private static final byte SHORTEST_PATH_EDGE = 1;
+	private static final byte SERIALIZED_EDGE = 2;
+
+	public void write(DataOutput output, EdgeRecord<GraphEdge> record) throws IOException {
+		GraphEdge edge = record.getObject();
+
+		if (edge != null && edge.getClass() == GraphEdge.class) {
+			output.writeByte(PLAIN_EDGE);
+			writeEdgeFields(output, edge);
+		}
+		else if (edge != null && edge.getClass() == SPGraphEdge.class) {
+			output.writeByte(SHORTEST_PATH_EDGE);
+			writeEdgeFields(output, edge);
+			output.writeDouble(((SPGraphEdge) edge).getDistance());
+		}
+		else {
+			output.writeByte(SERIALIZED_EDGE);
+			SerializationHelper.writeSerialized(output, edge);
+		}
+
+		SerializationHelper.writeString(output, record.getDescription());
+	}
+
+	public EdgeRecord<GraphEdge> read(DataInput input) throws IOException {
+		GraphEdge edge;
+
+		byte type = input.readByte();
+
+		switch (type) {
+		case PLAIN_EDGE:
+			edge = new GraphEdge();
+			readEdgeFields(input, edge);
+			break;
+		case SHORTEST_PATH_EDGE:
+			edge = new SPGraphEdge(0.0);
+			readEdgeFields(input, edge);
+			((SPGraphEdge) edge).setDistance(input.readDouble());
+			break;
+		case SERIALIZED_EDGE:
+			edge = (GraphEdge) SerializationHelper.readSerialized(input);
+			break;
+		default:
+			throw new IOException("Unknown edge encoding " + type);
+		}
+
+		EdgeRecord<GraphEdge> record = new EdgeRecord<GraphEdge>(edge);
+
+		record.setDescription(SerializationHelper.readString(input));
+
+		return record;
+	}
+
+	private void writeEdgeFields(DataOutput output, GraphEdge edge) throws IOException {
+		SerializationHelper.writeString(output, edge.getName());
+		SerializationHelper.writeString(output, edge.getSourceName());
+		SerializationHelper.writeString(output, edge.getTargetName());
+	}
+
+	private void readEdgeFields(DataInput input, GraphEdge edge) throws IOException {
+		edge.setName(SerializationHelper.readString(input));
+		edge.setSourceName(SerializationHelper.readString(input));
+		edge.setTargetName(SerializationHelper.readString(input));
+	}
+}
@@ -0,0 +1,82 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package graphs.communication;
+
+import graphs.programs.GraphVertex;
+import graphs.programs.shortestpath.SPGraphVertex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import communication.serialization.RecordSerializer;
+import communication.serialization.SerializationHelper;
+
+public class VertexRecordSerializer implements RecordSerializer<VertexRecord<GraphVertex>> {
+	private static final long serialVersionUID = 1L;
+
+	private static final byte PLAIN_VERTEX = 0;
+	private static final byte SHORTEST_PATH_VERTEX = 1;
+	private static final byte SERIALIZED_VERTEX = 2;
+
+	public void write(DataOutput output, VertexRecord<GraphVertex> record) throws IOException {
+		GraphVertex vertex = record.getObject();
+
+		if (vertex != null && vertex.getClass() == GraphVertex.class) {
+			output.writeByte(PLAIN_VERTEX);
+			SerializationHelper.writeString(output, vertex.getName());
+		}
+		else if (vertex != null && vertex.getClass() == SPGraphVertex.class) {
+			output.writeByte(SHORTEST_PATH_VERTEX);
+			SerializationHelper.writeString(output, vertex.getName());
+			output.writeDouble(((SPGraphVertex) vertex).getDistance());
+		}
+		else {
+			output.writeByte(SERIALIZED_VERTEX);
+			SerializationHelper.writeSerialized(output, vertex);
+		}
+
+		SerializationHelper.writeString(output, record.getDescription());
+	}
+
+	public VertexRecord<GraphVertex> read(DataInput input) throws IOException {
+		GraphVertex vertex;
+
+		byte type = input.readByte();
+
+		switch (type) {
+		case PLAIN_VERTEX:
+			vertex = new GraphVertex();
+			vertex.setName(SerializationHelper.readString(input));
+			break;
+		case SHORTEST_PATH_VERTEX:
+			SPGraphVertex spVertex = new SPGraphVertex();
+			spVertex.setName(SerializationHelper.readString(input));
+			spVertex.setDistance(input.readDouble());
+
+			vertex = spVertex;
+			break;
+		case SERIALIZED_VERTEX:
+			vertex = (GraphVertex) SerializationHelper.readSerialized(input);
+			break;
+		default:
+			throw new IOException("Unknown vertex encoding " + type);
+		}
+
+		VertexRecord<GraphVertex> record = new VertexRecord<GraphVertex>(vertex);
+
+		record.setDescription(SerializationHelper.readString(input));
+
+		return record;
+	}
+}
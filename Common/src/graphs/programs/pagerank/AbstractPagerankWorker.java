@@ -7,18 +7,17 @@ import graphs.programs.GraphVertex;
 import graphs.programs.GraphWorker;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import mapreduce.communication.IntDoubleRecord;
 import mapreduce.communication.MRRecord;
 
 import org.jgrapht.graph.DefaultDirectedGraph;
 
+import utilities.IntDoubleHashMap;
 import utilities.logging.Logging;
 
 import communication.channel.Record;
@@ -37,8 +36,8 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 	
 	protected static final double epsilon = 0.0000001;
 	
-	Map<Integer, Double> mPrePagerank = new HashMap<Integer, Double>();
-	Map<Integer, Double> mNextPagerank;
+	IntDoubleHashMap mPrePagerank = new IntDoubleHashMap();
+	IntDoubleHashMap mNextPagerank;
 	
 	private final String graphInputFilename;
 	private final String pagerankInputFilename;
@@ -84,17 +83,24 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 	@Override
 	protected void performAction(Record record) {	
 		if (record instanceof MRRecord<?, ?>) {
-			MRRecord<Integer, Double> element = (MRRecord<Integer, Double>) record;
+			int key;
+			double value;
 
-			System.out.printf("worker %d get message: %d %f.\n", numberWorker, element.getKey(), element.getValue());
-
-			Double pagerank = null;
+			// Contributions are written as IntDoubleRecords, which are read without boxing
+			if (record instanceof IntDoubleRecord) {
+				key = ((IntDoubleRecord) record).getIntKey();
+				value = ((IntDoubleRecord) record).getDoubleValue();
+			}
+			else {
+				MRRecord<Integer, Double> element = (MRRecord<Integer, Double>) record;
 
-			if ((pagerank = mNextPagerank.get(element.getKey())) == null) {
-				pagerank = 0.0;
+				key = element.getKey();
+				value = element.getValue();
 			}
 
-			mNextPagerank.put(element.getKey(), pagerank + element.getValue());
+			System.out.printf("worker %d get message: %d %f.\n", numberWorker, key, value);
+
+			mNextPagerank.add(key, value);
 		}
 		else if (record instanceof MarkerRecord)
 		{
@@ -107,15 +113,15 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 	
 	protected final void updateAndSendPagerank()
 	{
-		for (Entry<Integer, Double> entry : mPrePagerank.entrySet())
+		for (int slot = mPrePagerank.nextSlot(0); slot >= 0; slot = mPrePagerank.nextSlot(slot + 1))
 		{
-			GraphVertex vertex = vertexMap.get(String.valueOf(entry.getKey()));
+			GraphVertex vertex = vertexMap.get(String.valueOf(mPrePagerank.keyAt(slot)));
 			Set<GraphEdge> edgeSet = graph.outgoingEdgesOf(vertex);
 			Set<GraphEdge> foreignEdgeSet = foreignEdges.get(vertex.getName());
 			
 			int fanout = edgeSet.size() + (foreignEdgeSet == null ? 0 : foreignEdgeSet.size());
 			
-			double pagerankContribution = fanout == 0 ? 0.0 : entry.getValue() / fanout;
+			double pagerankContribution = fanout == 0 ? 0.0 : mPrePagerank.valueAt(slot) / fanout;
 			
 			
 			if (pagerankContribution > epsilon)
@@ -127,8 +133,7 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 			{
 				GraphVertex neighbor = graph.getEdgeTarget(edge);
 				int vertexIndex = Integer.parseInt(neighbor.getName());
-				double pagerank = mNextPagerank.get(vertexIndex);
-				mNextPagerank.put(vertexIndex, pagerank + pagerankContribution);
+				mNextPagerank.add(vertexIndex, pagerankContribution);
 			}
 			
 			/**
@@ -145,7 +150,7 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 //					boolean ret = write(new MRRecord<Integer, Double>(Integer.valueOf(foreignEdge.getTargetName()),
 //							pagerankContribution), ownerWorker);
 					
-					writeChannel(new MRRecord<Integer, Double>(Integer.valueOf(foreignEdge.getTargetName()),
+					writeChannel(new IntDoubleRecord(Integer.parseInt(foreignEdge.getTargetName()),
 							pagerankContribution), ownerWorker);
 					
 				}
@@ -154,10 +159,7 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 		}
 		
 		Set<String> tcpOutputChannelNames = getOutputChannelNames(TCPOutputChannel.class);
-		for (String channelName : tcpOutputChannelNames)
-		{
-			writeChannel(new MarkerRecord(null), channelName);
-		}
+		writeChannels(new MarkerRecord(null), tcpOutputChannelNames);
 		
 	}
 	
@@ -205,12 +207,12 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 				cache.vertexMap = vertexMap;
 				cache.foreignEdges = foreignEdges;
 				cache.graph = graph;
-				cache.mPagerank = new HashMap<Integer, Double>();
+				cache.mPagerank = new IntDoubleHashMap();
 				ret = false;
 			}
 
-			for (Integer i : mPrePagerank.keySet()) {
-				cache.mPagerank.put(i, 0.0);
+			for (int slot = mPrePagerank.nextSlot(0); slot >= 0; slot = mPrePagerank.nextSlot(slot + 1)) {
+				cache.mPagerank.put(mPrePagerank.keyAt(slot), 0.0);
 			}
 			
 			mNextPagerank = cache.mPagerank;
@@ -302,9 +304,9 @@ public abstract class AbstractPagerankWorker extends GraphWorker<GraphVertex,Gra
 	{	
 		String output = pagerankOutputFilename(numberWorker);
 		
-		for (Entry<Integer, Double> entry : mNextPagerank.entrySet())
+		for (int slot = mNextPagerank.nextSlot(0); slot >= 0; slot = mNextPagerank.nextSlot(slot + 1))
 		{
-			writeChannel(new MRRecord<Integer, Double>(entry.getKey(), entry.getValue()), output);
+			writeChannel(new IntDoubleRecord(mNextPagerank.keyAt(slot), mNextPagerank.valueAt(slot)), output);
 		}
 	}
 	
@@ -112,9 +112,9 @@ public class ControllerPagerankWorker extends AbstractPagerankWorker implements
 					Logging.log("Next iteration");
 					mPrePagerank.clear();
 					mPrePagerank.putAll(cache.mPagerank);
-					for (Integer i : mPrePagerank.keySet())
+					for (int slot = mPrePagerank.nextSlot(0); slot >= 0; slot = mPrePagerank.nextSlot(slot + 1))
 					{
-						cache.mPagerank.put(i, 0.0);
+						cache.mPagerank.put(mPrePagerank.keyAt(slot), 0.0);
 					}
 					
 					updateAndSendPagerank();	
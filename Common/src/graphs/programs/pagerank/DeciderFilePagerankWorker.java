@@ -5,9 +5,9 @@ import graphs.programs.GraphVertex;
 import interfaces.ApplicationAggregator;
 
 import java.rmi.RemoteException;
-import java.util.Map.Entry;
 import java.util.Set;
 
+import mapreduce.communication.IntDoubleRecord;
 import mapreduce.communication.MRRecord;
 
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -36,15 +36,15 @@ public class DeciderFilePagerankWorker extends AbstractPagerankWorker {
 		int count = 0;
 		
 		//send messages
-		for(Entry<Integer, Double> entry : cache.mPagerank.entrySet())
+		for(int slot = cache.mPagerank.nextSlot(0); slot >= 0; slot = cache.mPagerank.nextSlot(slot + 1))
 		{
-			GraphVertex vertex = vertexMap.get(String.valueOf(entry.getKey()));
+			GraphVertex vertex = vertexMap.get(String.valueOf(cache.mPagerank.keyAt(slot)));
 			Set<GraphEdge> edgeSet = graph.outgoingEdgesOf(vertex);
 			Set<GraphEdge> foreignEdgeSet = foreignEdges.get(vertex.getName());
 			
 			int fanout = edgeSet.size() + (foreignEdgeSet == null ? 0 : foreignEdgeSet.size());
 			
-			double pagerankContribution = fanout == 0 ? 0.0 : entry.getValue() / fanout;
+			double pagerankContribution = fanout == 0 ? 0.0 : cache.mPagerank.valueAt(slot) / fanout;
 			
 			if (++count % 10000 == 0) {
 				Logging.log(String.format("%s: processed %d vertex", name, count));
@@ -60,7 +60,7 @@ public class DeciderFilePagerankWorker extends AbstractPagerankWorker {
 //					System.out.printf("worker %d send message to worker %d: %s %f\n", numberWorker,
 //							numberWorker, neighbor.getName(), pagerankContribution);
 					
-					writeChannel(new MRRecord<Integer, Double>(Integer.parseInt(neighbor.getName()),
+					writeChannel(new IntDoubleRecord(Integer.parseInt(neighbor.getName()),
 							pagerankContribution), messageOutputFilename(numberWorker, numberWorker));
 				}
 
@@ -75,7 +75,7 @@ public class DeciderFilePagerankWorker extends AbstractPagerankWorker {
 //						System.out.printf("worker %d send message to worker %d: %s %f\n", numberWorker,
 //								ownerWorkerIndex, foreignEdge.getTargetName(), pagerankContribution);
 
-						writeChannel(new MRRecord<Integer, Double>(Integer.valueOf(foreignEdge.getTargetName()),
+						writeChannel(new IntDoubleRecord(Integer.parseInt(foreignEdge.getTargetName()),
 								pagerankContribution), messageOutputFilename(numberWorker, ownerWorkerIndex));
 					}
 				}
@@ -84,9 +84,9 @@ public class DeciderFilePagerankWorker extends AbstractPagerankWorker {
 		
 		boolean finish = true;
 		
-		for (Entry<Integer, Double> entry : cache.mPagerank.entrySet())
+		for (int slot = cache.mPagerank.nextSlot(0); slot >= 0; slot = cache.mPagerank.nextSlot(slot + 1))
 		{	
-			if (Math.abs(entry.getValue() - mPrePagerank.get(entry.getKey())) >= epsilon)
+			if (Math.abs(cache.mPagerank.valueAt(slot) - mPrePagerank.get(cache.mPagerank.keyAt(slot), 0.0)) >= epsilon)
 			{
 				finish = false;
 				break;
@@ -109,15 +109,26 @@ public class DeciderFilePagerankWorker extends AbstractPagerankWorker {
 	protected void performAction(Record record) {
 		assert(record instanceof MRRecord<?,?>);
 		
-		MRRecord<Integer, Double> element = (MRRecord<Integer, Double>) record;;
+		int key;
+		double value;
 		
-//		System.out.printf("worker %d get message: %d %f\n", numberWorker, element.getKey(), element.getValue());
+		// Contributions are written as IntDoubleRecords, which are read without boxing
+		if (record instanceof IntDoubleRecord) {
+			key = ((IntDoubleRecord) record).getIntKey();
+			value = ((IntDoubleRecord) record).getDoubleValue();
+		}
+		else {
+			MRRecord<Integer, Double> element = (MRRecord<Integer, Double>) record;
+			
+			key = element.getKey();
+			value = element.getValue();
+		}
 		
-		Double pagerank = cache.mPagerank.get(element.getKey());
-
-		assert(pagerank != null);
+//		System.out.printf("worker %d get message: %d %f\n", numberWorker, key, value);
+		
+		assert(cache.mPagerank.containsKey(key));
 		
-		mNextPagerank.put(element.getKey(), pagerank + element.getValue());
+		mNextPagerank.put(key, cache.mPagerank.get(key, 0.0) + value);
 		
 	}
 
@@ -1,7 +1,6 @@
 package graphs.programs.pagerank;
 
 import java.rmi.RemoteException;
-import java.util.Map.Entry;
 
 import communication.channel.Record;
 
@@ -40,11 +39,11 @@ public class DeciderTCPPagerankWorker extends AbstractPagerankWorker{
 	protected void performActionNothingPresent() {
 		boolean finish = true;
 		
-		for (Entry<Integer, Double> entry : mNextPagerank.entrySet())
+		for (int slot = mNextPagerank.nextSlot(0); slot >= 0; slot = mNextPagerank.nextSlot(slot + 1))
 		{
-			double prePagerank = mPrePagerank.containsKey(entry.getKey()) ? 0.0 : mPrePagerank.get(entry.getKey());
+			double prePagerank = mPrePagerank.get(mNextPagerank.keyAt(slot), 0.0);
 			
-			if (Math.abs(entry.getValue() - prePagerank) >= epsilon)
+			if (Math.abs(mNextPagerank.valueAt(slot) - prePagerank) >= epsilon)
 			{
 				finish = false;
 				break;
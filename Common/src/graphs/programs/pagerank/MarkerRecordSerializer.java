@@ -0,0 +1,25 @@
+package graphs.programs.pagerank;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import communication.serialization.RecordSerializer;
+import communication.serialization.SerializationHelper;
+
+public class MarkerRecordSerializer implements RecordSerializer<MarkerRecord> {
+	private static final long serialVersionUID = 1L;
+
+	public void write(DataOutput output, MarkerRecord record) throws IOException {
+		SerializationHelper.writeObject(output, record.getObject());
+		SerializationHelper.writeString(output, record.getDescription());
+	}
+
+	public MarkerRecord read(DataInput input) throws IOException {
+		MarkerRecord record = new MarkerRecord(SerializationHelper.readObject(input));
+
+		record.setDescription(SerializationHelper.readString(input));
+
+		return record;
+	}
+}
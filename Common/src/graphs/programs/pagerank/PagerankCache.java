@@ -7,6 +7,8 @@ import java.util.Set;
 import graphs.programs.GraphEdge;
 import graphs.programs.GraphVertex;
 
+import utilities.IntDoubleHashMap;
+
 import org.jgrapht.graph.DefaultDirectedGraph;
 
 public class PagerankCache implements Serializable{
@@ -18,5 +20,5 @@ public class PagerankCache implements Serializable{
 	public Map<String, GraphVertex> vertexMap;
 	public Map<String, GraphEdge> edgeMap;
 	public Map<String, Set<GraphEdge>> foreignEdges;
-	public Map<Integer, Double> mPagerank;
+	public IntDoubleHashMap mPagerank;
 }
@@ -0,0 +1,44 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package graphs.programs.shortestpath;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import communication.serialization.RecordSerializer;
+import communication.serialization.SerializationHelper;
+
+public class SPGraphUpdateMessageSerializer implements RecordSerializer<SPGraphUpdateMessage> {
+	private static final long serialVersionUID = 1L;
+
+	public void write(DataOutput output, SPGraphUpdateMessage record) throws IOException {
+		SerializationHelper.writeString(output, record.getVertexName());
+		output.writeDouble(record.getDistance());
+
+		SerializationHelper.writeObject(output, record.getObject());
+		SerializationHelper.writeString(output, record.getDescription());
+	}
+
+	public SPGraphUpdateMessage read(DataInput input) throws IOException {
+		String vertexName = SerializationHelper.readString(input);
+		double distance = input.readDouble();
+
+		SPGraphUpdateMessage record = new SPGraphUpdateMessage(vertexName, distance);
+
+		record.setObject(SerializationHelper.readObject(input));
+		record.setDescription(SerializationHelper.readString(input));
+
+		return record;
+	}
+}
@@ -14,6 +14,8 @@ package interfaces;
 import java.net.InetSocketAddress;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.Set;
 
 import java.io.Serializable;
 
@@ -75,6 +77,28 @@ public interface Manager extends Remote {
 	 */
 	public InetSocketAddress obtainSocketAddress(String applicationName, String nodeName) throws RemoteException;
 
+	/**
+	 * Registers the server-side TCP channel socket addresses of several nodes
+	 * at once. Called within Launcher during setup of NodeGroups.
+	 * 
+	 * @param applicationName Ditto.
+	 * @param socketAddresses Socket addresses of the server-side TCP channels, by node name.
+	 * 
+	 * @return True unless the application is unknown.
+	 */
+	public boolean registerSocketAddresses(String applicationName, Map<String, InetSocketAddress> socketAddresses) throws RemoteException;
+
+	/**
+	 * Queries for the server-side TCP socket addresses of several nodes at
+	 * once. The call returns as soon as the last of them is registered.
+	 * 
+	 * @param applicationName Ditto.
+	 * @param nodeNames Names of the nodes with the server-side TCP channels.
+	 * 
+	 * @return The socket addresses of the requested TCP channels, by node name.
+	 */
+	public Map<String, InetSocketAddress> obtainSocketAddresses(String applicationName, Set<String> nodeNames) throws RemoteException;
+
 	/**
 	 * Returns the aggregator specified by the application name and variable
 	 * name.
@@ -12,14 +12,18 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 package mapreduce.appspecs;
 
 import utilities.filesystem.Directory;
+import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 import appspecs.ApplicationSpecification;
 import appspecs.Node;
 
+import communication.readers.FileRecordReader;
+
 import enums.CommunicationMode;
 
 import exceptions.InexistentInputException;
 import exceptions.OverlapingFilesException;
+import exceptions.UnsplittableInputException;
 
 public class MapReduceSpecification extends ApplicationSpecification {
 	private static final long serialVersionUID = 1L;
@@ -45,6 +49,32 @@ public class MapReduceSpecification extends ApplicationSpecification {
 		insertEdges(splitStage, mapStage, CommunicationMode.FILE);
 	}
 
+	/**
+	 * Inserts mappers that read disjoint byte ranges of the same input, which must
+	 * be a splittable record file.
+	 * 
+	 * @param input Input file.
+	 * @param mappers Mappers, one per range.
+	 * 
+	 * @throws InexistentInputException If the input does not exist.
+	 * @throws UnsplittableInputException If the input was not written in the splittable format, since all but one mapper would read nothing.
+	 */
+	public void insertMappers(Filename input, Node[] mappers) throws InexistentInputException, UnsplittableInputException {
+		if (!FileHelper.exists(input)) {
+			throw new InexistentInputException(input);
+		}
+
+		if (!FileRecordReader.isSplittable(input)) {
+			throw new UnsplittableInputException(input);
+		}
+
+		stageMappers(mappers);
+
+		for (int i = 0; i < mappers.length; i++) {
+			addInput(mappers[i], input.getLocation(), input, i, mappers.length);
+		}
+	}
+
 	public void insertMappers(Filename[] inputs, Node[] mappers) throws InexistentInputException {
 		stageMappers(mappers);
 
@@ -0,0 +1,101 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package mapreduce.communication;
+
+import java.util.Comparator;
+
+/**
+ * MRRecord specialized for int keys and int values. The key and value are kept unboxed;
+ * the generic getters still work, but box on every call.
+ */
+public class IntIntRecord extends MRRecord<Integer,Integer> {
+	private static final long serialVersionUID = 1L;
+
+	private int key;
+	private int value;
+
+	public IntIntRecord(int key, int value) {
+		super(null, null);
+
+		this.key = key;
+		this.value = value;
+	}
+
+	public int getIntKey() {
+		return key;
+	}
+
+	public void setIntKey(int key) {
+		this.key = key;
+	}
+
+	public int getIntValue() {
+		return value;
+	}
+
+	public void setIntValue(int value) {
+		this.value = value;
+	}
+
+	public Integer getKey() {
+		return key;
+	}
+
+	public void setKey(Integer key) {
+		this.key = key;
+	}
+
+	public Integer getValue() {
+		return value;
+	}
+
+	public void setValue(Integer value) {
+		this.value = value;
+	}
+
+	public Object getObject() {
+		return getKey();
+	}
+
+	public void setObject(Object object) {
+		setKey((Integer) object);
+	}
+
+	public String toString() {
+		return String.valueOf(key);
+	}
+
+	/**
+	 * Orders IntIntRecords by key without boxing; for use in Mergers.
+	 */
+	public static final Comparator<MRRecord<Integer,Integer>> KEY_ORDER = new Comparator<MRRecord<Integer,Integer>>() {
+		public int compare(MRRecord<Integer,Integer> first, MRRecord<Integer,Integer> second) {
+			int firstKey = ((IntIntRecord) first).key;
+			int secondKey = ((IntIntRecord) second).key;
+
+			return (firstKey < secondKey ? -1 : (firstKey == secondKey ? 0 : 1));
+		}
+	};
+
+	/**
+	 * Orders IntIntRecords by value without boxing; for use in Mergers.
+	 */
+	public static final Comparator<MRRecord<Integer,Integer>> VALUE_ORDER = new Comparator<MRRecord<Integer,Integer>>() {
+		public int compare(MRRecord<Integer,Integer> first, MRRecord<Integer,Integer> second) {
+			int firstValue = ((IntIntRecord) first).value;
+			int secondValue = ((IntIntRecord) second).value;
+
+			return (firstValue < secondValue ? -1 : (firstValue == secondValue ? 0 : 1));
+		}
+	};
+}
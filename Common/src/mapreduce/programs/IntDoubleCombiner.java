@@ -0,0 +1,68 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package mapreduce.programs;
+
+import mapreduce.communication.IntDoubleRecord;
+import mapreduce.communication.MRRecord;
+
+/**
+ * PrimitiveCombiner for int keys and double values, flushed as IntDoubleRecords.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class IntDoubleCombiner extends PrimitiveCombiner<Integer, Double> {
+	private static final long serialVersionUID = 1L;
+
+	public void addTuple(int key, double newValue) {
+		addBits(key, Double.doubleToRawLongBits(newValue));
+	}
+
+	public int keyAt(int slot) {
+		return (int) keyBitsAt(slot);
+	}
+
+	public double valueAt(int slot) {
+		return Double.longBitsToDouble(valueBitsAt(slot));
+	}
+
+	public MRRecord<Integer, Double> createRecord(int slot) {
+		return new IntDoubleRecord(keyAt(slot), valueAt(slot));
+	}
+
+	public int keyHashCodeAt(int slot) {
+		return keyAt(slot);
+	}
+
+	protected long toKeyBits(Integer key) {
+		return key.intValue();
+	}
+
+	protected Integer fromKeyBits(long keyBits) {
+		return (int) keyBits;
+	}
+
+	protected long toValueBits(Double value) {
+		return Double.doubleToRawLongBits(value);
+	}
+
+	protected Double fromValueBits(long valueBits) {
+		return Double.longBitsToDouble(valueBits);
+	}
+
+	protected long combineBits(long oldValueBits, long newValueBits) {
+		return Double.doubleToRawLongBits(combine(Double.longBitsToDouble(oldValueBits), Double.longBitsToDouble(newValueBits)));
+	}
+
+	public abstract double combine(double oldValue, double newValue);
+}
@@ -0,0 +1,68 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package mapreduce.programs;
+
+import mapreduce.communication.IntIntRecord;
+import mapreduce.communication.MRRecord;
+
+/**
+ * PrimitiveCombiner for int keys and int values, flushed as IntIntRecords.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class IntIntCombiner extends PrimitiveCombiner<Integer, Integer> {
+	private static final long serialVersionUID = 1L;
+
+	public void addTuple(int key, int newValue) {
+		addBits(key, newValue);
+	}
+
+	public int keyAt(int slot) {
+		return (int) keyBitsAt(slot);
+	}
+
+	public int valueAt(int slot) {
+		return (int) valueBitsAt(slot);
+	}
+
+	public MRRecord<Integer, Integer> createRecord(int slot) {
+		return new IntIntRecord(keyAt(slot), valueAt(slot));
+	}
+
+	public int keyHashCodeAt(int slot) {
+		return keyAt(slot);
+	}
+
+	protected long toKeyBits(Integer key) {
+		return key.intValue();
+	}
+
+	protected Integer fromKeyBits(long keyBits) {
+		return (int) keyBits;
+	}
+
+	protected long toValueBits(Integer value) {
+		return value.intValue();
+	}
+
+	protected Integer fromValueBits(long valueBits) {
+		return (int) valueBits;
+	}
+
+	protected long combineBits(long oldValueBits, long newValueBits) {
+		return combine((int) oldValueBits, (int) newValueBits);
+	}
+
+	public abstract int combine(int oldValue, int newValue);
+}
@@ -0,0 +1,70 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package mapreduce.programs;
+
+import mapreduce.communication.LongLongRecord;
+import mapreduce.communication.MRRecord;
+
+/**
+ * PrimitiveCombiner for long keys and long values, flushed as LongLongRecords.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class LongLongCombiner extends PrimitiveCombiner<Long, Long> {
+	private static final long serialVersionUID = 1L;
+
+	public void addTuple(long key, long newValue) {
+		addBits(key, newValue);
+	}
+
+	public long keyAt(int slot) {
+		return keyBitsAt(slot);
+	}
+
+	public long valueAt(int slot) {
+		return valueBitsAt(slot);
+	}
+
+	public MRRecord<Long, Long> createRecord(int slot) {
+		return new LongLongRecord(keyAt(slot), valueAt(slot));
+	}
+
+	public int keyHashCodeAt(int slot) {
+		long key = keyAt(slot);
+
+		return (int) (key ^ (key >>> 32));
+	}
+
+	protected long toKeyBits(Long key) {
+		return key.longValue();
+	}
+
+	protected Long fromKeyBits(long keyBits) {
+		return keyBits;
+	}
+
+	protected long toValueBits(Long value) {
+		return value.longValue();
+	}
+
+	protected Long fromValueBits(long valueBits) {
+		return valueBits;
+	}
+
+	protected long combineBits(long oldValueBits, long newValueBits) {
+		return combine(oldValueBits, newValueBits);
+	}
+
+	public abstract long combine(long oldValue, long newValue);
+}
@@ -0,0 +1,44 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package mapreduce.programs;
+
+import mapreduce.communication.LongLongRecord;
+import mapreduce.communication.MRRecord;
+
+/**
+ * Reducer for long keys and long values. LongLongRecords, as flushed by
+ * LongLongCombiners, are reduced without boxing.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class LongLongReducer extends Reducer<Long,Long> {
+	private static final long serialVersionUID = 1L;
+
+	protected void reduceRecord(MRRecord<Long,Long> record) {
+		if (record instanceof LongLongRecord) {
+			LongLongRecord primitiveRecord = (LongLongRecord) record;
+
+			reduce(primitiveRecord.getLongKey(), primitiveRecord.getLongValue());
+		}
+		else {
+			reduce(record.getKey(), record.getValue());
+		}
+	}
+
+	protected final void reduce(Long key, Long value) {
+		reduce(key.longValue(), value.longValue());
+	}
+
+	protected abstract void reduce(long key, long value);
+}
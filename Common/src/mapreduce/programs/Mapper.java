@@ -16,6 +16,8 @@ import java.util.Set;
 
 import mapreduce.communication.MRRecord;
 import appspecs.Node;
+import communication.partitioners.HashPartitioner;
+import communication.partitioners.Partitioner;
 
 public abstract class Mapper<K,V> extends Node {
 	private static final long serialVersionUID = 1L;
@@ -29,9 +31,24 @@ public abstract class Mapper<K,V> extends Node {
 	}
 
 	public Mapper(int numberReducers, Combiner<K,V> combiner) {
-		this.numberReducers = numberReducers;
+		this(numberReducers, combiner, null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param numberReducers Number of reducers.
+	 * @param combiner Combiner for the map output, or null to write every mapped record.
+	 * @param partitioner Partitioner that assigns keys to reducers, or null to partition by hash code.
+	 */
+	public Mapper(int numberReducers, Combiner<K,V> combiner, Partitioner<K> partitioner) {
+		setNumberReducers(numberReducers);
 
 		this.combiner = combiner;
+
+		if (partitioner != null) {
+			setPartitioner(partitioner);
+		}
 	}
 
 	public int getNumberReducers() {
@@ -40,6 +57,14 @@ public abstract class Mapper<K,V> extends Node {
 
 	public void setNumberReducers(int numberReducers) {
 		this.numberReducers = numberReducers;
+
+		String[] reducerNames = new String[numberReducers];
+
+		for (int i = 0; i < numberReducers; i++) {
+			reducerNames[i] = "reducer-" + i;
+		}
+
+		setPartitionChannelNames(reducerNames);
 	}
 
 	public Combiner<K,V> getCombiner() {
@@ -68,9 +93,7 @@ public abstract class Mapper<K,V> extends Node {
 			if (combiner == null) {
 				record.setValue(value);
 
-				String destination = getDestination(key);
-
-				writeChannel(record, destination);
+				writePartitionedChannel(key, record);
 			}
 			else {
 				combiner.addTuple(key, value);
@@ -82,23 +105,41 @@ public abstract class Mapper<K,V> extends Node {
 		shutdown();
 	}
 
-	protected String getDestination(K key) {
-		return "reducer-" + Math.abs(key.hashCode() % numberReducers);
-	}
-
 	protected abstract V map(K key);
 
 	protected void flushMap() {
-		if (combiner != null) {
+		if (combiner instanceof PrimitiveCombiner) {
+			flushPrimitiveMap((PrimitiveCombiner<K,V>) combiner);
+		}
+		else if (combiner != null) {
 			Set<Map.Entry<K,V>> tuples = combiner.getTuples();
 
 			for (Map.Entry<K,V> tuple: tuples) {
 				K key = tuple.getKey();
 				V value = tuple.getValue();
 
-				String destination = getDestination(key);
+				writePartitionedChannel(key, new MRRecord<K,V>(key, value));
+			}
+		}
+	}
+
+	/**
+	 * Writes the tuples of a primitive combiner as primitive records. Under hash partitioning,
+	 * the partition is computed from the primitive key, so no key or value is boxed.
+	 * 
+	 * @param primitiveCombiner Combiner holding the tuples.
+	 */
+	private void flushPrimitiveMap(PrimitiveCombiner<K,V> primitiveCombiner) {
+		boolean hashPartitioned = (partitioner instanceof HashPartitioner);
+
+		for (int slot = primitiveCombiner.nextSlot(0); slot >= 0; slot = primitiveCombiner.nextSlot(slot + 1)) {
+			MRRecord<K,V> record = primitiveCombiner.createRecord(slot);
 
-				writeChannel(new MRRecord<K,V>(key, value), destination);
+			if (hashPartitioned) {
+				writePartition(record, HashPartitioner.partitionHashCode(primitiveCombiner.keyHashCodeAt(slot), partitionChannelNames.length));
+			}
+			else {
+				writePartitionedChannel(record.getKey(), record);
 			}
 		}
 	}
@@ -0,0 +1,149 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package mapreduce.programs;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import mapreduce.communication.MRRecord;
+
+import utilities.LongLongHashMap;
+
+/**
+ * Combiner that keeps its tuples unboxed, as the long bits of their keys and values. Mappers detect it
+ * and flush its tuples as primitive records; the generic methods inherited from Combiner still work,
+ * but box on every call.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class PrimitiveCombiner<K, V> extends Combiner<K, V> {
+	private static final long serialVersionUID = 1L;
+
+	private LongLongHashMap currentBits;
+
+	public PrimitiveCombiner() {
+		currentBits = new LongLongHashMap();
+	}
+
+	/**
+	 * Adds a tuple, given as the bits of its key and value, combining it with the tuple already present for the key.
+	 * 
+	 * @param keyBits Bits of the key.
+	 * @param valueBits Bits of the value.
+	 */
+	protected void addBits(long keyBits, long valueBits) {
+		int slot = currentBits.find(keyBits);
+
+		if (slot >= 0) {
+			currentBits.setValueAt(slot, combineBits(currentBits.valueAt(slot), valueBits));
+		} else {
+			currentBits.put(keyBits, valueBits);
+		}
+	}
+
+	public void addTuple(K key, V newValue) {
+		addBits(toKeyBits(key), toValueBits(newValue));
+	}
+
+	public V getValue(K key) {
+		int slot = currentBits.find(toKeyBits(key));
+
+		if (slot < 0) {
+			return null;
+		}
+
+		return fromValueBits(currentBits.valueAt(slot));
+	}
+
+	public Set<K> getKeys() {
+		Set<K> keys = new HashSet<K>();
+
+		for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+			keys.add(fromKeyBits(currentBits.keyAt(slot)));
+		}
+
+		return keys;
+	}
+
+	public Set<Map.Entry<K, V>> getTuples() {
+		Map<K, V> tuples = new HashMap<K, V>();
+
+		for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+			tuples.put(fromKeyBits(currentBits.keyAt(slot)), fromValueBits(currentBits.valueAt(slot)));
+		}
+
+		return tuples.entrySet();
+	}
+
+	public V combine(V oldValue, V newValue) {
+		return fromValueBits(combineBits(toValueBits(oldValue), toValueBits(newValue)));
+	}
+
+	public int size() {
+		return currentBits.size();
+	}
+
+	/**
+	 * Iteration support: returns the first occupied slot at or after the informed one.
+	 * 
+	 * @param slot Starting slot; use 0 to begin the iteration.
+	 * 
+	 * @return The next occupied slot, or -1 if there are no more tuples.
+	 */
+	public int nextSlot(int slot) {
+		return currentBits.nextSlot(slot);
+	}
+
+	public void clear() {
+		currentBits.clear();
+	}
+
+	protected long keyBitsAt(int slot) {
+		return currentBits.keyAt(slot);
+	}
+
+	protected long valueBitsAt(int slot) {
+		return currentBits.valueAt(slot);
+	}
+
+	/**
+	 * Creates the primitive record holding the tuple in a slot.
+	 * 
+	 * @param slot Occupied slot.
+	 * 
+	 * @return A primitive record with the key and value of the slot.
+	 */
+	public abstract MRRecord<K, V> createRecord(int slot);
+
+	/**
+	 * Obtains the hash code of the key in a slot, equal to the hash code of the boxed key.
+	 * 
+	 * @param slot Occupied slot.
+	 * 
+	 * @return The hash code of the key.
+	 */
+	public abstract int keyHashCodeAt(int slot);
+
+	protected abstract long toKeyBits(K key);
+
+	protected abstract K fromKeyBits(long keyBits);
+
+	protected abstract long toValueBits(V value);
+
+	protected abstract V fromValueBits(long valueBits);
+
+	protected abstract long combineBits(long oldValueBits, long newValueBits);
+}
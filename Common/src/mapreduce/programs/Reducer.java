@@ -28,7 +28,7 @@ public abstract class Reducer<K,V> extends Node {
 				break;
 			}
 
-			reduce(record.getKey(), record.getValue());
+			reduceRecord(record);
 		}
 
 		flushReduce();
@@ -36,6 +36,15 @@ public abstract class Reducer<K,V> extends Node {
 		shutdown();
 	}
 
+	/**
+	 * Reduces a record. Primitive reducers override it to consume primitive records without boxing.
+	 * 
+	 * @param record Record to reduce.
+	 */
+	protected void reduceRecord(MRRecord<K,V> record) {
+		reduce(record.getKey(), record.getValue());
+	}
+
 	protected abstract void reduce(K key, V value);
 	protected abstract void flushReduce();
 }
@@ -0,0 +1,348 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package nodes;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import communication.channel.InputChannel;
+import communication.channel.Record;
+import communication.channel.RecordBatch;
+import communication.interfaces.ReadinessListener;
+import communication.interfaces.RecordReader;
+import communication.readers.SHMRecordMultiplexer;
+
+/**
+ * Node driven by events instead of a read loop: onRecord() is called for each record
+ * received, onInputClosed() once an input delivered all of its records, and onIdle()
+ * whenever no records are ready. The node never waits for input, so it can be run in
+ * time slices and share threads with other nodes over TIMEBOX edges. When it has a
+ * thread of its own, the thread sleeps while the node is idle.
+ * 
+ * Records can be written without blocking with emit(), which refuses the record when the
+ * destination is not keeping up. The node should then keep the record and emit it again
+ * from onIdle(); while emits are refused, the node is run again even if no records arrive.
+ * In particular, once all inputs are closed, onIdle() keeps being called until it makes no
+ * refused emit, and only then the node finishes. A node fused to its producer (NODEBOX) is
+ * never idle: there, onIdle() is called right after each record whose emit was refused,
+ * until the emits go through, holding the producer back.
+ * 
+ * The node finishes once all its inputs are closed and its emits went through, or once it
+ * calls stop(); records still kept by the node can then be written in onFinish(). A StatefulNode
+ * becomes a PushNode by renaming performAction() to onRecord(), and by replacing the
+ * termination decisions of performActionNothingPresent() with onInputClosed() or onIdle().
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class PushNode extends StatefulNode {
+	private static final long serialVersionUID = 1L;
+
+	// Records processed between checks for closed inputs, when the node has its own thread
+
+	private static final int QUANTUM = RecordBatch.DEFAULT_CAPACITY;
+
+	// Upper bound for a single park; a safety net only, wake-ups are explicit
+
+	private static final long PARK_LIMIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+	// Interval between retries while emits are refused
+
+	private static final long BACKOFF = TimeUnit.MILLISECONDS.toNanos(1);
+
+	// Inputs whose closing was not reported yet
+
+	private transient Set<String> openInputs;
+
+	// Inputs found closed at the start of the current slice
+
+	private transient Set<String> closedInputs;
+
+	// Whether an emit was refused in the current slice
+
+	private transient boolean backpressured;
+
+	// Whether the node is running a slice, instead of being driven by its producer
+
+	private transient boolean slicing;
+
+	/**
+	 * Called before the first record; does nothing by default.
+	 * 
+	 * @return False if the node should shut down without processing records.
+	 */
+	protected boolean onStart() {
+		return true;
+	}
+
+	/**
+	 * Called for each record received.
+	 * 
+	 * @param record Record received.
+	 */
+	protected abstract void onRecord(Record record);
+
+	/**
+	 * Called once an input is closed, after all of its records; does nothing by default.
+	 * 
+	 * @param channelName Name of the input channel.
+	 */
+	protected void onInputClosed(String channelName) {
+	}
+
+	/**
+	 * Called whenever no records are ready, including after all inputs are closed while
+	 * emits are refused; does nothing by default. Records whose emit was refused should
+	 * be emitted again here.
+	 */
+	protected void onIdle() {
+	}
+
+	/**
+	 * Called after the last event, before the outputs are closed; does nothing by default.
+	 */
+	protected void onFinish() {
+	}
+
+	/**
+	 * Finishes the node after the current event.
+	 */
+	protected void stop() {
+		terminate = true;
+	}
+
+	/**
+	 * Writes a record to an output channel, unless that would block. Errors, such as an
+	 * unknown channel or a broken connection, are not retried: the node is stopped after
+	 * the current event and reported as failed.
+	 * 
+	 * @param record Record to write.
+	 * @param channelName Name of the output channel.
+	 * 
+	 * @return True if the record was written, false if it should be emitted again later
+	 *         (or if the emit failed, in which case the node is stopping).
+	 */
+	protected boolean emit(Record record, String channelName) {
+		try {
+			if (tryWriteChannel(record, channelName)) {
+				return true;
+			}
+		} catch (IOException exception) {
+			System.err.println("Error emitting record to " + channelName + " from node " + this);
+
+			exception.printStackTrace();
+
+			setFailed();
+
+			terminate = true;
+
+			return false;
+		}
+
+		backpressured = true;
+
+		return false;
+	}
+
+	public void run() {
+		Waker waker = new Waker(Thread.currentThread());
+
+		setInputListener(waker);
+
+		while (true) {
+			// Cleared before the slice, so that records arriving during the slice are not missed
+
+			waker.ready = false;
+
+			int result = runSlice(QUANTUM);
+
+			if (result == SLICE_FINISHED) {
+				break;
+			}
+
+			if (backpressured) {
+				LockSupport.parkNanos(this, BACKOFF);
+			}
+			else if (result == SLICE_IDLE && !waker.ready) {
+				LockSupport.parkNanos(this, PARK_LIMIT);
+			}
+		}
+	}
+
+	public int runSlice(int quantum) {
+		// Inputs found closed now have all their records ready, so they are reported once the node is idle
+
+		closedInputs = obtainClosedInputs();
+
+		backpressured = false;
+
+		slicing = true;
+
+		int result;
+
+		try {
+			result = super.runSlice(quantum);
+		} finally {
+			slicing = false;
+		}
+
+		if (result == SLICE_IDLE && backpressured) {
+			return SLICE_READY;
+		}
+
+		return result;
+	}
+
+	public boolean consume(Record record) {
+		backpressured = false;
+
+		if (!super.consume(record)) {
+			return false;
+		}
+
+		// Fused nodes are never idle, so refused emits are retried right away
+
+		while (backpressured && !terminate) {
+			LockSupport.parkNanos(this, BACKOFF);
+
+			backpressured = false;
+
+			onIdle();
+		}
+
+		return true;
+	}
+
+	protected final boolean performInitialization() {
+		return onStart();
+	}
+
+	protected final void performAction(Record record) {
+		onRecord(record);
+	}
+
+	protected final void performActionIdle() {
+		reportClosedInputs(closedInputs);
+
+		if (!terminate) {
+			onIdle();
+		}
+	}
+
+	protected final void performActionNothingPresent() {
+		// Every input is exhausted
+
+		reportClosedInputs(new HashSet<String>(getOpenInputs()));
+
+		if (terminate) {
+			return;
+		}
+
+		// Refused emits are retried before finishing; in slices, the node is simply run again
+
+		backpressured = false;
+
+		onIdle();
+
+		if (backpressured && !terminate) {
+			if (!slicing) {
+				LockSupport.parkNanos(this, BACKOFF);
+			}
+
+			return;
+		}
+
+		terminate = true;
+	}
+
+	protected final boolean performTermination() {
+		onFinish();
+
+		return true;
+	}
+
+	private Set<String> getOpenInputs() {
+		if (openInputs == null) {
+			openInputs = new HashSet<String>(getInputChannelNames());
+		}
+
+		return openInputs;
+	}
+
+	/**
+	 * Obtains the open inputs that were closed by their producers. Inputs that share a
+	 * multiplexer are closed with their origin; the others, once their reader is exhausted.
+	 */
+	private Set<String> obtainClosedInputs() {
+		Set<String> result = null;
+
+		for (String channelName: getOpenInputs()) {
+			InputChannel inputChannel = getInputChannel(channelName);
+
+			RecordReader reader = inputChannel.getRecordReader();
+
+			boolean closed = false;
+
+			if (reader instanceof SHMRecordMultiplexer) {
+				closed = !((SHMRecordMultiplexer) reader).isOpen(channelName);
+			}
+			else if (reader != null && readersShuffler != null) {
+				closed = readersShuffler.isExhausted(reader);
+			}
+
+			if (closed) {
+				if (result == null) {
+					result = new HashSet<String>();
+				}
+
+				result.add(channelName);
+			}
+		}
+
+		if (result == null) {
+			return Collections.emptySet();
+		}
+
+		return result;
+	}
+
+	private void reportClosedInputs(Set<String> channelNames) {
+		for (String channelName: channelNames) {
+			if (getOpenInputs().remove(channelName)) {
+				onInputClosed(channelName);
+			}
+		}
+	}
+
+	/**
+	 * Wakes up the thread of the node when one of the inputs becomes ready.
+	 */
+	private static class Waker implements ReadinessListener {
+		private Thread thread;
+
+		private volatile boolean ready;
+
+		public Waker(Thread thread) {
+			this.thread = thread;
+		}
+
+		public void readerReady(RecordReader reader) {
+			ready = true;
+
+			LockSupport.unpark(thread);
+		}
+	}
+}
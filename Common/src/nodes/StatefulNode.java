@@ -11,15 +11,38 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package nodes;
 
+import java.io.EOFException;
+import java.io.IOException;
+
 import appspecs.Node;
 
 import communication.channel.Record;
+import communication.interfaces.ReadinessListener;
+import communication.interfaces.RecordConsumer;
 
-public abstract class StatefulNode extends Node {
+public abstract class StatefulNode extends Node implements RecordConsumer {
 	private static final long serialVersionUID = 1L;
 
+	// Outcomes of runSlice()
+
+	public static final int SLICE_READY = 0;
+	public static final int SLICE_IDLE = 1;
+	public static final int SLICE_FINISHED = 2;
+
+	private static final int DRIVEN_IDLE = 0;
+	private static final int DRIVEN_RUNNING = 1;
+	private static final int DRIVEN_FINISHED = 2;
+
 	protected volatile boolean terminate;
 
+	// Progress of the node when driven by its producer or by a scheduler, instead of run()
+
+	private transient int drivenState;
+
+	// Set by runSlice() once every input is exhausted
+
+	private transient boolean inputsExhausted;
+
 	public StatefulNode() {
 		terminate = false;
 	}
@@ -58,12 +81,195 @@ public abstract class StatefulNode extends Node {
 		shutdown();		
 	}
 
+	/**
+	 * Stateful nodes that keep the run() and read() of this class can be fused: the
+	 * producer then calls performAction() for each record it writes. They can also be
+	 * run in time slices with runSlice().
+	 */
+	public boolean isFusable() {
+		return true;
+	}
+
+	public boolean consume(Record record) {
+		if (!startDriven()) {
+			return false;
+		}
+
+		performAction(record);
+
+		if (terminate) {
+			finishDriven();
+		}
+
+		return true;
+	}
+
+	public void finish() {
+		if (!startDriven()) {
+			return;
+		}
+
+		// Same as run() once every input is exhausted
+
+		while (!terminate) {
+			performActionNothingPresent();
+		}
+
+		finishDriven();
+	}
+
+	/**
+	 * Makes the inputs notify a listener whenever they have records ready, so that a
+	 * scheduler knows when the node should be given a new slice.
+	 * 
+	 * @param listener Listener notified by the inputs.
+	 */
+	public void setInputListener(ReadinessListener listener) {
+		if (readersShuffler == null) {
+			createReaderShuffler();
+		}
+
+		readersShuffler.setReadinessListener(listener);
+	}
+
+	/**
+	 * Processes the records ready in the inputs, up to a quantum, without ever waiting
+	 * for more. Equivalent to run() when called until SLICE_FINISHED is returned.
+	 * 
+	 * @param quantum Maximum number of records processed.
+	 * 
+	 * @return SLICE_READY if the quantum was used (or the node did not terminate after its inputs
+	 *         were exhausted), SLICE_IDLE if no records are ready, or SLICE_FINISHED if the node terminated.
+	 */
+	public int runSlice(int quantum) {
+		if (!startDriven()) {
+			return SLICE_FINISHED;
+		}
+
+		if (readersShuffler == null) {
+			createReaderShuffler();
+		}
+
+		if (inputsExhausted) {
+			return finishSlice();
+		}
+
+		for (int i = 0; i < quantum; i++) {
+			Record record;
+
+			try {
+				record = readersShuffler.pollArbitrary();
+			} catch (EOFException exception) {
+				inputsExhausted = true;
+
+				return finishSlice();
+			} catch (IOException exception) {
+				System.err.println("Error reading record from node " + this);
+
+				exception.printStackTrace();
+
+				setFailed();
+
+				inputsExhausted = true;
+
+				return finishSlice();
+			}
+
+			if (record == null) {
+				performActionIdle();
+
+				if (terminate) {
+					finishDriven();
+
+					return SLICE_FINISHED;
+				}
+
+				return SLICE_IDLE;
+			}
+
+			performAction(record);
+
+			if (terminate) {
+				finishDriven();
+
+				return SLICE_FINISHED;
+			}
+		}
+
+		return SLICE_READY;
+	}
+
+	/**
+	 * Calls performActionNothingPresent() once the inputs are exhausted, as run() does. Instead of
+	 * looping until the node terminates, each call is a slice of its own, so that a node waiting
+	 * for its outputs to drain does not hold the thread.
+	 */
+	private int finishSlice() {
+		performActionNothingPresent();
+
+		if (terminate) {
+			finishDriven();
+
+			return SLICE_FINISHED;
+		}
+
+		return SLICE_READY;
+	}
+
+	private boolean startDriven() {
+		if (drivenState == DRIVEN_IDLE) {
+			if (performInitialization()) {
+				drivenState = DRIVEN_RUNNING;
+			}
+			else {
+				// Failed initialization: just shut down
+
+				finishDriven();
+			}
+		}
+
+		return drivenState == DRIVEN_RUNNING;
+	}
+
+	private void finishDriven() {
+		drivenState = DRIVEN_FINISHED;
+
+		performTermination();
+
+		shutdown();
+	}
+
+	/**
+	 * Called by a scheduler when a slice throws an unexpected exception: marks the node as
+	 * failed and, unless it already finished, closes its outputs without further processing,
+	 * so that its consumers do not wait for it forever.
+	 */
+	public void failDriven() {
+		setFailed();
+
+		terminate = true;
+
+		if (drivenState == DRIVEN_FINISHED) {
+			return;
+		}
+
+		drivenState = DRIVEN_FINISHED;
+
+		shutdown();
+	}
+
 	protected abstract boolean performInitialization();
 
 	protected abstract void performAction(Record record);
 
 	protected abstract void performActionNothingPresent();
 
+	/**
+	 * Called by runSlice() when no records are ready; does nothing by default.
+	 */
+	protected void performActionIdle() {
+	}
+
 	protected abstract boolean performTermination();
 
 	protected Record read() {
@@ -63,5 +63,12 @@ public abstract class TimedStatefulNode extends StatefulNode {
 		shutdown();		
 	}
 
+	/**
+	 * Timed nodes act on their own clock, so they cannot be driven by their producer.
+	 */
+	public boolean isFusable() {
+		return false;
+	}
+
 	protected abstract void performActionNothingPresent();
 }
@@ -0,0 +1,122 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package utilities;
+
+import java.io.Serializable;
+
+/**
+ * Hash map from int to double that keeps its entries unboxed, backed by a LongLongHashMap
+ * holding the raw bits of the values.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class IntDoubleHashMap implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private LongLongHashMap entries;
+
+	public IntDoubleHashMap() {
+		entries = new LongLongHashMap();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public boolean containsKey(int key) {
+		return entries.containsKey(key);
+	}
+
+	public double get(int key, double defaultValue) {
+		int slot = entries.find(key);
+
+		return (slot >= 0 ? valueAt(slot) : defaultValue);
+	}
+
+	public void put(int key, double value) {
+		entries.put(key, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Adds an amount to the value of a key, treating absent keys as zero.
+	 * 
+	 * @param key Key to update.
+	 * @param amount Amount to add.
+	 */
+	public void add(int key, double amount) {
+		int slot = entries.find(key);
+
+		if (slot >= 0) {
+			setValueAt(slot, valueAt(slot) + amount);
+		} else {
+			put(key, amount);
+		}
+	}
+
+	/**
+	 * Copies every entry of another map into this one.
+	 * 
+	 * @param other Map whose entries are copied.
+	 */
+	public void putAll(IntDoubleHashMap other) {
+		for (int slot = other.nextSlot(0); slot >= 0; slot = other.nextSlot(slot + 1)) {
+			put(other.keyAt(slot), other.valueAt(slot));
+		}
+	}
+
+	public int keyAt(int slot) {
+		return (int) entries.keyAt(slot);
+	}
+
+	public double valueAt(int slot) {
+		return Double.longBitsToDouble(entries.valueAt(slot));
+	}
+
+	public void setValueAt(int slot, double value) {
+		entries.setValueAt(slot, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Iteration support: returns the first occupied slot at or after the informed one.
+	 * 
+	 * @param slot Starting slot; use 0 to begin the iteration.
+	 * 
+	 * @return The next occupied slot, or -1 if there are no more entries.
+	 */
+	public int nextSlot(int slot) {
+		return entries.nextSlot(slot);
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+
+		for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+
+			builder.append(keyAt(slot)).append('=').append(valueAt(slot));
+		}
+
+		return builder.append('}').toString();
+	}
+}
@@ -0,0 +1,171 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities;
+
+import java.io.Serializable;
+
+/**
+ * Open-addressing hash map from long to long, used to hold primitive tuples without boxing.
+ * Narrower primitives are stored widened; doubles are stored as their raw long bits.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LongLongHashMap implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private long[] values;
+	private boolean[] used;
+
+	private int size;
+
+	public LongLongHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongLongHashMap(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+
+		allocate(capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Locates the slot holding the key.
+	 * 
+	 * @param key Key to locate.
+	 * 
+	 * @return The slot holding the key, or -1 if the key is not present.
+	 */
+	public int find(long key) {
+		int mask = keys.length - 1;
+
+		for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	public long get(long key, long defaultValue) {
+		int slot = find(key);
+
+		return (slot >= 0 ? values[slot] : defaultValue);
+	}
+
+	public void put(long key, long value) {
+		int mask = keys.length - 1;
+
+		int slot = hash(key) & mask;
+
+		while (used[slot]) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+
+				return;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+
+		if (++size > keys.length * LOAD_FACTOR) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public long valueAt(int slot) {
+		return values[slot];
+	}
+
+	public void setValueAt(int slot, long value) {
+		values[slot] = value;
+	}
+
+	/**
+	 * Iteration support: returns the first occupied slot at or after the informed one.
+	 * 
+	 * @param slot Starting slot; use 0 to begin the iteration.
+	 * 
+	 * @return The next occupied slot, or -1 if there are no more entries.
+	 */
+	public int nextSlot(int slot) {
+		for (; slot < used.length; slot++) {
+			if (used[slot]) {
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	public void clear() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		used = new boolean[capacity];
+
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldUsed.length; i++) {
+			if (oldUsed[i]) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long mixed = key * 0x9E3779B97F4A7C15L;
+
+		return (int) (mixed ^ (mixed >>> 32));
+	}
+}
@@ -0,0 +1,201 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Each slot carries a
+ * sequence number that tells whether it is free for the producer of a given round or
+ * filled for the consumer of that round, so producers only contend on claiming a position
+ * and the consumer never writes shared counters other than the slot sequences.
+ * 
+ * Only one thread may call poll() and drain() at any given time.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class MPSCRingBuffer<E> {
+	private AtomicReferenceArray<E> elements;
+
+	private AtomicLongArray sequences;
+
+	private int mask;
+
+	// Next position to be claimed by a producer
+
+	private AtomicLong tail;
+
+	// Next position to be consumed, only touched by the consumer
+
+	private long head;
+
+	// Copy of the head for other threads, published lazily
+
+	private AtomicLong consumed;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param capacity Minimum number of elements held; rounded up to a power of two.
+	 */
+	public MPSCRingBuffer(int capacity) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid ring buffer capacity " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.elements = new AtomicReferenceArray<E>(size);
+
+		this.sequences = new AtomicLongArray(size);
+
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+
+		this.mask = size - 1;
+
+		this.tail = new AtomicLong(0L);
+
+		this.head = 0L;
+
+		this.consumed = new AtomicLong(0L);
+	}
+
+	/**
+	 * Returns the number of slots.
+	 * 
+	 * @return The number of slots.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Inserts an element if there is space. Safe to call from any number of threads.
+	 * 
+	 * The slot is published with a volatile write, so a producer that inspects a consumer
+	 * flag right after a successful offer cannot miss a consumer that checked the buffer
+	 * right after raising that flag.
+	 * 
+	 * @param element Element to insert.
+	 * 
+	 * @return True if the element was inserted, false if the buffer is full.
+	 */
+	public boolean offer(E element) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+
+		while (true) {
+			long position = tail.get();
+
+			int index = (int) position & mask;
+
+			long difference = sequences.get(index) - position;
+
+			if (difference == 0L) {
+				if (tail.compareAndSet(position, position + 1)) {
+					elements.lazySet(index, element);
+
+					sequences.set(index, position + 1);
+
+					return true;
+				}
+			}
+			else if (difference < 0L) {
+				// The slot still holds the element from the previous round
+
+				return false;
+			}
+
+			// Another producer claimed this position; retry with the new tail
+		}
+	}
+
+	/**
+	 * Removes the next element, if any. Only the consumer thread may call this.
+	 * 
+	 * @return The next element, or null if the buffer is empty.
+	 */
+	public E poll() {
+		int index = (int) head & mask;
+
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+
+		E element = elements.get(index);
+
+		elements.lazySet(index, null);
+
+		sequences.lazySet(index, head + mask + 1);
+
+		head++;
+
+		consumed.lazySet(head);
+
+		return element;
+	}
+
+	/**
+	 * Removes up to the informed number of elements into an array. Only the consumer
+	 * thread may call this.
+	 * 
+	 * @param destination Array that receives the elements, starting at position 0.
+	 * @param maximum Maximum number of elements to remove.
+	 * 
+	 * @return The number of elements removed.
+	 */
+	public int drain(E[] destination, int maximum) {
+		int count = 0;
+
+		while (count < maximum) {
+			E element = poll();
+
+			if (element == null) {
+				break;
+			}
+
+			destination[count++] = element;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Estimates the number of elements held. Safe to call from any thread.
+	 * 
+	 * @return The approximate number of elements held.
+	 */
+	public int size() {
+		long size = tail.get() - consumed.get();
+
+		return (int) Math.max(0L, Math.min(size, capacity()));
+	}
+
+	/**
+	 * Tells whether the buffer looks empty to the consumer.
+	 * 
+	 * @return True if no element is ready at the head.
+	 */
+	public boolean isEmpty() {
+		return sequences.get((int) head & mask) != head + 1;
+	}
+}
@@ -0,0 +1,421 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Byte ring shared by one writer and one reader, possibly in different processes of the same
+ * machine, through a memory-mapped file. The file should live in a memory-backed directory
+ * (by default /dev/shm, or the directory in the hammr.mmap.directory system property).
+ * 
+ * Messages are stored as chunks, each one preceded by a header holding twice its length, plus
+ * one if the chunk ends the message; a header of -1 pads the end of the buffer. The writer and
+ * the reader publish their positions in the file header, each on its own cache line.
+ * 
+ * The reader may also declare it is about to sleep, by making the park sequence odd. A writer
+ * that observes a new odd sequence after publishing should wake the reader up by other means.
+ * 
+ * The Java memory model does not cover memory shared between processes: ordering relies on
+ * the full fences emitted for volatile accesses, placed between the data and the positions.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class MappedRing {
+	public static final int DEFAULT_CAPACITY = Integer.getInteger("hammr.mmap.capacity", 4 * 1024 * 1024);
+
+	private static final String DEFAULT_DIRECTORY = "/dev/shm";
+
+	private static final int MAGIC = 0x48524E47;
+
+	private static final int VERSION = 1;
+
+	private static final int MINIMUM_CAPACITY = 4096;
+
+	private static final int PADDING = -1;
+
+	// Header layout: magic, version and capacity, then the positions on separate cache lines
+
+	private static final int HEADER_SIZE = 256;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int CAPACITY_OFFSET = 8;
+
+	private static final int TAIL_OFFSET = 64;
+	private static final int HEAD_OFFSET = 128;
+	private static final int PARK_OFFSET = 192;
+
+	private File file;
+
+	private MappedByteBuffer buffer;
+
+	// View used for bulk transfers at arbitrary positions
+
+	private ByteBuffer view;
+
+	private int capacity;
+
+	private int maximumChunk;
+
+	// Writer: position of the next chunk; reader: position of the next chunk to be read
+
+	private long position;
+
+	// Writer: last reader position seen; reader: last writer position seen
+
+	private long limit;
+
+	// Writer: last park sequence that caused a wake-up
+
+	private long notified;
+
+	// Reader: chunks of the message being assembled
+
+	private ByteArrayOutputStream assembly;
+
+	private boolean parked;
+
+	private volatile int barrier;
+
+	private MappedRing(File file, int capacity, boolean create) throws IOException {
+		this.file = file;
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+		try {
+			if (create) {
+				randomAccessFile.setLength(HEADER_SIZE + capacity);
+			}
+			else {
+				if (randomAccessFile.readInt() != MAGIC || randomAccessFile.readInt() != VERSION) {
+					throw new IOException("File " + file + " is not a ring buffer");
+				}
+
+				capacity = randomAccessFile.readInt();
+			}
+
+			this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+		} finally {
+			// The mapping remains valid after the file is closed
+
+			randomAccessFile.close();
+		}
+
+		if (create) {
+			buffer.putInt(CAPACITY_OFFSET, capacity);
+			buffer.putInt(VERSION_OFFSET, VERSION);
+			buffer.putInt(MAGIC_OFFSET, MAGIC);
+
+			buffer.force();
+		}
+
+		this.view = buffer.duplicate();
+
+		this.capacity = capacity;
+
+		this.maximumChunk = capacity / 4 - 4;
+
+		this.position = 0L;
+
+		this.limit = 0L;
+
+		this.notified = 0L;
+
+		this.parked = false;
+	}
+
+	/**
+	 * Creates a ring for writing, in a new file of the shared-memory directory.
+	 * 
+	 * @param capacity Capacity in bytes, rounded up to a power of two.
+	 */
+	public static MappedRing create(int capacity) throws IOException {
+		int size = Integer.highestOneBit(Math.max(capacity, MINIMUM_CAPACITY));
+
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		File file = File.createTempFile("hammr-", ".ring", getDirectory());
+
+		try {
+			return new MappedRing(file, size, true);
+		} catch (IOException exception) {
+			file.delete();
+
+			throw exception;
+		}
+	}
+
+	/**
+	 * Opens a ring for reading. The file is removed once mapped.
+	 * 
+	 * @param path Location of the ring file, as informed by the writer.
+	 */
+	public static MappedRing open(String path) throws IOException {
+		File file = new File(path);
+
+		try {
+			return new MappedRing(file, 0, false);
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Obtains the directory where ring files are created.
+	 */
+	public static File getDirectory() {
+		return new File(System.getProperty("hammr.mmap.directory", DEFAULT_DIRECTORY));
+	}
+
+	/**
+	 * Tests whether rings can be created in this machine.
+	 */
+	public static boolean isAvailable() {
+		File directory = getDirectory();
+
+		return directory.isDirectory() && directory.canWrite();
+	}
+
+	public String getPath() {
+		return file.getPath();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Writes as much of a message as there is space for, without blocking. The caller should
+	 * call this again with the remainder of the message until it is completely written.
+	 * 
+	 * @param data Array holding the message.
+	 * @param offset Offset of the remainder of the message.
+	 * @param length Length of the remainder of the message.
+	 * 
+	 * @return The number of bytes written, 0 if the ring is full.
+	 */
+	public int write(byte[] data, int offset, int length) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("Messages must not be empty");
+		}
+
+		int written = 0;
+
+		while (written < length) {
+			int chunk = Math.min(length - written, maximumChunk);
+
+			int needed = 4 + align(chunk);
+
+			int index = (int) (position & (capacity - 1));
+
+			int padding = (capacity - index < needed) ? capacity - index : 0;
+
+			if (free() < padding + needed) {
+				limit = buffer.getLong(HEAD_OFFSET);
+
+				fence();
+
+				if (free() < padding + needed) {
+					break;
+				}
+			}
+
+			if (padding > 0) {
+				buffer.putInt(HEADER_SIZE + index, PADDING);
+
+				position += padding;
+
+				index = 0;
+			}
+
+			view.position(HEADER_SIZE + index + 4);
+
+			view.put(data, offset + written, chunk);
+
+			written += chunk;
+
+			buffer.putInt(HEADER_SIZE + index, (chunk << 1) | (written == length ? 1 : 0));
+
+			position += needed;
+		}
+
+		if (written > 0) {
+			fence();
+
+			buffer.putLong(TAIL_OFFSET, position);
+		}
+
+		return written;
+	}
+
+	/**
+	 * Obtains the bytes written but not yet consumed by the reader. Should be called by the writer.
+	 */
+	public long getBacklog() {
+		return position - buffer.getLong(HEAD_OFFSET);
+	}
+
+	/**
+	 * Tests whether the reader went to sleep without being woken up since. Should be called
+	 * by the writer after each write.
+	 * 
+	 * @return True if the writer should wake the reader up.
+	 */
+	public boolean needsWakeup() {
+		fence();
+
+		long sequence = buffer.getLong(PARK_OFFSET);
+
+		if ((sequence & 1L) == 1L && sequence != notified) {
+			notified = sequence;
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Reads the next complete message, without blocking.
+	 * 
+	 * @return The next message, or null if no complete message is available.
+	 */
+	public byte[] read() {
+		while (true) {
+			if (position == limit) {
+				limit = buffer.getLong(TAIL_OFFSET);
+
+				fence();
+
+				if (position == limit) {
+					return null;
+				}
+			}
+
+			int index = (int) (position & (capacity - 1));
+
+			int header = buffer.getInt(HEADER_SIZE + index);
+
+			if (header == PADDING) {
+				position += capacity - index;
+
+				continue;
+			}
+
+			int chunk = header >>> 1;
+
+			boolean last = (header & 1) == 1;
+
+			byte[] contents = new byte[chunk];
+
+			view.position(HEADER_SIZE + index + 4);
+
+			view.get(contents);
+
+			position += 4 + align(chunk);
+
+			fence();
+
+			buffer.putLong(HEAD_OFFSET, position);
+
+			if (last && assembly == null) {
+				return contents;
+			}
+
+			if (assembly == null) {
+				assembly = new ByteArrayOutputStream(2 * chunk);
+			}
+
+			assembly.write(contents, 0, chunk);
+
+			if (last) {
+				byte[] message = assembly.toByteArray();
+
+				assembly = null;
+
+				return message;
+			}
+		}
+	}
+
+	/**
+	 * Declares that the reader is about to sleep. The reader should check for messages
+	 * once more after calling this, as a writer may have missed the declaration.
+	 */
+	public void park() {
+		if (!parked) {
+			buffer.putLong(PARK_OFFSET, buffer.getLong(PARK_OFFSET) + 1L);
+
+			parked = true;
+		}
+
+		fence();
+	}
+
+	/**
+	 * Declares that the reader is awake.
+	 */
+	public void unpark() {
+		if (parked) {
+			buffer.putLong(PARK_OFFSET, buffer.getLong(PARK_OFFSET) + 1L);
+
+			parked = false;
+		}
+	}
+
+	/**
+	 * Removes the ring file, if still present. Readers remove it once mapped, so this only
+	 * matters for rings that were never opened, such as the ones of rejected channels.
+	 */
+	public void delete() {
+		file.delete();
+	}
+
+	/**
+	 * Releases the ring. The mapping itself is released when the ring is collected.
+	 */
+	public void close() {
+		buffer = null;
+
+		view = null;
+
+		assembly = null;
+	}
+
+	private long free() {
+		return capacity - (position - limit);
+	}
+
+	private static int align(int length) {
+		return (length + 3) & ~3;
+	}
+
+	/**
+	 * Full fence: a volatile write followed by a volatile read keeps the preceding accesses
+	 * before it and the following accesses after it.
+	 */
+	private int fence() {
+		barrier = 0;
+
+		return barrier;
+	}
+}
@@ -11,6 +11,7 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package utilities.filesystem;
 
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,6 +37,19 @@ public class FileHelper {
 		return getFilesystemDriver(filename).openR(filename);
 	}
 
+	/**
+	 * Opens the file for reading, using memory mapping when the filesystem allows it.
+	 * 
+	 * @return A stream that supports mark() and reset().
+	 */
+	public static InputStream openMappedR(Filename filename) throws IOException {
+		if (filename.getProtocol() == Protocol.POSIX_COMPATIBLE) {
+			return PosixDriver.getInstance().openMappedR(filename);
+		}
+
+		return new BufferedInputStream(openR(filename));
+	}
+
 	public static OutputStream openW(Filename filename) throws IOException {
 		return getFilesystemDriver(filename).openW(filename);
 	}
@@ -63,6 +77,13 @@ public class FileHelper {
 		return getFilesystemDriver(filename).remove(filename);
 	}
 
+	/**
+	 * Obtains the file whose existence signals that the writer of a streaming file finished it.
+	 */
+	public static Filename getCompletionMarker(Filename filename) {
+		return new Filename(filename.getLocation() + ".done", filename.getProtocol());
+	}
+
 	private static FilesystemDriver getFilesystemDriver(Filename filename) {
 		switch(filename.getProtocol()) {
 		case POSIX_COMPATIBLE:
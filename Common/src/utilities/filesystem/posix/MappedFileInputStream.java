@@ -0,0 +1,156 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.filesystem.posix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream that reads a file through memory-mapped windows, avoiding a system call
+ * and a buffer copy per read. Repeated reads of the same file are served from the page cache.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class MappedFileInputStream extends InputStream {
+	public static final long DEFAULT_WINDOW_SIZE = 256L * 1024L * 1024L;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	private long length;
+	private long windowSize;
+
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	private long mark;
+
+	public MappedFileInputStream(File file) throws IOException {
+		this(file, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param file File to be read.
+	 * @param windowSize Maximum number of bytes mapped at once.
+	 */
+	public MappedFileInputStream(File file, long windowSize) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+
+		this.length = channel.size();
+		this.windowSize = windowSize;
+
+		this.mark = 0L;
+
+		map(0L);
+	}
+
+	public int read() throws IOException {
+		if (!window.hasRemaining() && !advance()) {
+			return -1;
+		}
+
+		return window.get() & 0xFF;
+	}
+
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		if (!window.hasRemaining() && !advance()) {
+			return -1;
+		}
+
+		int immediate = Math.min(length, window.remaining());
+
+		window.get(buffer, offset, immediate);
+
+		return immediate;
+	}
+
+	public long skip(long bytes) throws IOException {
+		long current = position();
+
+		long target = Math.min(length, current + Math.max(bytes, 0L));
+
+		seek(target);
+
+		return target - current;
+	}
+
+	public int available() throws IOException {
+		return (int) Math.min(Integer.MAX_VALUE, length - position());
+	}
+
+	public boolean markSupported() {
+		return true;
+	}
+
+	public synchronized void mark(int readLimit) {
+		mark = position();
+	}
+
+	public synchronized void reset() throws IOException {
+		seek(mark);
+	}
+
+	public void close() throws IOException {
+		window = null;
+
+		channel.close();
+		file.close();
+	}
+
+	private long position() {
+		return windowStart + window.position();
+	}
+
+	private void seek(long position) throws IOException {
+		if (position >= windowStart && position <= windowStart + window.limit()) {
+			window.position((int) (position - windowStart));
+		}
+		else {
+			map(position);
+		}
+	}
+
+	/**
+	 * Maps the window following the current one.
+	 * 
+	 * @return False if the end of the file was reached, true otherwise.
+	 */
+	private boolean advance() throws IOException {
+		long next = windowStart + window.limit();
+
+		if (next >= length) {
+			return false;
+		}
+
+		map(next);
+
+		return true;
+	}
+
+	private void map(long start) throws IOException {
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, length - start));
+
+		windowStart = start;
+	}
+}
@@ -11,6 +11,7 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package utilities.filesystem.posix;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 
 import java.io.FileNotFoundException;
@@ -26,6 +27,8 @@ import utilities.filesystem.FilesystemDriver;
 import utilities.filesystem.Filename;
 
 public class PosixDriver implements FilesystemDriver {
+	private static final long MAPPING_THRESHOLD = 64 * 1024;
+
 	private static PosixDriver instance;
 
 	static {
@@ -40,6 +43,23 @@ public class PosixDriver implements FilesystemDriver {
 		return new FileInputStream(filename.getLocation());
 	}
 
+	/**
+	 * Opens the file for reading through memory-mapped windows. Files that are not regular
+	 * files (such as /dev/null), or that are too small to benefit from mapping, are read
+	 * through a buffered stream instead.
+	 * 
+	 * @return A stream that supports mark() and reset().
+	 */
+	public InputStream openMappedR(Filename filename) throws IOException {
+		File file = new File(filename.getLocation());
+
+		if (file.isFile() && file.length() >= MAPPING_THRESHOLD) {
+			return new MappedFileInputStream(file);
+		}
+
+		return new BufferedInputStream(new FileInputStream(file));
+	}
+
 	public OutputStream openW(Filename filename) throws IOException {
 		return new FileOutputStream(filename.getLocation());
 	}
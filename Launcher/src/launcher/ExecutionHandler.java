@@ -21,28 +21,44 @@ import java.lang.management.ThreadMXBean;
 import java.net.InetSocketAddress;
 import java.rmi.RemoteException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
+import utilities.MappedRing;
 import utilities.RMIHelper;
 import utilities.logging.Logging;
 import appspecs.Node;
+import nodes.StatefulNode;
 
 import communication.channel.FileInputChannel;
 import communication.channel.FileOutputChannel;
 import communication.channel.InputChannel;
+import communication.channel.NodeboxInputChannel;
+import communication.channel.NodeboxOutputChannel;
 import communication.channel.OutputChannel;
 import communication.channel.SHMInputChannel;
 import communication.channel.SHMOutputChannel;
 import communication.channel.TCPInputChannel;
 import communication.channel.TCPOutputChannel;
+import communication.channel.TimeboxInputChannel;
+import communication.channel.TimeboxOutputChannel;
+import communication.compression.FrameCompressor;
+import communication.interfaces.RecordConsumer;
 import communication.readers.FileRecordReader;
 import communication.readers.SHMRecordMultiplexer;
+import communication.readers.TCPReceiver;
 import communication.readers.TCPRecordMultiplexer;
+import communication.serialization.SerializerRegistry;
 import communication.writers.FileRecordWriter;
+import communication.writers.FusedRecordWriter;
+import communication.writers.LocalRecordWriter;
 import communication.writers.SHMRecordWriter;
+import communication.writers.TCPConnectionPool;
 import communication.writers.TCPRecordWriter;
 
+import enums.ExecutionMode;
 import exceptions.InexistentApplicationException;
 import execinfo.NodeGroup;
 import execinfo.NodeMeasurements;
@@ -65,6 +81,26 @@ public class ExecutionHandler extends Thread {
 	private long reportPeriod;
 	
 	static String registryLocation = System.getProperty("java.rmi.server.location");
+
+	// TCP edges between nodes of this launcher skip the sockets, unless disabled with hammr.tcp.shortcircuit
+
+	private static final boolean TCP_SHORT_CIRCUIT = Boolean.parseBoolean(System.getProperty("hammr.tcp.shortcircuit", "true"));
+
+	// How the nodes are run, set with hammr.execution (THREAD, POOL or VIRTUAL)
+
+	private static final ExecutionMode EXECUTION_MODE = obtainExecutionMode();
+
+	private static final NodeThreadFactory nodeThreadFactory = new NodeThreadFactory(EXECUTION_MODE == ExecutionMode.VIRTUAL);
+
+	// In POOL mode, Nodes that are not timeboxed share a bounded number of platform threads, set with hammr.pool.threads
+
+	private static final int POOL_THREADS = Integer.getInteger("hammr.pool.threads", 2 * Runtime.getRuntime().availableProcessors());
+
+	private static final NodeThreadLimiter nodeThreadLimiter = new NodeThreadLimiter(POOL_THREADS);
+
+	// In POOL and VIRTUAL modes, launchers accept at most this many Nodes per pooled thread, unless hammr.launcher.slots is set
+
+	private static final int NODES_PER_POOL_THREAD = 4;
 	
 	/**
 	 * Constructor.
@@ -94,6 +130,33 @@ public class ExecutionHandler extends Thread {
 		this.reportPeriod = 10000;
 	}
 
+	/**
+	 * Obtains the default number of Nodes a launcher accepts: unlimited when every Node has
+	 * its own platform thread, and a multiple of the pooled threads otherwise, so that the
+	 * launcher does not take far more Nodes than it can run at once.
+	 * 
+	 * @return The default number of launcher slots.
+	 */
+	static int obtainDefaultSlots() {
+		if (EXECUTION_MODE == ExecutionMode.THREAD) {
+			return Integer.MAX_VALUE;
+		}
+
+		return NODES_PER_POOL_THREAD * POOL_THREADS;
+	}
+
+	private static ExecutionMode obtainExecutionMode() {
+		String executionMode = System.getProperty("hammr.execution", ExecutionMode.THREAD.name());
+
+		try {
+			return ExecutionMode.valueOf(executionMode.toUpperCase());
+		} catch (IllegalArgumentException exception) {
+			System.err.println("Unknown execution mode " + executionMode + "; using " + ExecutionMode.THREAD);
+
+			return ExecutionMode.THREAD;
+		}
+	}
+
 	/**
 	 * Setter for NodeGroup
 	 * 
@@ -197,6 +260,8 @@ public class ExecutionHandler extends Thread {
 		 * corresponding physical pipe) is created
 		 */
 
+		SerializerRegistry serializerRegistry = nodeGroup.getSerializerRegistry();
+
 		Map<String, SHMRecordMultiplexer> mapRecordOutputStream = new HashMap<String, SHMRecordMultiplexer>();
 
 		for (Node node: nodeGroup.getNodes()) {
@@ -207,7 +272,9 @@ public class ExecutionHandler extends Thread {
 					SHMInputChannel shmInputChannel = (SHMInputChannel) inputChannel;
 
 					if (shmRecordMultiplexer == null) {
-						shmRecordMultiplexer = new SHMRecordMultiplexer(node.getInputChannelNames(SHMInputChannel.class));
+						// Time slices cannot wait for space, so timeboxed nodes have unbounded inputs
+
+						shmRecordMultiplexer = new SHMRecordMultiplexer(node.getInputChannelNames(SHMInputChannel.class), SHMRecordMultiplexer.DEFAULT_CAPACITY, !isTimeboxed(node));
 
 						/*
 						 * For SHM, when creating input pipe, map the
@@ -239,12 +306,40 @@ public class ExecutionHandler extends Thread {
 			}
 		}
 
+		/*
+		 * Create all NODEBOX handlers
+		 * The producer passes its records to the consumer directly, and the
+		 * consumer does not get a thread of its own
+		 */
+
+		for (Node node: nodeGroup.getNodes()) {
+			for (OutputChannel outputChannel: node.getOutputChannels()) {
+				if (outputChannel instanceof NodeboxOutputChannel) {
+					Node target = null;
+
+					for (Node candidate: nodeGroup.getNodes()) {
+						if (candidate.getName().equals(outputChannel.getName())) {
+							target = candidate;
+						}
+					}
+
+					if (!(target instanceof RecordConsumer)) {
+						throw new IllegalStateException("NODEBOX target " + outputChannel.getName() + " of node " + node + " is not a fusable node of the NodeGroup");
+					}
+
+					outputChannel.setRecordWriter(new FusedRecordWriter((RecordConsumer) target));
+				}
+			}
+		}
+
 		/* 
 		 * Create all TCP handlers
 		 * If two TCP edges target the same node, only one TCP handler
 		 * (and corresponding server) is created
 		 */
 
+		Map<String, InetSocketAddress> registeredSocketAddresses = new HashMap<String, InetSocketAddress>();
+
 		for (Node node: nodeGroup.getNodes()) {
 			TCPRecordMultiplexer tcpRecordMultiplexer = null;
 
@@ -253,7 +348,9 @@ public class ExecutionHandler extends Thread {
 					TCPInputChannel tcpInputChannel = (TCPInputChannel) inputChannel;
 
 					if (tcpRecordMultiplexer == null) {
-						tcpRecordMultiplexer = new TCPRecordMultiplexer(node.getInputChannelNames(TCPInputChannel.class));
+						// As for SHM, local writers to timeboxed nodes must not wait, but remote senders still wait for credit
+
+						tcpRecordMultiplexer = new TCPRecordMultiplexer(TCPRecordMultiplexer.getIdentifier(nodeGroup.getApplicationName(), node.getName()), node.getInputChannelNames(TCPInputChannel.class), serializerRegistry, !isTimeboxed(node));
 
 						tcpInputChannel.setSocketAddress(tcpRecordMultiplexer.getAddress());
 
@@ -261,13 +358,7 @@ public class ExecutionHandler extends Thread {
 						 * For TCP, when creating the input server, map the
 						 * associated output server addresses for other nodes
 						 */
-						boolean result = manager.registerSocketAddress(nodeGroup.getApplicationName(), node.getName(), tcpInputChannel.getSocketAddress());
-
-						if (result == false) {
-							System.err.println("Unable to insert socket address for application " + nodeGroup.getApplicationName() + " in manager!");
-
-							throw new InexistentApplicationException(nodeGroup.getApplicationName());
-						}
+						registeredSocketAddresses.put(node.getName(), tcpInputChannel.getSocketAddress());
 					}
 
 					// For TCP, all inputs come from the unique input server
@@ -276,29 +367,73 @@ public class ExecutionHandler extends Thread {
 			}
 		}
 
+		// The addresses of all the input servers of the group are registered at once
+
+		if (!registeredSocketAddresses.isEmpty()) {
+			boolean result = manager.registerSocketAddresses(nodeGroup.getApplicationName(), registeredSocketAddresses);
+
+			if (result == false) {
+				System.err.println("Unable to insert socket address for application " + nodeGroup.getApplicationName() + " in manager!");
+
+				throw new InexistentApplicationException(nodeGroup.getApplicationName());
+			}
+		}
+
+		/*
+		 *  For TCP, (1) obtain the addresses of all the output servers
+		 *  from manager, in a single call that returns once all of them
+		 *  are registered
+		 */
+
+		Set<String> targetNames = new HashSet<String>();
+
+		for (Node node: nodeGroup.getNodes()) {
+			targetNames.addAll(node.getOutputChannelNames(TCPOutputChannel.class));
+		}
+
+		Map<String, InetSocketAddress> targetSocketAddresses = new HashMap<String, InetSocketAddress>();
+
+		if (!targetNames.isEmpty()) {
+			targetSocketAddresses = manager.obtainSocketAddresses(nodeGroup.getApplicationName(), targetNames);
+
+			if (targetSocketAddresses == null) {
+				throw new InexistentApplicationException(nodeGroup.getApplicationName());
+			}
+		}
+
 		for (Node node: nodeGroup.getNodes()) {
 			for (OutputChannel outputChannel: node.getOutputChannels()) {
 				if (outputChannel instanceof TCPOutputChannel) {
 					TCPOutputChannel tcpOutputChannel = (TCPOutputChannel) outputChannel;
 
-					/*
-					 *  For TCP, (1) obtain the address of the output server
-					 *  from manager
-					 */
-					InetSocketAddress socketAddress = manager.obtainSocketAddress(nodeGroup.getApplicationName(), tcpOutputChannel.getName());
-
-					if (socketAddress == null) {
-						throw new InexistentApplicationException(nodeGroup.getApplicationName());
-					}
+					InetSocketAddress socketAddress = targetSocketAddresses.get(tcpOutputChannel.getName());
 
 					tcpOutputChannel.setSocketAddress(socketAddress);
 
 					/*
 					 *  For TCP, (2) all the outputs go to the unique server 
-					 *  for each node
+					 *  for each node, over the link shared by all the channels
+					 *  to the same launcher; if the launcher is in the same
+					 *  machine, the records go through a shared ring file, and
+					 *  if the server is in this launcher, they are handed over
+					 *  to it directly
 					 */
 
-					TCPRecordWriter tcpRecordWriter = new TCPRecordWriter(node.getName(), socketAddress);
+					String destination = TCPRecordMultiplexer.getIdentifier(nodeGroup.getApplicationName(), tcpOutputChannel.getName());
+
+					TCPRecordMultiplexer localMultiplexer = obtainLocalMultiplexer(socketAddress, destination);
+
+					if (localMultiplexer != null) {
+						tcpOutputChannel.setRecordWriter(new LocalRecordWriter(node.getName(), localMultiplexer));
+
+						continue;
+					}
+
+					boolean sharedMemory = TCPConnectionPool.isLocal(socketAddress) && MappedRing.isAvailable();
+
+					TCPRecordWriter tcpRecordWriter = new TCPRecordWriter(node.getName(), socketAddress, destination, serializerRegistry, sharedMemory, tcpOutputChannel.isSpillEnabled());
+
+					tcpRecordWriter.setCompression(tcpOutputChannel.getCompressionType(), tcpOutputChannel.isCompressionAdaptive());
 
 					tcpOutputChannel.setRecordWriter(tcpRecordWriter);
 				}
@@ -316,7 +451,17 @@ public class ExecutionHandler extends Thread {
 				if (inputChannel instanceof FileInputChannel) {
 					FileInputChannel fileInputChannel = (FileInputChannel) inputChannel;
 
-					FileRecordReader fileRecordReader = new FileRecordReader(fileInputChannel.getFilename());
+					FileRecordReader fileRecordReader;
+
+					if (fileInputChannel.isStreaming()) {
+						fileRecordReader = new FileRecordReader(fileInputChannel.getFilename(), serializerRegistry, false, true);
+					}
+					else if (fileInputChannel.isSplit()) {
+						fileRecordReader = new FileRecordReader(fileInputChannel.getFilename(), serializerRegistry, fileInputChannel.getSplitStart(), fileInputChannel.getSplitEnd());
+					}
+					else {
+						fileRecordReader = new FileRecordReader(fileInputChannel.getFilename(), serializerRegistry);
+					}
 
 					fileInputChannel.setRecordReader(fileRecordReader);
 				}
@@ -326,7 +471,7 @@ public class ExecutionHandler extends Thread {
 				if (outputChannel instanceof FileOutputChannel) {
 					FileOutputChannel fileOutputChannel = (FileOutputChannel) outputChannel;
 
-					FileRecordWriter fileRecordWriter = new FileRecordWriter(fileOutputChannel.getFilename());
+					FileRecordWriter fileRecordWriter = new FileRecordWriter(fileOutputChannel.getFilename(), serializerRegistry, fileOutputChannel.getOptions());
 
 					fileOutputChannel.setRecordWriter(fileRecordWriter);
 				}
@@ -335,28 +480,104 @@ public class ExecutionHandler extends Thread {
 	}
 
 	/**
-	 * Performs task execution inside Nodes, one per thread, and sends result 
-	 * summary to master.
+	 * Obtains the multiplexer of a TCP destination, if it lives in this launcher.
+	 * 
+	 * @param socketAddress Address registered by the destination.
+	 * @param destination Identifier of the destination multiplexer.
+	 * 
+	 * @return The destination multiplexer, or null if the destination is remote or
+	 *         the short-circuit is disabled.
+	 */
+	private TCPRecordMultiplexer obtainLocalMultiplexer(InetSocketAddress socketAddress, String destination) {
+		if (!TCP_SHORT_CIRCUIT) {
+			return null;
+		}
+
+		TCPReceiver receiver = TCPReceiver.getExistingInstance();
+
+		if (receiver == null || !receiver.isLocal(socketAddress)) {
+			return null;
+		}
+
+		return receiver.getLocalMultiplexer(destination);
+	}
+
+	/**
+	 * Tells whether a Node runs in time slices: it should be fusable, not already fused to
+	 * its producer, and an endpoint of a TIMEBOX edge. Other Nodes keep bounded inputs and
+	 * a thread of their own, whatever the execution mode.
+	 * 
+	 * @param node Node of the NodeGroup.
+	 * 
+	 * @return True if the Node is run by the TimeboxScheduler of the NodeGroup.
+	 */
+	private boolean isTimeboxed(Node node) {
+		if (!node.isFusable() || !node.getInputChannels(NodeboxInputChannel.class).isEmpty()) {
+			return false;
+		}
+
+		return !node.getInputChannels(TimeboxInputChannel.class).isEmpty() || !node.getOutputChannels(TimeboxOutputChannel.class).isEmpty();
+	}
+
+	/**
+	 * Performs task execution inside Nodes, one per thread (platform or virtual, according
+	 * to the execution mode; bounded platform threads in POOL mode) or in time slices for
+	 * timeboxed Nodes, and sends result summary to master.
 	 * 
 	 * @return Result summary to be sent back to master.
 	 */
 	private ResultSummary performExecution() {
 		NodeHandler[] nodeHandlers = new NodeHandler[nodeGroup.getSize()];
 
+		Thread[] nodeThreads = new Thread[nodeGroup.getSize()];
+
 		Iterator<Node> iterator = nodeGroup.getNodesIterator();
 
 		long globalTimerStart = System.currentTimeMillis();
 		long globalEnergyStart = 0;
 
+		TimeboxScheduler timeboxScheduler = new TimeboxScheduler(TimeboxScheduler.DEFAULT_QUANTUM);
+
 		for (int i = 0; i < nodeGroup.getSize(); i++) {
 			nodeHandlers[i] = new NodeHandler(iterator.next());
 			globalEnergyStart += nodeGroup.getEnergy();
-			nodeHandlers[i].start();
+
+			// Fused nodes run in the thread of their producer, and timeboxed nodes in the threads of the scheduler
+
+			if (nodeHandlers[i].isFused()) {
+				continue;
+			}
+
+			if (isTimeboxed(nodeHandlers[i].getNode())) {
+				timeboxScheduler.add(nodeHandlers[i].createTask());
+
+				continue;
+			}
+
+			if (EXECUTION_MODE == ExecutionMode.POOL) {
+				nodeThreads[i] = nodeThreadLimiter.start(nodeHandlers[i], "Node-" + nodeHandlers[i].getNode().getName());
+
+				continue;
+			}
+
+			nodeThreads[i] = nodeThreadFactory.newThread(nodeHandlers[i]);
+
+			nodeThreads[i].setName("Node-" + nodeHandlers[i].getNode().getName());
+
+			nodeThreads[i].start();
 		}
 
+		timeboxScheduler.run();
+
 		for (int i = 0; i < nodeGroup.getSize(); i++) {
+			if (nodeThreads[i] == null) {
+				continue;
+			}
+
 			try {
-				nodeHandlers[i].join();
+				// Threads queued by the limiter may not have started yet
+
+				nodeThreadLimiter.join(nodeThreads[i]);
 			} catch (InterruptedException exception) {
 				System.err.println("Unexpected thread interruption while waiting for node execution termination");
 
@@ -372,13 +593,25 @@ public class ExecutionHandler extends Thread {
 			globalEnergyFinish += nodeGroup.getEnergy();
 		}
 
-		ResultSummary resultSummary = new ResultSummary(nodeGroup.getApplicationName(), nodeGroup.getSerialNumber(), ResultSummary.Type.SUCCESS);
+		// Failed nodes, including the ones whose outputs could not be delivered, are reported without measurements
+
+		boolean[] nodeFailed = new boolean[nodeGroup.getSize()];
+
+		boolean failed = false;
+
+		for (int i = 0; i < nodeGroup.getSize(); i++) {
+			nodeFailed[i] = !nodeHandlers[i].awaitOutputs() || nodeHandlers[i].getNode().hasFailed();
+
+			failed |= nodeFailed[i];
+		}
+
+		ResultSummary resultSummary = new ResultSummary(nodeGroup.getApplicationName(), nodeGroup.getSerialNumber(), (failed ? ResultSummary.Type.FAILURE : ResultSummary.Type.SUCCESS));
 
 		resultSummary.setNodeGroupTiming(globalTimerFinish - globalTimerStart);
 		resultSummary.setNodeGroupEnergy(globalEnergyFinish - globalEnergyStart);
 
 		for (int i = 0; i < nodeGroup.getSize(); i++) {
-			resultSummary.addNodeMeasurements(nodeHandlers[i].getNode().getName(), nodeHandlers[i].getNodeMeasurements());
+			resultSummary.addNodeMeasurements(nodeHandlers[i].getNode().getName(), (nodeFailed[i] ? null : nodeHandlers[i].getNodeMeasurements()));
 		}
 
 		return resultSummary;
@@ -418,7 +651,7 @@ public class ExecutionHandler extends Thread {
 	 * @author Hammurabi Mendes (hmendes)
 	 * @author Marcelo Martins (martins)
 	 */
-	class NodeHandler extends Thread {
+	class NodeHandler implements Runnable {
 		private Node node;
 
 		private long realLocalTimerStart;
@@ -432,6 +665,9 @@ public class ExecutionHandler extends Thread {
 
 		private double energyStart;
 		private double energyFinish;
+
+		// The JVM could not measure the CPU and user times of a thread that ran the Node (as for virtual threads)
+		private boolean threadTimesUnavailable;
 		
 		/**
 		 * Class constructor.
@@ -459,17 +695,143 @@ public class ExecutionHandler extends Thread {
 
 			realLocalTimerStart = System.currentTimeMillis();
 
-			cpuLocalTimerStart = profiler.getCurrentThreadCpuTime();
-			userLocalTimerStart = profiler.getCurrentThreadUserTime();
+			cpuLocalTimerStart = getCurrentCpuTime(profiler);
+			userLocalTimerStart = getCurrentUserTime(profiler);
 			energyStart = node.getEnergy();
 
 			node.run();
 
 			realLocalTimerFinish = System.currentTimeMillis();
 
-			cpuLocalTimerFinish = profiler.getCurrentThreadCpuTime();
-			userLocalTimerFinish = profiler.getCurrentThreadUserTime();
+			cpuLocalTimerFinish = getCurrentCpuTime(profiler);
+			userLocalTimerFinish = getCurrentUserTime(profiler);
 			energyFinish = node.getEnergy();
+
+			if (cpuLocalTimerStart < 0L || cpuLocalTimerFinish < 0L || userLocalTimerStart < 0L || userLocalTimerFinish < 0L) {
+				threadTimesUnavailable = true;
+			}
+		}
+
+		/**
+		 * Creates the task that runs the Node in time slices. The Node should be timeboxed.
+		 * 
+		 * @return The task, already notified by the inputs of the Node.
+		 */
+		public TimeboxScheduler.Task createTask() {
+			TimeboxScheduler.Task task = new TimeboxScheduler.Task() {
+				protected int runSlice(int quantum) {
+					return NodeHandler.this.runSlice(quantum);
+				}
+
+				protected void abort() {
+					((StatefulNode) node).failDriven();
+				}
+
+				public String toString() {
+					return node.toString();
+				}
+			};
+
+			((StatefulNode) node).setInputListener(task);
+
+			return task;
+		}
+
+		/**
+		 * Runs a time slice of the Node. The real time covers the whole lifetime of the Node,
+		 * while the CPU and user times add up the slices.
+		 * 
+		 * @param quantum Maximum number of records processed.
+		 * 
+		 * @return The outcome of the slice, as in StatefulNode.runSlice().
+		 */
+		private int runSlice(int quantum) {
+			ThreadMXBean profiler = ManagementFactory.getThreadMXBean();
+
+			if (realLocalTimerStart == 0L) {
+				System.out.println("Executing " + node + " in time slices");
+
+				if (profiler.isThreadCpuTimeSupported() && !profiler.isThreadCpuTimeEnabled()) {
+					profiler.setThreadCpuTimeEnabled(true);
+				}
+
+				realLocalTimerStart = System.currentTimeMillis();
+
+				energyStart = node.getEnergy();
+			}
+
+			long cpuSliceStart = getCurrentCpuTime(profiler);
+			long userSliceStart = getCurrentUserTime(profiler);
+
+			int result = ((StatefulNode) node).runSlice(quantum);
+
+			long cpuSliceFinish = getCurrentCpuTime(profiler);
+			long userSliceFinish = getCurrentUserTime(profiler);
+
+			if (cpuSliceStart < 0L || cpuSliceFinish < 0L || userSliceStart < 0L || userSliceFinish < 0L) {
+				threadTimesUnavailable = true;
+			}
+
+			cpuLocalTimerFinish += cpuSliceFinish - cpuSliceStart;
+			userLocalTimerFinish += userSliceFinish - userSliceStart;
+
+			realLocalTimerFinish = System.currentTimeMillis();
+
+			energyFinish = node.getEnergy();
+
+			return result;
+		}
+
+		/**
+		 * Tells whether the Node is fused to its producer. Fused Nodes have no thread
+		 * of their own, and their running times are accounted to their producer.
+		 * 
+		 * @return True if the Node is the target of a fused NODEBOX edge.
+		 */
+		public boolean isFused() {
+			return !node.getInputChannels(NodeboxInputChannel.class).isEmpty();
+		}
+
+		/**
+		 * Obtains the CPU time of the current thread, or -1 if the JVM cannot measure it
+		 * (as for virtual threads).
+		 */
+		private long getCurrentCpuTime(ThreadMXBean profiler) {
+			try {
+				return Math.max(-1L, profiler.getCurrentThreadCpuTime());
+			} catch (UnsupportedOperationException exception) {
+				return -1L;
+			}
+		}
+
+		/**
+		 * Obtains the user time of the current thread, or -1 if the JVM cannot measure it
+		 * (as for virtual threads).
+		 */
+		private long getCurrentUserTime(ThreadMXBean profiler) {
+			try {
+				return Math.max(-1L, profiler.getCurrentThreadUserTime());
+			} catch (UnsupportedOperationException exception) {
+				return -1L;
+			}
+		}
+
+		/**
+		 * Waits until the TCP outputs of the Node delivered their records, since spilling
+		 * writers may still be sending them after the Node terminated.
+		 * 
+		 * @return True if every output was closed normally, false otherwise.
+		 */
+		public boolean awaitOutputs() {
+			boolean result = true;
+
+			for (OutputChannel outputChannel: node.getOutputChannels(TCPOutputChannel.class)) {
+				if (outputChannel.getRecordWriter() instanceof TCPRecordWriter) {
+					result &= ((TCPRecordWriter) outputChannel.getRecordWriter()).awaitClosed();
+				}
+			}
+
+			return result;
 		}
 
 		/**
@@ -493,9 +855,13 @@ public class ExecutionHandler extends Thread {
 		/**
 		 * Getter for Node's CPU time.
 		 * 
-		 * @return The CPU time to execute Node.
+		 * @return The CPU time to execute Node, or NodeMeasurements.UNAVAILABLE if it could not be measured.
 		 */
 		public long getCpuTime() {
+			if (threadTimesUnavailable) {
+				return NodeMeasurements.UNAVAILABLE;
+			}
+
 			// Return time in milliseconds, not in nanoseconds
 			
 			return (cpuLocalTimerFinish - cpuLocalTimerStart) / 1000000;
@@ -504,9 +870,13 @@ public class ExecutionHandler extends Thread {
 		/**
 		 * Getter for Node's user time
 		 * 
-		 * @return The user time to execute Node.
+		 * @return The user time to execute Node, or NodeMeasurements.UNAVAILABLE if it could not be measured.
 		 */
 		public long getUserTime() {
+			if (threadTimesUnavailable) {
+				return NodeMeasurements.UNAVAILABLE;
+			}
+
 			// We get results in milliseconds, not in nanoseconds
 
 			return (userLocalTimerFinish - userLocalTimerStart) / 1000000;
@@ -528,7 +898,37 @@ public class ExecutionHandler extends Thread {
 		 * @return The whole set of node measurements.
 		 */
 		public NodeMeasurements getNodeMeasurements() {
-			return new NodeMeasurements(getRealTime(), getCpuTime(), getUserTime(), getEnergy());
+			NodeMeasurements nodeMeasurements = new NodeMeasurements(getRealTime(), getCpuTime(), getUserTime(), getEnergy());
+
+			long tcpBytesSent = 0L;
+			long tcpStallCount = 0L;
+			long tcpStallTime = 0L;
+
+			long tcpBytesSpilled = 0L;
+
+			for (OutputChannel outputChannel: node.getOutputChannels(TCPOutputChannel.class)) {
+				if (outputChannel.getRecordWriter() instanceof TCPRecordWriter) {
+					TCPRecordWriter tcpRecordWriter = (TCPRecordWriter) outputChannel.getRecordWriter();
+
+					tcpBytesSent += tcpRecordWriter.getBytesSent();
+					tcpStallCount += tcpRecordWriter.getStallCount();
+					tcpStallTime += tcpRecordWriter.getStallTime();
+
+					tcpBytesSpilled += tcpRecordWriter.getBytesSpilled();
+
+					FrameCompressor compressor = tcpRecordWriter.getCompressor();
+
+					if (compressor != null) {
+						nodeMeasurements.setTCPCompression(outputChannel.getName(), compressor.getBytesIn(), compressor.getBytesOut(), compressor.getCompressionTime());
+					}
+				}
+			}
+
+			nodeMeasurements.setTCPStatistics(tcpBytesSent, tcpStallCount, tcpStallTime);
+
+			nodeMeasurements.setTCPBytesSpilled(tcpBytesSpilled);
+
+			return nodeMeasurements;
 		}
 	}
 }
@@ -23,7 +23,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import launcher.ExecutionHandler;
 
@@ -37,7 +39,8 @@ import execinfo.NodeGroup;
  * @author Hammurabi Mendes (hmendes)
  */
 public class JobLauncher implements Launcher, LocalLauncher {
-	private static final int NUMBER_SLOTS_DEFAULT = Integer.MAX_VALUE;
+	// Nodes that may be assigned to the launcher, overridable with the hammr.launcher.slots system property
+	private static final int NUMBER_SLOTS_DEFAULT = Integer.getInteger("hammr.launcher.slots", ExecutionHandler.obtainDefaultSlots());
 	
 	private static JobLauncher instance;
 
@@ -122,7 +125,13 @@ public class JobLauncher implements Launcher, LocalLauncher {
 
 		launcherCache = Collections.synchronizedMap(new HashMap<String, Object>());
 
-		executorService = Executors.newCachedThreadPool();
+		// Each running NodeGroup occupies at least one slot, so the slots also bound the handler threads
+
+		ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(NUMBER_SLOTS_DEFAULT, NUMBER_SLOTS_DEFAULT, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+		threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+		executorService = threadPoolExecutor;
 	}
 
 	/**
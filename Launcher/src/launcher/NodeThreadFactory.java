@@ -0,0 +1,81 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package launcher;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads that run Nodes: virtual threads, if requested and supported by
+ * the JVM, or platform threads otherwise. Virtual threads are created by reflection,
+ * so that the launcher still runs on JVMs without them.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class NodeThreadFactory implements ThreadFactory {
+	// Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), if available
+
+	private static Method virtualBuilder;
+	private static Method builderUnstarted;
+
+	static {
+		try {
+			virtualBuilder = Thread.class.getMethod("ofVirtual");
+
+			builderUnstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+		} catch (Exception exception) {
+			// Virtual threads are not supported by this JVM
+
+			virtualBuilder = null;
+			builderUnstarted = null;
+		}
+	}
+
+	private boolean virtual;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param virtual True to create virtual threads, if supported.
+	 */
+	public NodeThreadFactory(boolean virtual) {
+		this.virtual = virtual && isVirtualSupported();
+	}
+
+	/**
+	 * Tells whether the JVM supports virtual threads.
+	 */
+	public static boolean isVirtualSupported() {
+		return virtualBuilder != null;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	public Thread newThread(Runnable runnable) {
+		if (virtual) {
+			try {
+				// Builders are not thread-safe, so each thread gets its own
+
+				return (Thread) builderUnstarted.invoke(virtualBuilder.invoke(null), runnable);
+			} catch (Exception exception) {
+				System.err.println("Unable to create virtual thread; using a platform thread instead");
+
+				exception.printStackTrace();
+			}
+		}
+
+		return new Thread(runnable);
+	}
+}
@@ -0,0 +1,171 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package launcher;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Bounds the number of dedicated platform threads running Nodes, queueing the Nodes above
+ * the limit until a running one finishes.
+ * 
+ * Queued Nodes may be the producers or consumers of running ones, so the limit is exceeded
+ * one thread at a time whenever all the running threads stay blocked, rather than risk a deadlock.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class NodeThreadLimiter {
+	// Period in milliseconds of the checks for blocked threads, and checks needed before exceeding the limit
+
+	private static final long CHECK_INTERVAL = 100;
+
+	private static final int STALL_CHECKS = 2;
+
+	private int limit;
+
+	private Set<Thread> running;
+
+	private Queue<Thread> queued;
+
+	private Thread watchdog;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param limit Maximum number of threads running at once, unless all of them are blocked.
+	 */
+	public NodeThreadLimiter(int limit) {
+		this.limit = Math.max(1, limit);
+
+		this.running = new LinkedHashSet<Thread>();
+
+		this.queued = new LinkedList<Thread>();
+	}
+
+	/**
+	 * Creates a thread for the runnable, and starts it now or once the limit allows.
+	 * 
+	 * @param runnable Task to be run.
+	 * @param name Name of the thread.
+	 * 
+	 * @return The thread, possibly not yet started; use join() to wait for it.
+	 */
+	public synchronized Thread start(final Runnable runnable, String name) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					runnable.run();
+				} finally {
+					finished(Thread.currentThread());
+				}
+			}
+		}, name);
+
+		queued.add(thread);
+
+		startQueued();
+
+		return thread;
+	}
+
+	/**
+	 * Waits until a thread was started and finished.
+	 * 
+	 * @param thread Thread to wait for.
+	 */
+	public void join(Thread thread) throws InterruptedException {
+		synchronized (this) {
+			while (queued.contains(thread)) {
+				wait();
+			}
+		}
+
+		thread.join();
+	}
+
+	private synchronized void finished(Thread thread) {
+		running.remove(thread);
+
+		startQueued();
+	}
+
+	private void startQueued() {
+		while (running.size() < limit && !queued.isEmpty()) {
+			launch(queued.poll());
+		}
+
+		if (!queued.isEmpty() && watchdog == null) {
+			watchdog = new Thread(new Runnable() {
+				public void run() {
+					watch();
+				}
+			}, "NodeThreadLimiter");
+
+			watchdog.setDaemon(true);
+
+			watchdog.start();
+		}
+	}
+
+	private void launch(Thread thread) {
+		running.add(thread);
+
+		thread.start();
+
+		notifyAll();
+	}
+
+	/**
+	 * Starts a queued thread whenever all the running ones remain blocked, until the queue is empty.
+	 */
+	private void watch() {
+		int stalledChecks = 0;
+
+		while (true) {
+			try {
+				Thread.sleep(CHECK_INTERVAL);
+			} catch (InterruptedException exception) {
+				System.err.println("Unexpected thread interruption while watching Node threads");
+			}
+
+			synchronized (this) {
+				if (queued.isEmpty()) {
+					watchdog = null;
+
+					return;
+				}
+
+				stalledChecks = isStalled() ? stalledChecks + 1 : 0;
+
+				if (stalledChecks >= STALL_CHECKS) {
+					launch(queued.poll());
+
+					stalledChecks = 0;
+				}
+			}
+		}
+	}
+
+	private boolean isStalled() {
+		for (Thread thread: running) {
+			if (thread.getState() == Thread.State.RUNNABLE) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
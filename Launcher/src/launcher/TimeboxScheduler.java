@@ -0,0 +1,247 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import communication.channel.RecordBatch;
+import communication.interfaces.ReadinessListener;
+import communication.interfaces.RecordReader;
+
+import nodes.StatefulNode;
+
+/**
+ * Runs Nodes cooperatively, in time slices, on a fixed number of threads shared by all
+ * the NodeGroups of the launcher. A task is queued when its inputs signal that records are ready; a worker then
+ * runs one slice of it, which processes at most a quantum of records and never waits for
+ * more. Tasks that used their whole quantum are queued again, behind the others.
+ * 
+ * Slices must not block, so the inputs of the Nodes are unbounded for writers of the same
+ * launcher, SHM or TCP alike. Inputs that block on their own (such as streaming files) hold
+ * their worker while they wait, and so do writes to remote TCP outputs, which wait for credit,
+ * and writes to Nodes that are not timeboxed, which wait for space.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TimeboxScheduler {
+	/**
+	 * Default number of threads, overridable with the hammr.timebox.threads system property.
+	 */
+	public static final int DEFAULT_THREADS = Integer.getInteger("hammr.timebox.threads", Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Default slice length in records, overridable with the hammr.timebox.quantum system property.
+	 */
+	public static final int DEFAULT_QUANTUM = Integer.getInteger("hammr.timebox.quantum", RecordBatch.DEFAULT_CAPACITY);
+
+	// Tasks of all the schedulers waiting for a worker, and the workers started so far
+
+	private static BlockingQueue<Task> runQueue = new LinkedBlockingQueue<Task>();
+
+	private static int numberWorkers = 0;
+
+	private int quantum;
+
+	private List<Task> tasks;
+
+	private CountDownLatch running;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param quantum Maximum number of records processed in a slice.
+	 */
+	public TimeboxScheduler(int quantum) {
+		this.quantum = Math.max(1, quantum);
+
+		this.tasks = new ArrayList<Task>();
+	}
+
+	/**
+	 * Adds a task; tasks should be added before run() is called.
+	 * 
+	 * @param task Task to be run.
+	 */
+	public void add(Task task) {
+		task.scheduler = this;
+
+		tasks.add(task);
+	}
+
+	public int getSize() {
+		return tasks.size();
+	}
+
+	/**
+	 * Runs all the tasks until they finish.
+	 */
+	public void run() {
+		if (tasks.isEmpty()) {
+			return;
+		}
+
+		running = new CountDownLatch(tasks.size());
+
+		// Every task gets a first slice, to initialize and to consume what is already available
+
+		for (Task task: tasks) {
+			task.state.set(Task.QUEUED);
+
+			runQueue.add(task);
+		}
+
+		startWorkers();
+
+		while (true) {
+			try {
+				running.await();
+
+				break;
+			} catch (InterruptedException exception) {
+				System.err.println("Unexpected thread interruption while waiting for time-sliced tasks");
+			}
+		}
+	}
+
+	private static synchronized void startWorkers() {
+		while (numberWorkers < Math.max(1, DEFAULT_THREADS)) {
+			Worker worker = new Worker("TimeboxWorker-" + numberWorkers);
+
+			worker.start();
+
+			numberWorkers++;
+		}
+	}
+
+	/**
+	 * Unit of time-sliced work, notified by the inputs it reads from.
+	 */
+	public static abstract class Task implements ReadinessListener {
+		private static final int IDLE = 0;
+		private static final int QUEUED = 1;
+		private static final int RUNNING = 2;
+		private static final int SIGNALED = 3;
+		private static final int FINISHED = 4;
+
+		private AtomicInteger state = new AtomicInteger(IDLE);
+
+		private TimeboxScheduler scheduler;
+
+		/**
+		 * Runs a slice of the task.
+		 * 
+		 * @param quantum Maximum number of records processed.
+		 * 
+		 * @return One of StatefulNode.SLICE_READY, SLICE_IDLE or SLICE_FINISHED.
+		 */
+		protected abstract int runSlice(int quantum);
+
+		/**
+		 * Called once a slice throws an unexpected exception, before the task is counted as finished.
+		 */
+		protected abstract void abort();
+
+		public void readerReady(RecordReader reader) {
+			while (true) {
+				int current = state.get();
+
+				if (current == IDLE) {
+					if (state.compareAndSet(IDLE, QUEUED)) {
+						runQueue.add(this);
+
+						return;
+					}
+				}
+				else if (current == RUNNING) {
+					// Records arrived during the slice: run again even if the slice ends idle
+
+					if (state.compareAndSet(RUNNING, SIGNALED)) {
+						return;
+					}
+				}
+				else {
+					return;
+				}
+			}
+		}
+
+		private void execute() {
+			state.set(RUNNING);
+
+			int result;
+
+			try {
+				result = runSlice(scheduler.quantum);
+			} catch (RuntimeException exception) {
+				System.err.println("Error running time-sliced task " + this);
+
+				exception.printStackTrace();
+
+				try {
+					abort();
+				} catch (RuntimeException abortException) {
+					System.err.println("Error aborting time-sliced task " + this);
+
+					abortException.printStackTrace();
+				}
+
+				result = StatefulNode.SLICE_FINISHED;
+			}
+
+			if (result == StatefulNode.SLICE_FINISHED) {
+				state.set(FINISHED);
+
+				scheduler.running.countDown();
+
+				return;
+			}
+
+			if (result == StatefulNode.SLICE_IDLE && state.compareAndSet(RUNNING, IDLE)) {
+				return;
+			}
+
+			state.set(QUEUED);
+
+			runQueue.add(this);
+		}
+	}
+
+	private static class Worker extends Thread {
+		public Worker(String name) {
+			super(name);
+
+			setDaemon(true);
+		}
+
+		public void run() {
+			while (true) {
+				Task task;
+
+				try {
+					task = runQueue.take();
+				} catch (InterruptedException exception) {
+					System.err.println("Unexpected thread interruption while waiting for time-sliced tasks");
+
+					continue;
+				}
+
+				task.execute();
+			}
+		}
+	}
+}
@@ -13,6 +13,8 @@ package manager;
 
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -114,7 +116,24 @@ public class ApplicationPackage {
 	 * @param registeredSocketAddress Socket address associated with the server-side TCP channel.
 	 */
 	public void addRegisteredSocketAddresses(String identifier, InetSocketAddress registeredSocketAddress) {
-		registeredSocketAddresses.put(identifier, registeredSocketAddress);
+		synchronized (registeredSocketAddresses) {
+			registeredSocketAddresses.put(identifier, registeredSocketAddress);
+
+			registeredSocketAddresses.notifyAll();
+		}
+	}
+
+	/**
+	 * Insert the socket addresses for several server-side TCP channels at once.
+	 * 
+	 * @param socketAddresses Socket addresses associated with the server-side TCP channels, by Node name.
+	 */
+	public void addRegisteredSocketAddresses(Map<String, InetSocketAddress> socketAddresses) {
+		synchronized (registeredSocketAddresses) {
+			registeredSocketAddresses.putAll(socketAddresses);
+
+			registeredSocketAddresses.notifyAll();
+		}
 	}
 
 	/**
@@ -128,6 +147,36 @@ public class ApplicationPackage {
 		return registeredSocketAddresses.get(identifier);
 	}
 
+	/**
+	 * Obtains the socket addresses for several Nodes' server-side TCP channels, waiting
+	 * until all of them are registered.
+	 * 
+	 * @param identifiers Node names.
+	 * 
+	 * @return The socket addresses associated with the server-side TCP channels, by Node name.
+	 */
+	public Map<String, InetSocketAddress> awaitRegisteredSocketAddresses(Collection<String> identifiers) {
+		Map<String, InetSocketAddress> result = new HashMap<String, InetSocketAddress>();
+
+		synchronized (registeredSocketAddresses) {
+			for (String identifier: identifiers) {
+				InetSocketAddress socketAddress;
+
+				while ((socketAddress = registeredSocketAddresses.get(identifier)) == null) {
+					try {
+						registeredSocketAddresses.wait();
+					} catch (InterruptedException exception) {
+						// Don't worry, just try again...
+					}
+				}
+
+				result.put(identifier, socketAddress);
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Inserts a received NodeGroup runtime information into holder.
 	 * 
@@ -170,6 +219,8 @@ public class ApplicationPackage {
 	}
 	
 	public void reset() {
-		registeredSocketAddresses.clear();
+		synchronized (registeredSocketAddresses) {
+			registeredSocketAddresses.clear();
+		}
 	}
 }
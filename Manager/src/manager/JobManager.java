@@ -233,15 +233,53 @@ public class JobManager implements Manager {
 			return null;
 		}
 
-		while (applicationPackage.getRegisteredSocketAddress(nodeName) == null) {
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException exception) {
-				// Don't worry, just try again...
-			}
+		return applicationPackage.awaitRegisteredSocketAddresses(Collections.singleton(nodeName)).get(nodeName);
+	}
+
+	/**
+	 * Registers the server-side TCP channel socket addresses of several nodes at once.
+	 * Called within Launcher during setup of NodeGroups, with the addresses of all
+	 * the NodeGroup's server-side TCP channels.
+	 * 
+	 * @param applicationName	Ditto.
+	 * @param socketAddresses	Socket addresses of the server-side TCP channels, by node name.
+	 * 
+	 * @return True unless the application is unknown.
+	 */
+	public boolean registerSocketAddresses(String applicationName, Map<String, InetSocketAddress> socketAddresses) throws RemoteException {
+		ApplicationPackage applicationPackage = applicationPackages.get(applicationName);
+
+		if (applicationPackage == null) {
+			System.err.println("Unable to locate applicationName information holder for applicationName " + applicationName + "!");
+
+			return false;
 		}
 
-		return applicationPackage.getRegisteredSocketAddress(nodeName);
+		applicationPackage.addRegisteredSocketAddresses(socketAddresses);
+
+		return true;
+	}
+
+	/**
+	 * Queries for the server-side TCP socket addresses of several nodes at once. Called
+	 * within Launcher during setup of NodeGroups, with the targets of all the NodeGroup's
+	 * client-side TCP channels. Returns when the last of them is registered.
+	 * 
+	 * @param applicationName	Ditto.
+	 * @param nodeNames			Names of the nodes with the server-side TCP channels.
+	 * 
+	 * @return The socket addresses of the requested TCP channels, by node name.
+	 */
+	public Map<String, InetSocketAddress> obtainSocketAddresses(String applicationName, Set<String> nodeNames) throws RemoteException {
+		ApplicationPackage applicationPackage = applicationPackages.get(applicationName);
+
+		if (applicationPackage == null) {
+			System.err.println("Unable to locate applicationName information holder for applicationName " + applicationName + "!");
+
+			return null;
+		}
+
+		return applicationPackage.awaitRegisteredSocketAddresses(nodeNames);
 	}
 
 	/**
@@ -321,6 +359,15 @@ public class JobManager implements Manager {
 
 		applicationPackage.addResultSummary(resultSummary);
 
+		// The outputs of a failed NodeGroup may be incomplete, so later stages must not consume them
+
+		if (resultSummary.getType() == ResultSummary.Type.FAILURE) {
+			System.err.println("Failed NodeGroup running " + resultSummary.getNodeGroupApplication() + " with serial number " + resultSummary.getNodeGroupSerialNumber() + "! Aborting application...");
+
+			finishApplication(resultSummary.getNodeGroupApplication());
+			return false;
+		}
+
 		try {
 			if (scheduler.finishedIteration()) {
 				scheduler.terminateIteration();
@@ -107,18 +107,46 @@ public class ResultGenerator extends Thread {
 						continue;
 					}
 
-					file.write("\tNode \"" + nodeName + "\" CPU  time: " + getHumanReadableTime(nodeMeasurements.getCpuTime()) + "\n");
-					averageNodeCPUTime += (nodeMeasurements.getCpuTime() / numberNodes);
+					// Unmeasured times do not contribute to the averages
+
+					if (nodeMeasurements.getCpuTime() == NodeMeasurements.UNAVAILABLE) {
+						file.write("\tNode \"" + nodeName + "\" CPU  time: unavailable\n");
+					}
+					else {
+						file.write("\tNode \"" + nodeName + "\" CPU  time: " + getHumanReadableTime(nodeMeasurements.getCpuTime()) + "\n");
+						averageNodeCPUTime += (nodeMeasurements.getCpuTime() / numberNodes);
+					}
 
 					file.write("\tNode \"" + nodeName + "\" Real time: " + getHumanReadableTime(nodeMeasurements.getRealTime()) + "\n");
 					averageNodeRealTime += (nodeMeasurements.getRealTime() / numberNodes);
 
-					file.write("\tNode \"" + nodeName + "\" User time: " + getHumanReadableTime(nodeMeasurements.getUserTime()) + "\n");
-					averageNodeUserTime += (nodeMeasurements.getUserTime() / numberNodes);
+					if (nodeMeasurements.getUserTime() == NodeMeasurements.UNAVAILABLE) {
+						file.write("\tNode \"" + nodeName + "\" User time: unavailable\n");
+					}
+					else {
+						file.write("\tNode \"" + nodeName + "\" User time: " + getHumanReadableTime(nodeMeasurements.getUserTime()) + "\n");
+						averageNodeUserTime += (nodeMeasurements.getUserTime() / numberNodes);
+					}
 					
 					file.write("\tNode \"" + nodeName + "\" Energy: " + nodeMeasurements.getEnergy() + "\n");
 					averageEnergy += (nodeMeasurements.getEnergy() / numberNodes);
 
+					if (nodeMeasurements.getTCPBytesSent() > 0) {
+						file.write("\tNode \"" + nodeName + "\" TCP output: " + nodeMeasurements.getTCPBytesSent() + " bytes, " + nodeMeasurements.getTCPStallCount() + " credit stalls (" + getHumanReadableTime(nodeMeasurements.getTCPStallTime()) + ")\n");
+					}
+
+					if (nodeMeasurements.getTCPBytesSpilled() > 0) {
+						file.write("\tNode \"" + nodeName + "\" TCP spilled: " + nodeMeasurements.getTCPBytesSpilled() + " bytes\n");
+					}
+
+					for (String channelName: nodeMeasurements.getTCPCompressionChannels()) {
+						long[] compression = nodeMeasurements.getTCPCompression(channelName);
+
+						double ratio = (compression[0] == 0L) ? 1.0 : (double) compression[1] / compression[0];
+
+						file.write("\tNode \"" + nodeName + "\" TCP compression to \"" + channelName + "\": " + compression[0] + " -> " + compression[1] + " bytes (ratio " + String.format("%.3f", ratio) + "), " + getHumanReadableTime(compression[2]) + "\n");
+					}
+
 					file.write("\n");
 				}
 			}
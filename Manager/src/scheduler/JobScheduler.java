@@ -42,6 +42,8 @@ import appspecs.ApplicationSpecification;
 import appspecs.Decider;
 import appspecs.Edge;
 import appspecs.Node;
+import communication.channel.FileOutputChannel;
+import communication.channel.OutputChannel;
 import enums.CommunicationMode;
 import exceptions.CyclicDependencyException;
 import exceptions.InexistentInputException;
@@ -142,7 +144,7 @@ public class JobScheduler implements Scheduler {
 		}
 
 		for (Edge edge: applicationSpecification.edgeSet()) {
-			if (edge.getCommunicationMode() == CommunicationMode.FILE) {
+			if (isBarrier(edge)) {
 				source = edge.getSource();
 				target = edge.getTarget();
 
@@ -159,7 +161,7 @@ public class JobScheduler implements Scheduler {
 		// Detect temporal dependency problems
 
 		for (Edge edge: applicationSpecification.edgeSet()) {
-			if (edge.getCommunicationMode() == CommunicationMode.FILE) {
+			if (isBarrier(edge)) {
 				source = edge.getSource();
 				target = edge.getTarget();
 
@@ -188,7 +190,7 @@ public class JobScheduler implements Scheduler {
 
 	/**
 	 * Parses the graph and clusters Nodes that use shared memory as their communication primitive
-	 * into NodeGroups. Each NodeGroup is assigned a serial number.
+	 * (SHM, NODEBOX and TIMEBOX edges) into NodeGroups. Each NodeGroup is assigned a serial number.
 	 * 
 	 * @return A list of NodeGroups indexed by their serial number.
 	 */
@@ -225,7 +227,7 @@ public class JobScheduler implements Scheduler {
 				for (Edge connection: applicationSpecification.outgoingEdgesOf(current)) {
 					neighbor = connection.getTarget();
 
-					if (connection.getCommunicationMode() == CommunicationMode.SHM || connection.getCommunicationMode() == CommunicationMode.NODEBOX) {
+					if (connection.getCommunicationMode() == CommunicationMode.SHM || connection.getCommunicationMode() == CommunicationMode.NODEBOX || connection.getCommunicationMode() == CommunicationMode.TIMEBOX) {
 						if (!neighbor.isMarked()) {
 							neighbor.setMark(spammerIdentifier);
 							queue.add(neighbor);
@@ -236,7 +238,7 @@ public class JobScheduler implements Scheduler {
 				for (Edge connection: applicationSpecification.incomingEdgesOf(current)) {
 					neighbor = connection.getSource();
 
-					if (connection.getCommunicationMode() == CommunicationMode.SHM) {
+					if (connection.getCommunicationMode() == CommunicationMode.SHM || connection.getCommunicationMode() == CommunicationMode.NODEBOX || connection.getCommunicationMode() == CommunicationMode.TIMEBOX) {
 						if (!neighbor.isMarked()) {
 							neighbor.setMark(spammerIdentifier);
 							queue.add(neighbor);
@@ -245,7 +247,11 @@ public class JobScheduler implements Scheduler {
 				}
 			}
 
-			result.put(spammerIdentifier, new NodeGroup(applicationSpecification.getName(), spammerGroup));
+			NodeGroup nodeGroup = new NodeGroup(applicationSpecification.getName(), spammerGroup);
+
+			nodeGroup.setSerializerRegistry(applicationSpecification.getSerializerRegistry());
+
+			result.put(spammerIdentifier, nodeGroup);
 		}
 
 		nodeGroups = result;
@@ -274,7 +280,9 @@ public class JobScheduler implements Scheduler {
 		Node source, target;
 
 		for (Edge edge: applicationSpecification.edgeSet()) {
-			if (edge.getCommunicationMode() == CommunicationMode.TCP || edge.getCommunicationMode() == CommunicationMode.TIMEBOX) {
+			// Streaming FILE edges also require their endpoints to run at the same time
+
+			if (edge.getCommunicationMode() == CommunicationMode.TCP || edge.getCommunicationMode() == CommunicationMode.HYBRID || (edge.getCommunicationMode() == CommunicationMode.FILE && edge.isStreaming())) {
 				source = edge.getSource();
 				target = edge.getTarget();
 
@@ -333,6 +341,17 @@ public class JobScheduler implements Scheduler {
 		return result;
 	}
 	
+	/**
+	 * Tests whether an edge makes its target wait for the termination of its source.
+	 * 
+	 * @param edge Edge to test.
+	 * 
+	 * @return True for FILE edges that are not streaming, false otherwise.
+	 */
+	private static boolean isBarrier(Edge edge) {
+		return edge.getCommunicationMode() == CommunicationMode.FILE && !edge.isStreaming();
+	}
+
 	/**
 	 * Terminates the application .
 	 */
@@ -413,7 +432,7 @@ public class JobScheduler implements Scheduler {
 		// Notify the other dependencies for the dependency manager
 
 		for (Edge edge: applicationSpecification.edgeSet()) {
-			if (edge.getCommunicationMode() == CommunicationMode.FILE) {
+			if (isBarrier(edge)) {
 				source = edge.getSource();
 				target = edge.getTarget();
 
@@ -421,6 +440,21 @@ public class JobScheduler implements Scheduler {
 			}
 		}
 
+		// Remove the files of streaming edges left by previous runs, or their readers would take them as already produced
+
+		for (Edge edge: applicationSpecification.edgeSet()) {
+			if (edge.getCommunicationMode() == CommunicationMode.FILE && edge.isStreaming()) {
+				OutputChannel outputChannel = edge.getSource().getOutputChannel(edge.getTarget().getName());
+
+				if (outputChannel instanceof FileOutputChannel) {
+					Filename filename = ((FileOutputChannel) outputChannel).getFilename();
+
+					FileHelper.remove(filename);
+					FileHelper.remove(FileHelper.getCompletionMarker(filename));
+				}
+			}
+		}
+
 		// Prepare all nodes and node groups for scheduling
 
 		for (NodeGroup nodeGroup: nodeGroups.values()) {